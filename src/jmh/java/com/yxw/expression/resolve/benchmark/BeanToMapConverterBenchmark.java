@@ -0,0 +1,82 @@
+package com.yxw.expression.resolve.benchmark;
+
+import com.yxw.expression.resolve.utils.BeanToMapConverter;
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据库查询结果转换成下划线命名的 map，以及只读取一个字段的 map 视图
+ *
+ * @author luffytmac
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanToMapConverterBenchmark {
+
+    private TicketRow row;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        row = new TicketRow();
+        row.setTicketNo("T20250826001");
+        row.setPassengerName("luffy");
+        row.setSeatCount(2);
+        row.setTotalAmount(new BigDecimal("1280.50"));
+        row.setDepartureCity("shanghai");
+        row.setArrivalCity("beijing");
+        row.setDepartureTime(new Date(1756166400000L));
+        row.setRefundable(true);
+    }
+
+    @Benchmark
+    public Map<String, Object> beanToSnakeCaseMap() {
+        return BeanToMapConverter.beanToSnakeCaseMap(row);
+    }
+
+    /**
+     * 数据库操作数的实际用法：转换后只读取一个字段
+     */
+    @Benchmark
+    public Object beanToSnakeCaseViewSingleField() {
+        return BeanToMapConverter.beanToSnakeCaseView(row).get("departure_city");
+    }
+
+    @Data
+    public static class TicketRow {
+
+        private String ticketNo;
+
+        private String passengerName;
+
+        private Integer seatCount;
+
+        private BigDecimal totalAmount;
+
+        private String departureCity;
+
+        private String arrivalCity;
+
+        private Date departureTime;
+
+        private Boolean refundable;
+    }
+}
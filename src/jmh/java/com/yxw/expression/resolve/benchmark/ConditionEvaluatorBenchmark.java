@@ -0,0 +1,55 @@
+package com.yxw.expression.resolve.benchmark;
+
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ConditionEvaluator;
+import com.yxw.expression.resolve.utils.JsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解释执行表达式树，表达式只包含上下文和字面量，不涉及数据库查询
+ *
+ * @author luffytmac
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionEvaluatorBenchmark {
+
+    @Param({"shallow", "deep", "wide"})
+    private String shape;
+
+    private ConditionEvaluator conditionEvaluator;
+
+    private BaseNode expression;
+
+    private Map<String, Object> context;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        conditionEvaluator = new ConditionEvaluator();
+        expression = JsonUtils.jsonToObject(ExpressionSamples.expression(shape), BaseNode.class);
+        context = ExpressionSamples.context();
+    }
+
+    @Benchmark
+    public boolean evaluate() {
+        return conditionEvaluator.evaluate(expression, context);
+    }
+}
@@ -0,0 +1,65 @@
+package com.yxw.expression.resolve.benchmark;
+
+import com.yxw.expression.resolve.utils.DateConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每一种支持的日期格式转换成 ZonedDateTime 和毫秒时间戳
+ *
+ * @author luffytmac
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateConverterBenchmark {
+
+    @Param({"isoInstant", "isoInstantMillis", "localDateTime", "localDate", "timestamp", "date", "javaLocalDateTime", "zonedDateTime"})
+    private String format;
+
+    private Object value;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        value = switch (format) {
+            case "isoInstant" -> "2025-08-26T00:00:00Z";
+            case "isoInstantMillis" -> "2025-08-26T00:00:00.123Z";
+            case "localDateTime" -> "2025-08-26 10:30:00";
+            case "localDate" -> "2025-08-26";
+            case "timestamp" -> 1756166400000L;
+            case "date" -> new Date(1756166400000L);
+            case "javaLocalDateTime" -> LocalDateTime.of(2025, 8, 26, 10, 30);
+            case "zonedDateTime" -> ZonedDateTime.of(2025, 8, 26, 10, 30, 0, 0, ZoneId.of("Asia/Shanghai"));
+            default -> throw new IllegalArgumentException("Unsupported format: " + format);
+        };
+    }
+
+    @Benchmark
+    public ZonedDateTime convertToZonedDateTime() {
+        return DateConverter.convertToZonedDateTime(value);
+    }
+
+    @Benchmark
+    public long toEpochMilli() {
+        return DateConverter.toEpochMilli(value);
+    }
+}
@@ -0,0 +1,70 @@
+package com.yxw.expression.resolve.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试用的表达式和上下文
+ * shallow：三个条件的 AND；deep：逐层嵌套的 AND/OR；wide：一个 OR 下挂很多条件，只有最后一个命中
+ *
+ * @author luffytmac
+ */
+final class ExpressionSamples {
+
+    static final int DEEP_LEVELS = 16;
+
+    static final int WIDE_CONDITIONS = 64;
+
+    private ExpressionSamples() {
+    }
+
+    static String expression(String shape) {
+        return switch (shape) {
+            case "shallow" -> logic("AND",
+                    condition("age", "GREATER_THAN", "18"),
+                    condition("name", "STARTS_WITH", "\"ab\""),
+                    condition("city", "EQUAL", "\"shanghai\""));
+            case "deep" -> deep(0);
+            case "wide" -> wide();
+            default -> throw new IllegalArgumentException("Unsupported shape: " + shape);
+        };
+    }
+
+    static Map<String, Object> context() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("age", 30);
+        context.put("name", "abc");
+        context.put("city", "shanghai");
+        context.put("code", "c" + (WIDE_CONDITIONS - 1));
+        for (int i = 0; i < DEEP_LEVELS; i++) {
+            context.put("level" + i, i);
+        }
+        return context;
+    }
+
+    private static String deep(int level) {
+        String condition = condition("level" + level, "EQUAL", String.valueOf(level));
+        if (level == DEEP_LEVELS - 1) {
+            return condition;
+        }
+        return logic(level % 2 == 0 ? "AND" : "OR", condition, deep(level + 1));
+    }
+
+    private static String wide() {
+        String[] children = new String[WIDE_CONDITIONS];
+        for (int i = 0; i < WIDE_CONDITIONS; i++) {
+            children[i] = condition("code", "EQUAL", "\"c" + i + "\"");
+        }
+        return logic("OR", children);
+    }
+
+    private static String logic(String operator, String... children) {
+        return "{\"type\":\"LOGIC\",\"operator\":\"" + operator + "\",\"children\":[" + String.join(",", children) + "]}";
+    }
+
+    private static String condition(String field, String comparison, String literal) {
+        return "{\"type\":\"CONDITION\",\"left\":{\"source\":\"context\",\"field\":\"" + field + "\"},"
+                + "\"comparison\":\"" + comparison + "\","
+                + "\"right\":{\"source\":\"literal\",\"value\":" + literal + "}}";
+    }
+}
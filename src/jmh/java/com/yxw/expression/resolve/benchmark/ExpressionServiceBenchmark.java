@@ -0,0 +1,73 @@
+package com.yxw.expression.resolve.benchmark;
+
+import com.yxw.expression.resolve.component.DatabasePrefetcher;
+import com.yxw.expression.resolve.component.ExpressionCache;
+import com.yxw.expression.resolve.component.ExpressionRegistry;
+import com.yxw.expression.resolve.component.FetchCoalescer;
+import com.yxw.expression.resolve.component.FetchTableData;
+import com.yxw.expression.resolve.component.ServiceMetrics;
+import com.yxw.expression.resolve.expression.compile.ExpressionCompiler;
+import com.yxw.expression.resolve.service.ExpressionService;
+import com.yxw.expression.resolve.strategycore.StrategyContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /validate 的完整求值链路：表达式缓存 -> 编译后的表达式 -> 求值
+ *
+ * @author luffytmac
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionServiceBenchmark {
+
+    @Param({"shallow", "deep", "wide"})
+    private String shape;
+
+    private AnnotationConfigApplicationContext applicationContext;
+
+    private ExpressionService expressionService;
+
+    private String expressionJson;
+
+    private Map<String, Object> context;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        applicationContext = new AnnotationConfigApplicationContext(StrategyContext.class, FetchTableData.class,
+                FetchCoalescer.class, DatabasePrefetcher.class, ServiceMetrics.class, ExpressionCompiler.class,
+                ExpressionCache.class, ExpressionRegistry.class, ExpressionService.class);
+        expressionService = applicationContext.getBean(ExpressionService.class);
+        expressionJson = ExpressionSamples.expression(shape);
+        context = ExpressionSamples.context();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @Benchmark
+    public boolean doEvaluateExpression() {
+        return expressionService.doEvaluateExpression(expressionJson, context);
+    }
+}
@@ -0,0 +1,105 @@
+package com.yxw.expression.resolve.benchmark;
+
+import com.yxw.expression.resolve.component.DatabasePrefetcher;
+import com.yxw.expression.resolve.component.ExpressionCache;
+import com.yxw.expression.resolve.component.ExpressionRegistry;
+import com.yxw.expression.resolve.component.FetchCoalescer;
+import com.yxw.expression.resolve.component.FetchTableData;
+import com.yxw.expression.resolve.component.ServiceMetrics;
+import com.yxw.expression.resolve.expression.compile.CompiledExpression;
+import com.yxw.expression.resolve.expression.compile.ContextLayout;
+import com.yxw.expression.resolve.expression.compile.ExpressionCompiler;
+import com.yxw.expression.resolve.expression.compile.SlotContext;
+import com.yxw.expression.resolve.strategycore.StrategyContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编译后的表达式分别用每次新建的 Map 和复用的 SlotContext 求值，两者每次都写入同样的字段
+ *
+ * @author luffytmac
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlotContextBenchmark {
+
+    @Param({"shallow", "deep", "wide"})
+    private String shape;
+
+    private AnnotationConfigApplicationContext applicationContext;
+
+    private CompiledExpression expression;
+
+    private String[] fields;
+
+    private Object[] values;
+
+    private int[] slots;
+
+    private SlotContext slotContext;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        applicationContext = new AnnotationConfigApplicationContext(StrategyContext.class, FetchTableData.class,
+                FetchCoalescer.class, DatabasePrefetcher.class, ServiceMetrics.class, ExpressionCompiler.class,
+                ExpressionCache.class, ExpressionRegistry.class);
+        expression = applicationContext.getBean(ExpressionCache.class).get(ExpressionSamples.expression(shape));
+        Map<String, Object> context = ExpressionSamples.context();
+        ContextLayout layout = expression.getLayout();
+        fields = layout.fields().toArray(new String[0]);
+        values = new Object[fields.length];
+        slots = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = context.get(fields[i]);
+            slots[i] = layout.slot(fields[i]);
+        }
+        slotContext = expression.newSlotContext();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @Benchmark
+    public boolean mapContext() {
+        Map<String, Object> context = new HashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            context.put(fields[i], values[i]);
+        }
+        return expression.evaluate(context);
+    }
+
+    @Benchmark
+    public boolean slotContext() {
+        SlotContext context = slotContext.clear();
+        for (int i = 0; i < slots.length; i++) {
+            if (values[i] instanceof Integer value) {
+                context.setLong(slots[i], value);
+            } else {
+                context.set(slots[i], values[i]);
+            }
+        }
+        return expression.evaluate(context);
+    }
+}
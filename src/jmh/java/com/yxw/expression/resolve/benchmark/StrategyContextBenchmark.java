@@ -0,0 +1,83 @@
+package com.yxw.expression.resolve.benchmark;
+
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.enums.base.BaseEnum;
+import com.yxw.expression.resolve.strategycore.StrategyContext;
+import com.yxw.expression.resolve.strategycore.handler.EventHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按照事件类型查找策略：单个枚举命中、传入多个枚举需要组合匹配、匹配不上返回默认策略
+ *
+ * @author luffytmac
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategyContextBenchmark {
+
+    private StrategyContext strategyContext;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        strategyContext = new StrategyContext();
+        strategyContext.postProcessAfterInitialization(new Table1Handler(), "table1Handler");
+        strategyContext.postProcessAfterInitialization(new CombinedHandler(), "combinedHandler");
+    }
+
+    @Benchmark
+    public EventHandler simpleMatch() {
+        return strategyContext.get(EventHandler.class, EventTypeEnum.TABLE1);
+    }
+
+    @Benchmark
+    public EventHandler combinedMatch() {
+        return strategyContext.get(EventHandler.class, EventTypeEnum.TABLE2, EventTypeEnum.TABLE1);
+    }
+
+    @Benchmark
+    public EventHandler defaultStrategy() {
+        return strategyContext.get(EventHandler.class, EventTypeEnum.TABLE2);
+    }
+
+    static class Table1Handler implements EventHandler {
+
+        @Override
+        public BaseEnum[][] launchConditions() {
+            return new BaseEnum[][]{{EventTypeEnum.TABLE1}};
+        }
+
+        @Override
+        public <T> T findByKey(String keyId) {
+            return null;
+        }
+    }
+
+    static class CombinedHandler implements EventHandler {
+
+        @Override
+        public BaseEnum[][] launchConditions() {
+            return new BaseEnum[][]{{EventTypeEnum.TABLE1, EventTypeEnum.TABLE2}};
+        }
+
+        @Override
+        public <T> T findByKey(String keyId) {
+            return null;
+        }
+    }
+}
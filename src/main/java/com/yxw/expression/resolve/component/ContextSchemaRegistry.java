@@ -0,0 +1,91 @@
+package com.yxw.expression.resolve.component;
+
+import cn.hutool.core.util.StrUtil;
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 上下文类型声明的注册表，求值请求通过名称选用，见 {@link ContextSchema}
+ * 启动时从配置中加载：expression.context-schema.{名称}.{字段}=NUMBER|STRING|BOOLEAN|DATE，
+ * 运行时也可以注册、替换；替换后的类型声明内容不同，按照新的类型声明重新编译表达式
+ *
+ * @author luffytmac
+ */
+@Component
+public class ContextSchemaRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextSchemaRegistry.class);
+
+    private static final String PREFIX = "expression.context-schema";
+
+    /**
+     * 名称 -> 字段 -> 类型
+     */
+    private static final Bindable<Map<String, Map<String, String>>> SCHEMAS = Bindable.of(ResolvableType.forClassWithGenerics(
+            Map.class, ResolvableType.forClass(String.class), ResolvableType.forClassWithGenerics(Map.class, String.class, String.class)));
+
+    @Resource
+    private Environment environment;
+
+    /**
+     * 名称 -> 类型声明
+     */
+    private final Map<String, ContextSchema> schemas = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Map<String, Map<String, String>> configured = Binder.get(environment).bind(PREFIX, SCHEMAS).orElse(Map.of());
+        configured.forEach(this::register);
+    }
+
+    /**
+     * 注册或者替换一个类型声明
+     *
+     * @param fields 字段 -> 类型
+     * @throws IllegalArgumentException 类型不支持
+     */
+    public ContextSchema register(String name, Map<String, String> fields) {
+        Assert.hasText(name, "name can not be empty");
+        Map<String, FieldTypeEnum> types = new LinkedHashMap<>();
+        fields.forEach((field, type) -> types.put(field, FieldTypeEnum.getByCode(type)
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported field type of " + field + ": " + type))));
+        ContextSchema schema = ContextSchema.of(name, types);
+        schemas.put(name, schema);
+        log.info("Context schema {} registered, fields: {}", name, types);
+        return schema;
+    }
+
+    /**
+     * 名称对应的类型声明，名称为空时返回 null，代表没有类型声明
+     *
+     * @throws IllegalArgumentException 没有这个名称的类型声明
+     */
+    public ContextSchema require(String name) {
+        if (StrUtil.isEmpty(name)) {
+            return null;
+        }
+        ContextSchema schema = schemas.get(name);
+        if (schema == null) {
+            throw new IllegalArgumentException("Context schema is not registered: " + name);
+        }
+        return schema;
+    }
+
+    public Map<String, ContextSchema> all() {
+        return Map.copyOf(schemas);
+    }
+}
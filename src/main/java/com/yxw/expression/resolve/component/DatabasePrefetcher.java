@@ -0,0 +1,194 @@
+package com.yxw.expression.resolve.component;
+
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 数据库数据预取
+ * 表达式用到多张表时，求值前并发查询所有表的数据放入 FetchScope，求值过程中直接使用，不再在请求线程上逐张表串行查询
+ * 运行时支持虚拟线程时使用虚拟线程，否则使用固定大小的线程池，同时进行的查询数量都不超过 maxConcurrency
+ * 预取失败的表不放入 FetchScope，求值时用到再按原来的方式查询；
+ * 超时的查询不会被中断，继续占用并发名额直到完成，进行中的查询放入 FetchScope，求值用到这张表时等待这次查询，不会对同一条数据再查询一次
+ *
+ * @author luffytmac
+ */
+@Component
+public class DatabasePrefetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabasePrefetcher.class);
+
+    private static final String MODE_EAGER = "eager";
+
+    @Resource
+    private FetchTableData fetchTableData;
+
+    /**
+     * eager：求值前并发预取；lazy：求值过程中用到时才查询，适合短路求值经常用不到后面的表的场景
+     */
+    private final boolean eager;
+
+    private final long timeoutMillis;
+
+    private final ExecutorService executor;
+
+    /**
+     * 使用虚拟线程时限制同时进行的查询数量，使用线程池时为 null
+     */
+    private final Semaphore permits;
+
+    public DatabasePrefetcher(@Value("${expression.prefetch.mode:eager}") String mode,
+                              @Value("${expression.prefetch.max-concurrency:16}") int maxConcurrency,
+                              @Value("${expression.prefetch.timeout-ms:1000}") long timeoutMillis,
+                              @Value("${expression.prefetch.virtual-threads:true}") boolean virtualThreads) {
+        this.eager = MODE_EAGER.equalsIgnoreCase(mode);
+        this.timeoutMillis = timeoutMillis;
+        int concurrency = Math.max(1, maxConcurrency);
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            this.executor = virtualExecutor;
+            this.permits = new Semaphore(concurrency);
+        } else {
+            this.executor = newBoundedExecutor(concurrency);
+            this.permits = null;
+        }
+        log.info("Database prefetch mode: {}, max concurrency: {}, virtual threads: {}",
+                eager ? "eager" : "lazy", concurrency, virtualExecutor != null);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEager() {
+        return eager;
+    }
+
+    /**
+     * 并发查询多张表的数据放入 FetchScope，最后一张表在调用线程上查询
+     *
+     * @param tables     表 -> 用到的字段
+     * @param contextMap 上下文数据，用于获取每张表的唯一键
+     * @param scope      本次求值的数据获取范围
+     */
+    public void prefetch(Map<EventTypeEnum, Set<String>> tables, Map<String, Object> contextMap, FetchScope scope) {
+        List<EventTypeEnum> events = new ArrayList<>(tables.size());
+        List<String> keys = new ArrayList<>(tables.size());
+        for (EventTypeEnum event : tables.keySet()) {
+            String key;
+            try {
+                key = fetchTableData.resolveKey(event, contextMap);
+            } catch (Exception e) {
+                // 唯一键取不到时交给求值过程处理
+                continue;
+            }
+            if (!scope.contains(event, key)) {
+                events.add(event);
+                keys.add(key);
+            }
+        }
+        int size = events.size();
+        if (size < 2) {
+            return;
+        }
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>(size - 1);
+        for (int i = 0; i < size - 1; i++) {
+            EventTypeEnum event = events.get(i);
+            String key = keys.get(i);
+            Set<String> fields = tables.get(event);
+            futures.add(CompletableFuture.supplyAsync(() -> fetchRow(event, key, fields), executor));
+        }
+        EventTypeEnum lastEvent = events.get(size - 1);
+        Map<String, Object> lastRow = fetchQuietly(lastEvent, keys.get(size - 1), tables.get(lastEvent));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (int i = 0; i < size - 1; i++) {
+            CompletableFuture<Map<String, Object>> future = futures.get(i);
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                scope.prefetched(events.get(i), keys.get(i), future.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                scope.pending(events.get(i), keys.get(i), future);
+                log.warn("Prefetch of {} timed out after {} ms, wait for it when needed", events.get(i), timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.debug("Prefetch of {} failed, fetch on demand: {}", events.get(i), e.getMessage());
+            }
+        }
+        if (lastRow != null) {
+            scope.prefetched(lastEvent, keys.get(size - 1), lastRow);
+        }
+    }
+
+    private Map<String, Object> fetchRow(EventTypeEnum event, String key, Set<String> fields) {
+        if (permits == null) {
+            return fetchTableData.fetchRow(event, key, fields);
+        }
+        permits.acquireUninterruptibly();
+        try {
+            return fetchTableData.fetchRow(event, key, fields);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Map<String, Object> fetchQuietly(EventTypeEnum event, String key, Set<String> fields) {
+        try {
+            return fetchTableData.fetchRow(event, key, fields);
+        } catch (Exception e) {
+            log.debug("Prefetch of {} failed, fetch on demand: {}", event, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Java 21 及以上版本才有虚拟线程，项目以 Java 17 编译，这里通过反射创建
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 固定大小的线程池，队列满了之后由调用线程自己查询
+     */
+    private static ExecutorService newBoundedExecutor(int concurrency) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(concurrency * 16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "db-prefetch-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
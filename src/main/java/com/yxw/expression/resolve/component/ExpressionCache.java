@@ -0,0 +1,250 @@
+package com.yxw.expression.resolve.component;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import com.yxw.expression.resolve.expression.codec.ExpressionBinaryCodec;
+import com.yxw.expression.resolve.expression.compile.CompiledExpression;
+import com.yxw.expression.resolve.expression.compile.ExpressionCompiler;
+import com.yxw.expression.resolve.utils.JsonUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 表达式解析缓存
+ * 同一个表达式json会被反复提交，这里按照json内容缓存编译后的表达式，避免每次都走一遍jackson的多态反序列化和编译
+ * 缓存的 key 是表达式的原文本身，命中时比较的是原文，不会因为 hash 碰撞用到另一个表达式编译的结果；
+ * 内容hash只在编译时计算一次，作为编译后的表达式的标识（求值指标的标签等）
+ * 缓存有容量上限，超出后按照最近最少使用淘汰；同一个json并发未命中时只会解析一次
+ * 带有上下文类型声明时，同一个表达式按照每个类型声明分别编译、缓存
+ *
+ * @author luffytmac
+ */
+@Component
+public class ExpressionCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpressionCache.class);
+
+    private final Cache<SourceKey, CompiledExpression> cache;
+
+    @Resource
+    private ExpressionCompiler expressionCompiler;
+
+    @Resource
+    private ServiceMetrics serviceMetrics;
+
+    public ExpressionCache(@Value("${expression.cache.max-size:1000}") long maxSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                // 被淘汰的表达式不再单独记录求值指标
+                .<SourceKey, CompiledExpression>removalListener(notification -> serviceMetrics.removeAdhoc(notification.getValue()))
+                .build();
+    }
+
+    @PostConstruct
+    public void init() {
+        serviceMetrics.monitor(cache, "expression");
+    }
+
+    /**
+     * 获取表达式json对应的编译后的表达式，缓存中没有则解析、编译后放入缓存
+     *
+     * @param expressionJson 表达式json
+     * @return 编译后的表达式，解析失败返回 null
+     */
+    public CompiledExpression get(String expressionJson) {
+        return get(expressionJson, null);
+    }
+
+    /**
+     * @param schema 上下文的类型声明，可以为 null
+     */
+    public CompiledExpression get(String expressionJson, ContextSchema schema) {
+        try {
+            return cache.get(new SourceKey(expressionJson, schema),
+                    () -> expressionCompiler.compile(key(hash(expressionJson), schema), parse(expressionJson), schema));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            log.error("解析模板中的表达式失败, expressionJson: {}, exception info: {}", expressionJson, e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 获取请求体中内嵌的表达式对象对应的编译后的表达式
+     * 按照 token 流的内容缓存，计算 key 时不拼接字符串，缓存中没有时直接从 token 流中编译，不生成表达式json字符串和 LogicNode/ConditionNode
+     *
+     * @param expression 表达式对象的 token
+     * @return 编译后的表达式，解析失败返回 null
+     */
+    public CompiledExpression get(TokenBuffer expression) {
+        return get(expression, null);
+    }
+
+    public CompiledExpression get(TokenBuffer expression, ContextSchema schema) {
+        try {
+            TokenSource source = TokenSource.of(expression);
+            return cache.get(new SourceKey(source, schema), () -> compile(key(source.hash(), schema), expression, schema));
+        } catch (IOException e) {
+            log.error("解析请求中的表达式对象失败, exception info: {}", e.getMessage());
+            return null;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            log.error("解析请求中的表达式对象失败, exception info: {}", e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 获取二进制格式的表达式对应的编译后的表达式，缓存中没有则解码、编译后放入缓存
+     * 调用方在之后不能修改 expressionBinary，缓存的 key 直接引用这个数组
+     *
+     * @param expressionBinary 二进制格式的表达式，见 ExpressionBinaryCodec
+     * @return 编译后的表达式，解析失败返回 null
+     */
+    public CompiledExpression get(byte[] expressionBinary) {
+        return get(expressionBinary, null);
+    }
+
+    public CompiledExpression get(byte[] expressionBinary, ContextSchema schema) {
+        ByteBuffer source = ByteBuffer.wrap(expressionBinary).asReadOnlyBuffer();
+        try {
+            return cache.get(new SourceKey(source, schema), () -> expressionCompiler.compile(
+                    key(Hashing.murmur3_128().hashBytes(expressionBinary), schema), ExpressionBinaryCodec.decode(expressionBinary), schema));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            log.error("解析二进制格式的表达式失败, exception info: {}", e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    private CompiledExpression compile(HashCode key, TokenBuffer expression, ContextSchema schema) throws IOException {
+        try (JsonParser parser = expression.asParser(JsonUtils.getObjectMapper())) {
+            return expressionCompiler.compile(key, parser, schema);
+        }
+    }
+
+    /**
+     * 编译后的表达式的标识，没有类型声明时就是表达式的内容hash，和没有类型声明的版本一致
+     */
+    private static HashCode key(HashCode hash, ContextSchema schema) {
+        return schema == null ? hash : Hashing.combineOrdered(List.of(hash, schema.getHash()));
+    }
+
+    /**
+     * 计算表达式json的内容hash，作为编译后的表达式的标识
+     */
+    public static HashCode hash(String expressionJson) {
+        return Hashing.murmur3_128().hashString(expressionJson, StandardCharsets.UTF_8);
+    }
+
+    private BaseNode parse(String expressionJson) {
+        BaseNode expression = JsonUtils.jsonToObject(expressionJson, BaseNode.class);
+        if (Objects.isNull(expression)) {
+            throw new IllegalArgumentException("expression is null");
+        }
+        return expression;
+    }
+
+    /**
+     * 命中、未命中、淘汰次数等统计信息
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 缓存的 key：表达式的原文（json 字符串、token 流或者二进制内容）和上下文的类型声明，按照内容比较
+     */
+    private record SourceKey(Object source, ContextSchema schema) {
+    }
+
+    /**
+     * token 流作为缓存的 key：每个 token 的类型和字段名、值的文本依次计算内容hash，和json中的空白、转义写法无关
+     * 不拼接成字符串，hash 相同时逐个 token 比较两个 token 流；单独的类型，不会和内容相同的表达式json字符串相等
+     * 缓存的 key 直接引用请求中的 TokenBuffer，调用方在之后不能再向其中写入
+     */
+    static final class TokenSource {
+
+        private final TokenBuffer tokens;
+
+        private final HashCode hash;
+
+        private TokenSource(TokenBuffer tokens, HashCode hash) {
+            this.tokens = tokens;
+            this.hash = hash;
+        }
+
+        static TokenSource of(TokenBuffer tokens) throws IOException {
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            try (JsonParser parser = tokens.asParser()) {
+                for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                    hasher.putInt(token.id());
+                    if (token == JsonToken.FIELD_NAME || token.isScalarValue()) {
+                        String value = parser.getText();
+                        hasher.putInt(value.length()).putUnencodedChars(value);
+                    }
+                }
+            }
+            return new TokenSource(tokens, hasher.hash());
+        }
+
+        HashCode hash() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TokenSource other) || !hash.equals(other.hash)) {
+                return false;
+            }
+            try (JsonParser left = tokens.asParser(); JsonParser right = other.tokens.asParser()) {
+                for (JsonToken token = left.nextToken(); token != null; token = left.nextToken()) {
+                    if (right.nextToken() != token) {
+                        return false;
+                    }
+                    if ((token == JsonToken.FIELD_NAME || token.isScalarValue()) && !left.getText().equals(right.getText())) {
+                        return false;
+                    }
+                }
+                return right.nextToken() == null;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash.asInt();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.yxw.expression.resolve.component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个表达式的求值指标：耗时和 true/false/异常 次数
+ * 在表达式第一次求值时创建好，保存在 CompiledExpression 上，之后每次求值直接记录，不再查找、创建 meter
+ *
+ * @author luffytmac
+ */
+public final class ExpressionMeters {
+
+    private final Timer latency;
+
+    private final Counter trueCount;
+
+    private final Counter falseCount;
+
+    private final Counter errorCount;
+
+    ExpressionMeters(Timer latency, Counter trueCount, Counter falseCount, Counter errorCount) {
+        this.latency = latency;
+        this.trueCount = trueCount;
+        this.falseCount = falseCount;
+        this.errorCount = errorCount;
+    }
+
+    public void record(boolean result, long nanos) {
+        latency.record(nanos, TimeUnit.NANOSECONDS);
+        (result ? trueCount : falseCount).increment();
+    }
+
+    public void error(long nanos) {
+        latency.record(nanos, TimeUnit.NANOSECONDS);
+        errorCount.increment();
+    }
+}
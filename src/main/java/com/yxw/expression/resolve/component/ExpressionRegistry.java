@@ -0,0 +1,351 @@
+package com.yxw.expression.resolve.component;
+
+import cn.hutool.core.util.StrUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yxw.expression.resolve.dto.RegisteredExpressionInfo;
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import com.yxw.expression.resolve.expression.codec.ExpressionBinaryCodec;
+import com.yxw.expression.resolve.expression.compile.CompiledExpression;
+import com.yxw.expression.resolve.expression.compile.ExpressionCompiler;
+import com.yxw.expression.resolve.utils.JsonUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 表达式注册表
+ * 表达式只在编辑器中修改时才会变化，调用方可以先按照 id + 版本号注册表达式，之后求值只提交 id 和上下文，
+ * 不需要每次都提交、解析表达式
+ * 注册时先编译好新版本，再整体替换当前版本，求值要么用到旧版本，要么用到新版本；上一个版本保留下来用于回滚
+ * 配置了 expression.registry.snapshot.path 时，注册表的每次变化都追加到持久化文件中，重启时从内存映射的文件中恢复，
+ * 恢复的表达式直接从映射的区域中解码，第一次求值时才编译，见 {@link ExpressionSnapshotFile}
+ *
+ * @author luffytmac
+ */
+@Component
+public class ExpressionRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpressionRegistry.class);
+
+    /**
+     * 每个版本最多缓存多少个类型声明编译出来的表达式
+     */
+    private static final int MAX_TYPED_PER_VERSION = 16;
+
+    @Resource
+    private ExpressionCompiler expressionCompiler;
+
+    @Resource
+    private ServiceMetrics serviceMetrics;
+
+    /**
+     * 持久化文件的路径，为空代表不持久化
+     */
+    @Value("${expression.registry.snapshot.path:}")
+    private String snapshotPath;
+
+    /**
+     * 表达式id -> 当前版本和上一个版本
+     */
+    private final Map<String, Slot> expressions = new ConcurrentHashMap<>();
+
+    private ExpressionSnapshotFile snapshot;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (StrUtil.isBlank(snapshotPath)) {
+            return;
+        }
+        Map<String, Slot> restored = new LinkedHashMap<>();
+        snapshot = ExpressionSnapshotFile.open(Path.of(snapshotPath), restored);
+        expressions.putAll(restored);
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        if (snapshot != null) {
+            snapshot.close();
+        }
+    }
+
+    /**
+     * 注册表达式json的一个版本，成为当前版本，原来的当前版本成为上一个版本
+     *
+     * @throws IllegalArgumentException 表达式解析失败
+     * @throws IllegalStateException    同一个版本号已经注册了不同的表达式
+     */
+    public RegisteredExpressionInfo register(String id, String version, String expressionJson) {
+        BaseNode node;
+        try {
+            node = JsonUtils.jsonToObject(expressionJson, BaseNode.class);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to parse expression: " + e.getMessage(), e);
+        }
+        if (Objects.isNull(node)) {
+            throw new IllegalArgumentException("expression is null");
+        }
+        return register(id, version, node);
+    }
+
+    /**
+     * 注册二进制格式的表达式的一个版本，见 ExpressionBinaryCodec
+     */
+    public RegisteredExpressionInfo register(String id, String version, byte[] expressionBinary) {
+        BaseNode node = ExpressionBinaryCodec.decode(expressionBinary);
+        if (Objects.isNull(node)) {
+            throw new IllegalArgumentException("expression is null");
+        }
+        return register(id, version, node);
+    }
+
+    /**
+     * 注册表达式的一个版本，编译在替换之前完成
+     * 重复注册当前版本（版本号和内容都相同）时什么都不做
+     */
+    public RegisteredExpressionInfo register(String id, String version, BaseNode node) {
+        Assert.hasText(id, "id can not be empty");
+        Assert.hasText(version, "version can not be empty");
+        byte[] binary = ExpressionBinaryCodec.encode(node);
+        HashCode hash = Hashing.murmur3_128().hashBytes(binary);
+        Version candidate = new Version(version, ByteBuffer.wrap(binary).asReadOnlyBuffer(), hash, System.currentTimeMillis());
+        candidate.expression = expressionCompiler.compile(hash, node);
+        Slot slot = expressions.compute(id, (key, old) -> {
+            if (old != null && old.current().version().equals(version)) {
+                // 按照内容比较，hash 相同但内容不同的表达式不能当成重复注册
+                if (old.current().hash().equals(hash) && old.current().binary().equals(ByteBuffer.wrap(binary))) {
+                    return old;
+                }
+                throw new IllegalStateException("Version " + version + " of expression " + id + " is already registered");
+            }
+            persist(id, file -> file.appendRegister(id, candidate));
+            return new Slot(candidate, old == null ? null : old.current());
+        });
+        log.info("Expression {} registered, version: {}, previous version: {}", id, slot.current().version(),
+                slot.previous() == null ? null : slot.previous().version());
+        return info(id, slot);
+    }
+
+    /**
+     * 回滚到上一个版本，回滚前的当前版本成为上一个版本，再次回滚即可恢复
+     *
+     * @throws IllegalArgumentException 表达式没有注册
+     * @throws IllegalStateException    没有上一个版本
+     */
+    public RegisteredExpressionInfo rollback(String id) {
+        Slot slot = expressions.compute(id, (key, old) -> {
+            if (old == null) {
+                throw new IllegalArgumentException("Expression is not registered: " + id);
+            }
+            if (old.previous() == null) {
+                throw new IllegalStateException("Expression " + id + " has no previous version");
+            }
+            persist(id, file -> file.appendRollback(id));
+            return new Slot(old.previous(), old.current());
+        });
+        log.info("Expression {} rolled back to version {}", id, slot.current().version());
+        return info(id, slot);
+    }
+
+    /**
+     * 删除表达式的所有版本
+     *
+     * @return 表达式注册过返回 true
+     */
+    public boolean remove(String id) {
+        boolean[] removed = new boolean[1];
+        expressions.computeIfPresent(id, (key, old) -> {
+            persist(id, file -> file.appendRemove(id));
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            serviceMetrics.removeRegistered(id);
+        }
+        return removed[0];
+    }
+
+    /**
+     * 在替换之前写入持久化文件，和替换在同一个 compute 中执行，保证同一个表达式的记录顺序和替换顺序一致
+     * 写入失败只记录日志，不影响内存中的注册表
+     */
+    private void persist(String id, SnapshotWrite write) {
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            write.apply(snapshot);
+        } catch (IOException e) {
+            log.error("Failed to write expression snapshot {}, id: {}, exception info: {}", snapshot.getPath(), id, e.getMessage());
+        }
+    }
+
+    /**
+     * 表达式当前版本编译后的表达式，没有注册返回 null
+     */
+    public CompiledExpression get(String id) {
+        Slot slot = expressions.get(id);
+        return slot == null ? null : compiled(slot.current());
+    }
+
+    /**
+     * 表达式当前版本按照上下文类型声明编译后的表达式，没有注册返回 null
+     * 每个版本按照类型声明分别缓存编译出来的表达式，多个调用方交替使用不同的类型声明时不会反复编译，
+     * 每个版本最多缓存 MAX_TYPED_PER_VERSION 个类型声明，超过时淘汰最久没有用到的类型声明
+     *
+     * @param schema 上下文的类型声明，为 null 时和 get(id) 一致
+     */
+    public CompiledExpression get(String id, ContextSchema schema) {
+        if (schema == null) {
+            return get(id);
+        }
+        Slot slot = expressions.get(id);
+        return slot == null ? null : compiled(slot.current(), schema);
+    }
+
+    private CompiledExpression compiled(Version version, ContextSchema schema) {
+        try {
+            return version.typed.get(schema,
+                    () -> expressionCompiler.compile(version.hash(), ExpressionBinaryCodec.decode(version.binary()), schema));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            // 和 compiled(version) 一样抛出编译时的原始异常
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 从持久化文件中恢复的版本在第一次用到时编译，编译失败（文件内容损坏）时抛出 IllegalArgumentException
+     */
+    private CompiledExpression compiled(Version version) {
+        CompiledExpression expression = version.expression;
+        if (expression == null) {
+            synchronized (version) {
+                expression = version.expression;
+                if (expression == null) {
+                    expression = expressionCompiler.compile(version.hash(), ExpressionBinaryCodec.decode(version.binary()));
+                    version.expression = expression;
+                }
+            }
+        }
+        return expression;
+    }
+
+    /**
+     * 表达式的状态，没有注册返回 null
+     */
+    public RegisteredExpressionInfo info(String id) {
+        Slot slot = expressions.get(id);
+        return slot == null ? null : info(id, slot);
+    }
+
+    public int size() {
+        return expressions.size();
+    }
+
+    private RegisteredExpressionInfo info(String id, Slot slot) {
+        Version current = slot.current();
+        CompiledExpression expression = compiled(current);
+        RegisteredExpressionInfo info = new RegisteredExpressionInfo();
+        info.setId(id);
+        info.setVersion(current.version());
+        info.setPreviousVersion(slot.previous() == null ? null : slot.previous().version());
+        info.setRegisteredAt(current.registeredAt());
+        info.setSize(current.binary().remaining());
+        info.setTier(expression.getTier().name());
+        info.setInvocations(expression.getInvocations());
+        return info;
+    }
+
+    /**
+     * 表达式的一个版本
+     */
+    static final class Version {
+
+        private final String version;
+
+        /**
+         * 二进制格式的表达式，只读，从持久化文件中恢复的版本指向映射的区域
+         */
+        private final ByteBuffer binary;
+
+        /**
+         * 二进制的内容hash
+         */
+        private final HashCode hash;
+
+        private final long registeredAt;
+
+        /**
+         * 编译后的表达式，恢复的版本第一次用到时才编译
+         */
+        private volatile CompiledExpression expression;
+
+        /**
+         * 上下文类型声明 -> 按照这个类型声明编译后的表达式，按照最近使用淘汰
+         * 只有一个分段，淘汰顺序和整个缓存的使用顺序一致
+         */
+        private final Cache<ContextSchema, CompiledExpression> typed = CacheBuilder.newBuilder()
+                .maximumSize(MAX_TYPED_PER_VERSION)
+                .concurrencyLevel(1)
+                .build();
+
+        Version(String version, ByteBuffer binary, HashCode hash, long registeredAt) {
+            this.version = version;
+            this.binary = binary;
+            this.hash = hash;
+            this.registeredAt = registeredAt;
+        }
+
+        String version() {
+            return version;
+        }
+
+        /**
+         * 每次返回一个新的视图，调用方可以随意修改 position
+         */
+        ByteBuffer binary() {
+            return binary.duplicate();
+        }
+
+        HashCode hash() {
+            return hash;
+        }
+
+        long registeredAt() {
+            return registeredAt;
+        }
+    }
+
+    /**
+     * 一个表达式的当前版本和上一个版本，不可变，注册、回滚时整体替换
+     */
+    record Slot(Version current, Version previous) {
+    }
+
+    @FunctionalInterface
+    private interface SnapshotWrite {
+
+        void apply(ExpressionSnapshotFile file) throws IOException;
+    }
+}
@@ -0,0 +1,242 @@
+package com.yxw.expression.resolve.component;
+
+import com.google.common.hash.HashCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 表达式注册表的持久化文件
+ * 文件是一个只追加的日志，每次注册、回滚、删除都追加一条记录，重放所有记录即可得到注册表的状态
+ * 启动时通过 FileChannel 把整个文件映射到内存，恢复出来的表达式二进制直接指向映射的区域，不复制出来
+ * 记录带有 CRC32 校验，写到一半的记录（进程在写入时退出）在启动时被截掉；无效的记录过多时启动时重写文件
+ *
+ * <pre>
+ * 文件头：magic(int) 格式版本(int)
+ * 记录：  长度(int) CRC32(int) 类型(byte) 表达式id ...
+ *   REGISTER：版本号 注册时间(long) hash(16 字节) 二进制长度(int) 二进制
+ *   ROLLBACK、REMOVE：没有其他内容
+ * 字符串为 长度(int) + UTF-8
+ * </pre>
+ *
+ * @author luffytmac
+ */
+final class ExpressionSnapshotFile implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpressionSnapshotFile.class);
+
+    private static final int MAGIC = 0x45585253;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte REGISTER = 1;
+    private static final byte ROLLBACK = 2;
+    private static final byte REMOVE = 3;
+
+    /**
+     * 记录数超过有效版本数的这个倍数时启动时重写文件
+     */
+    private static final int COMPACT_RATIO = 4;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private ExpressionSnapshotFile(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * 打开持久化文件并恢复注册表，文件不存在时创建一个空文件
+     *
+     * @param restored 恢复出来的 表达式id -> 当前版本和上一个版本，按照注册顺序
+     */
+    static ExpressionSnapshotFile open(Path path, Map<String, ExpressionRegistry.Slot> restored) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (Files.notExists(path) || Files.size(path) < HEADER_SIZE) {
+            write(path, Map.of());
+        }
+        int records = load(path, restored);
+        int versions = restored.values().stream().mapToInt(slot -> slot.previous() == null ? 1 : 2).sum();
+        if (records > COMPACT_RATIO * Math.max(versions, 16)) {
+            // 重写后重新映射，旧的映射区域不再被引用
+            write(path, restored);
+            restored.clear();
+            load(path, restored);
+            log.info("Expression snapshot {} compacted, records: {} -> {}", path, records, versions);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new ExpressionSnapshotFile(path, channel);
+    }
+
+    /**
+     * 映射并重放整个文件，返回有效的记录数，文件末尾无效的记录会被截掉
+     */
+    private static int load(Path path, Map<String, ExpressionRegistry.Slot> restored) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+        }
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Not an expression snapshot: " + path);
+        }
+        int position = HEADER_SIZE;
+        int records = 0;
+        while (position + 8 <= mapped.limit()) {
+            int length = mapped.getInt(position);
+            if (length <= 0 || position + 8 + length > mapped.limit()) {
+                break;
+            }
+            ByteBuffer body = mapped.slice(position + 8, length);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != mapped.getInt(position + 4)) {
+                break;
+            }
+            replay(body, restored);
+            records++;
+            position += 8 + length;
+        }
+        if (position < mapped.limit()) {
+            log.warn("Expression snapshot {} has {} invalid bytes at the end, truncated", path, mapped.limit() - position);
+            try (FileChannel writeChannel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                writeChannel.truncate(position);
+            }
+        }
+        log.info("Expression snapshot {} loaded, records: {}, expressions: {}", path, records, restored.size());
+        return records;
+    }
+
+    private static void replay(ByteBuffer body, Map<String, ExpressionRegistry.Slot> restored) {
+        byte type = body.get();
+        String id = readString(body);
+        switch (type) {
+            case REGISTER -> {
+                String version = readString(body);
+                long registeredAt = body.getLong();
+                byte[] hash = new byte[16];
+                body.get(hash);
+                int length = body.getInt();
+                ByteBuffer binary = body.slice(body.position(), length).asReadOnlyBuffer();
+                ExpressionRegistry.Version registered = new ExpressionRegistry.Version(version, binary, HashCode.fromBytes(hash), registeredAt);
+                ExpressionRegistry.Slot old = restored.get(id);
+                restored.put(id, new ExpressionRegistry.Slot(registered, old == null ? null : old.current()));
+            }
+            case ROLLBACK -> {
+                ExpressionRegistry.Slot old = restored.get(id);
+                if (old != null && old.previous() != null) {
+                    restored.put(id, new ExpressionRegistry.Slot(old.previous(), old.current()));
+                }
+            }
+            case REMOVE -> restored.remove(id);
+            default -> log.warn("Unknown expression snapshot record type: {}", type);
+        }
+    }
+
+    /**
+     * 只包含每个表达式当前版本和上一个版本的文件，先写入临时文件再替换
+     */
+    private static void write(Path path, Map<String, ExpressionRegistry.Slot> slots) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+            writeFully(channel, header);
+            for (Map.Entry<String, ExpressionRegistry.Slot> entry : slots.entrySet()) {
+                ExpressionRegistry.Slot slot = entry.getValue();
+                if (slot.previous() != null) {
+                    writeFully(channel, register(entry.getKey(), slot.previous()));
+                }
+                writeFully(channel, register(entry.getKey(), slot.current()));
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void appendRegister(String id, ExpressionRegistry.Version version) throws IOException {
+        append(register(id, version));
+    }
+
+    void appendRollback(String id) throws IOException {
+        append(seal(record(ROLLBACK, id, 0)));
+    }
+
+    void appendRemove(String id) throws IOException {
+        append(seal(record(REMOVE, id, 0)));
+    }
+
+    private synchronized void append(ByteBuffer record) throws IOException {
+        writeFully(channel, record);
+        channel.force(false);
+    }
+
+    private static ByteBuffer register(String id, ExpressionRegistry.Version version) {
+        byte[] versionBytes = version.version().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer binary = version.binary();
+        ByteBuffer record = record(REGISTER, id, 4 + versionBytes.length + 8 + 16 + 4 + binary.remaining());
+        record.putInt(versionBytes.length).put(versionBytes);
+        record.putLong(version.registeredAt());
+        record.put(version.hash().asBytes());
+        record.putInt(binary.remaining()).put(binary.duplicate());
+        return seal(record);
+    }
+
+    /**
+     * 分配一条记录，写好长度、类型和表达式id，extra 为后面还要写入的字节数，写完后调用 seal
+     */
+    private static ByteBuffer record(byte type, String id, int extra) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + idBytes.length + extra;
+        ByteBuffer record = ByteBuffer.allocate(8 + length);
+        record.putInt(length).putInt(0).put(type).putInt(idBytes.length).put(idBytes);
+        return record;
+    }
+
+    /**
+     * 写入记录内容的 CRC32，返回可以写入文件的记录
+     */
+    private static ByteBuffer seal(ByteBuffer record) {
+        record.flip();
+        CRC32 crc = new CRC32();
+        crc.update(record.slice(8, record.limit() - 8));
+        return record.putInt(4, (int) crc.getValue());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static String readString(ByteBuffer body) {
+        int length = body.getInt();
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
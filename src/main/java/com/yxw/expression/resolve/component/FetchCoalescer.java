@@ -0,0 +1,254 @@
+package com.yxw.expression.resolve.component;
+
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.strategycore.StrategyChangedEvent;
+import com.yxw.expression.resolve.strategycore.StrategyContext;
+import com.yxw.expression.resolve.strategycore.handler.EventHandler;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 数据库查询合并
+ * 并发的求值在很短的时间内经常查询同一张表，这里把同一张表（同一组字段）的查询先攒起来，
+ * 攒够 maxBatchSize 个唯一键或者等待 window 之后，通过 EventHandler.findByKeys 一次查询
+ * 正在等待或者正在查询的唯一键不会重复查询，后来的请求直接等待同一个结果
+ * 一张表没有其他正在等待或者正在查询的唯一键时（比如并发很低），直接查询，不等待 window
+ * 默认关闭，批次的大小和等待时间记录在 ServiceMetrics 中
+ * findByKeys 返回 null 的表视为不支持批量查询，之后不再合并，直接按唯一键查询
+ *
+ * @author luffytmac
+ */
+@Component
+public class FetchCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(FetchCoalescer.class);
+
+    @Resource
+    private StrategyContext strategyContext;
+
+    @Resource
+    private ServiceMetrics serviceMetrics;
+
+    private final boolean enabled;
+
+    private final long windowMicros;
+
+    private final int maxBatchSize;
+
+    /**
+     * 定时触发批量查询，并在这些线程上执行批量查询
+     */
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * 还在攒唯一键的批次
+     */
+    private final Map<BatchKey, Batch> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 正在等待或者正在查询的唯一键，用于去重
+     */
+    private final Map<LoadKey, CompletableFuture<Object>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * 不支持批量查询的表
+     */
+    private final Set<EventTypeEnum> unsupported = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 每张表正在等待或者正在查询的唯一键个数，为 0 时新的唯一键直接查询
+     */
+    private final Map<EventTypeEnum, AtomicInteger> loading = new EnumMap<>(EventTypeEnum.class);
+
+    public FetchCoalescer(@Value("${expression.fetch.coalescing.enabled:false}") boolean enabled,
+                          @Value("${expression.fetch.coalescing.window-micros:2000}") long windowMicros,
+                          @Value("${expression.fetch.coalescing.max-batch-size:100}") int maxBatchSize,
+                          @Value("${expression.fetch.coalescing.threads:4}") int threads) {
+        this.enabled = enabled;
+        this.windowMicros = Math.max(0, windowMicros);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "fetch-coalescer-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        for (EventTypeEnum event : EventTypeEnum.values()) {
+            loading.put(event, new AtomicInteger());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 运行时替换了 EventHandler 后，新的策略可能支持批量查询，重新判断所有的表
+     */
+    @EventListener
+    public void onStrategyChanged(StrategyChangedEvent event) {
+        if (event.type() == EventHandler.class) {
+            unsupported.clear();
+        }
+    }
+
+    /**
+     * 这张表的查询是否需要合并
+     */
+    public boolean isCoalescing(EventTypeEnum event) {
+        return enabled && !unsupported.contains(event);
+    }
+
+    /**
+     * 查询一个唯一键的数据，和同一时间窗口内同一张表的其他唯一键合并成一次查询，调用线程等待查询结果
+     *
+     * @param event  表
+     * @param key    唯一键
+     * @param fields 用到的字段，为 null 时查询整条数据
+     * @return findByKey 返回的对象
+     */
+    public Object load(EventTypeEnum event, String key, Set<String> fields) {
+        LoadKey loadKey = new LoadKey(event, fields, key);
+        CompletableFuture<Object> future = inflight.get(loadKey);
+        if (future == null) {
+            CompletableFuture<Object> created = new CompletableFuture<>();
+            future = inflight.putIfAbsent(loadKey, created);
+            if (future == null) {
+                future = created;
+                enqueue(loadKey, created);
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // 和直接调用 findByKey 一样抛出原始异常
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void enqueue(LoadKey loadKey, CompletableFuture<Object> future) {
+        BatchKey batchKey = new BatchKey(loadKey.event(), loadKey.fields());
+        // 这张表没有其他正在等待或者正在查询的唯一键，等待 window 也不会有可以合并的查询
+        boolean alone = loading.get(loadKey.event()).getAndIncrement() == 0;
+        Batch[] full = new Batch[1];
+        pending.compute(batchKey, (k, batch) -> {
+            if (batch == null) {
+                batch = new Batch(k);
+                if (alone) {
+                    batch.futures.put(loadKey.key(), future);
+                    full[0] = batch;
+                    return null;
+                }
+                Batch created = batch;
+                scheduler.schedule(() -> flush(created), windowMicros, TimeUnit.MICROSECONDS);
+            }
+            batch.futures.put(loadKey.key(), future);
+            if (batch.futures.size() >= maxBatchSize) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (full[0] != null) {
+            // 攒够了一批或者不需要等待，直接在调用线程上查询
+            dispatch(full[0]);
+        }
+    }
+
+    private void flush(Batch batch) {
+        if (pending.remove(batch.key, batch)) {
+            dispatch(batch);
+        }
+    }
+
+    private void dispatch(Batch batch) {
+        EventTypeEnum event = batch.key.event();
+        Set<String> fields = batch.key.fields();
+        serviceMetrics.batchSize(event).record(batch.futures.size());
+        serviceMetrics.batchWait(event).record(System.nanoTime() - batch.createdAt, TimeUnit.NANOSECONDS);
+        try {
+            EventHandler handler = strategyContext.get(EventHandler.class, event);
+            Map<String, ?> rows = null;
+            if (!unsupported.contains(event)) {
+                List<String> keys = new ArrayList<>(batch.futures.keySet());
+                long start = System.nanoTime();
+                try {
+                    rows = fields == null ? handler.findByKeys(keys) : handler.findByKeys(keys, fields);
+                } finally {
+                    serviceMetrics.findByKeys(event).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                if (rows == null) {
+                    unsupported.add(event);
+                    log.info("EventHandler for {} does not support findByKeys, stop coalescing", event);
+                }
+            }
+            if (rows != null) {
+                for (Map.Entry<String, CompletableFuture<Object>> entry : batch.futures.entrySet()) {
+                    entry.getValue().complete(rows.get(entry.getKey()));
+                }
+            } else {
+                for (Map.Entry<String, CompletableFuture<Object>> entry : batch.futures.entrySet()) {
+                    long start = System.nanoTime();
+                    try {
+                        String key = entry.getKey();
+                        entry.getValue().complete(fields == null ? handler.findByKey(key) : handler.findByKey(key, fields));
+                    } catch (RuntimeException e) {
+                        entry.getValue().completeExceptionally(e);
+                    } finally {
+                        serviceMetrics.findByKey(event).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            batch.futures.values().forEach(future -> future.completeExceptionally(e));
+        } finally {
+            batch.futures.forEach((key, future) -> inflight.remove(new LoadKey(event, fields, key), future));
+            loading.get(event).addAndGet(-batch.futures.size());
+        }
+    }
+
+    private record BatchKey(EventTypeEnum event, Set<String> fields) {
+    }
+
+    private record LoadKey(EventTypeEnum event, Set<String> fields, String key) {
+    }
+
+    /**
+     * 一个批次：唯一键 -> 等待结果的 future，只在 pending.compute 中修改
+     */
+    private static final class Batch {
+
+        private final BatchKey key;
+
+        private final long createdAt = System.nanoTime();
+
+        private final Map<String, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+
+        private Batch(BatchKey key) {
+            this.key = key;
+        }
+    }
+}
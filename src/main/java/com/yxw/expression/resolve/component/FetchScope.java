@@ -0,0 +1,110 @@
+package com.yxw.expression.resolve.component;
+
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次求值内的数据获取范围
+ * 同一次求值中，同一张表、同一个唯一键的数据只会查询一次，后续的操作数直接复用查询结果
+ * 只在一次求值内有效，不能跨线程共享
+ *
+ * @author luffytmac
+ */
+public class FetchScope {
+
+    private final Map<EventTypeEnum, Map<String, Map<String, Object>>> rows = new EnumMap<>(EventTypeEnum.class);
+
+    /**
+     * 预取超时、还在进行中的查询，求值用到时等待这次查询，不再重复查询；没有超时的预取时为 null
+     */
+    private Map<EventTypeEnum, Map<String, CompletableFuture<Map<String, Object>>>> pending;
+
+    /**
+     * 实际查询的次数
+     */
+    private int fetchCount;
+
+    /**
+     * 求值前预取的次数，包含在 fetchCount 中
+     */
+    private int prefetchCount;
+
+    /**
+     * 复用查询结果而省掉的查询次数
+     */
+    private int savedCount;
+
+    /**
+     * 获取已经查询过的数据，没有查询过返回 null
+     */
+    Map<String, Object> get(EventTypeEnum event, String key) {
+        Map<String, Map<String, Object>> tableRows = rows.get(event);
+        if (tableRows == null) {
+            return null;
+        }
+        Map<String, Object> row = tableRows.get(key);
+        if (row != null) {
+            savedCount++;
+        }
+        return row;
+    }
+
+    void put(EventTypeEnum event, String key, Map<String, Object> row) {
+        fetchCount++;
+        rows.computeIfAbsent(event, e -> new HashMap<>()).put(key, row);
+    }
+
+    /**
+     * 是否已经查询过，不计入复用次数
+     */
+    boolean contains(EventTypeEnum event, String key) {
+        Map<String, Map<String, Object>> tableRows = rows.get(event);
+        if (tableRows != null && tableRows.containsKey(key)) {
+            return true;
+        }
+        Map<String, CompletableFuture<Map<String, Object>>> tablePending = pending == null ? null : pending.get(event);
+        return tablePending != null && tablePending.containsKey(key);
+    }
+
+    /**
+     * 放入预取超时、还在进行中的查询
+     */
+    void pending(EventTypeEnum event, String key, CompletableFuture<Map<String, Object>> future) {
+        if (pending == null) {
+            pending = new EnumMap<>(EventTypeEnum.class);
+        }
+        pending.computeIfAbsent(event, e -> new HashMap<>()).put(key, future);
+    }
+
+    /**
+     * 取出进行中的查询，没有时返回 null
+     */
+    CompletableFuture<Map<String, Object>> takePending(EventTypeEnum event, String key) {
+        Map<String, CompletableFuture<Map<String, Object>>> tablePending = pending == null ? null : pending.get(event);
+        return tablePending == null ? null : tablePending.remove(key);
+    }
+
+    /**
+     * 放入求值前预取的数据，只能在求值线程上调用
+     */
+    void prefetched(EventTypeEnum event, String key, Map<String, Object> row) {
+        prefetchCount++;
+        put(event, key, row);
+    }
+
+    public int getFetchCount() {
+        return fetchCount;
+    }
+
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public int getSavedCount() {
+        return savedCount;
+    }
+}
@@ -1,13 +1,29 @@
 package com.yxw.expression.resolve.component;
 
 import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.enums.base.BaseEnum;
+import com.yxw.expression.resolve.strategycore.StrategyChangedEvent;
 import com.yxw.expression.resolve.strategycore.StrategyContext;
 import com.yxw.expression.resolve.strategycore.handler.EventHandler;
 import com.yxw.expression.resolve.utils.BeanToMapConverter;
+import com.google.common.cache.CacheStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
+import java.util.EnumMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 利用策略模式进行数据获取，每个event对应不同的表，每张表对应一个策略，策略中定义了获取数据的方式
@@ -19,28 +35,195 @@ public class FetchTableData {
     @Resource
     private StrategyContext strategyContext;
 
+    @Resource
+    private FetchCoalescer fetchCoalescer;
+
+    @Resource
+    private Environment environment;
+
+    @Resource
+    private ServiceMetrics serviceMetrics;
+
+    /**
+     * 配置了缓存的表 -> 这张表的数据缓存
+     */
+    private final Map<EventTypeEnum, TableRowCache> caches = new EnumMap<>(EventTypeEnum.class);
+
+    /**
+     * 缓存后台刷新用的线程
+     */
+    private ExecutorService refreshExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        refreshExecutor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "table-cache-refresh-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (EventTypeEnum event : EventTypeEnum.values()) {
+            TableRowCache cache = TableRowCache.create(event, environment, (key, fields) -> loadTableData(event, key, fields), refreshExecutor);
+            if (cache != null) {
+                caches.put(event, cache);
+                serviceMetrics.monitor(cache.cache(), "table." + event.getTable());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 运行时注册、注销了 EventHandler 后，丢弃涉及的表中由旧策略查询出来的缓存
+     * 默认策略对所有的表生效，注册、注销默认策略时丢弃所有的缓存
+     */
+    @EventListener
+    public void onStrategyChanged(StrategyChangedEvent event) {
+        if (event.type() != EventHandler.class) {
+            return;
+        }
+        if (event.strategy().isDefault()) {
+            caches.values().forEach(TableRowCache::invalidateAll);
+            return;
+        }
+        for (BaseEnum condition : event.conditions()) {
+            if (condition instanceof EventTypeEnum) {
+                invalidate((EventTypeEnum) condition);
+            }
+        }
+    }
+
     /**
      * 根据表名和条件获取数据，最后将实体数据转换为一个map数据返回
      */
     public Map<String, Object> fetchData(EventTypeEnum event, Map<String, Object> contextMap) {
         Assert.notNull(event, "event can not be null");
-        //纳入处理的表，可能每一张获取数据的方式都有所不用，所以这里需要按照event类型进行数据处理
+        return fetchRow(event, resolveKey(event, contextMap));
+    }
 
+    /**
+     * 根据表名和条件获取数据，同一个 FetchScope 内同一张表、同一个唯一键的数据只查询一次
+     * fields 为编译阶段收集的这张表用到的所有字段，同一个 FetchScope 内同一张表的 fields 相同，所以缓存的数据包含所有用到的字段
+     */
+    public Map<String, Object> fetchData(EventTypeEnum event, Map<String, Object> contextMap, FetchScope scope, Set<String> fields) {
+        Assert.notNull(event, "event can not be null");
+        String key = resolveKey(event, contextMap);
+        Map<String, Object> row = scope.get(event, key);
+        if (row != null) {
+            return row;
+        }
+        row = awaitPending(scope.takePending(event, key));
+        if (row != null) {
+            scope.prefetched(event, key, row);
+            return row;
+        }
+        row = fetchRow(event, key, fields);
+        scope.put(event, key, row);
+        return row;
+    }
+
+    /**
+     * 等待预取超时后还在进行中的查询，查询失败时返回 null，由调用方重新查询
+     */
+    private static Map<String, Object> awaitPending(CompletableFuture<Map<String, Object>> pending) {
+        if (pending == null) {
+            return null;
+        }
+        try {
+            return pending.join();
+        } catch (CompletionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 从上下文中获取每张表查询用的唯一键
+     */
+    public String resolveKey(EventTypeEnum event, Map<String, Object> contextMap) {
+        return (String) contextMap.get(keyField(event));
+    }
+
+    /**
+     * 每张表查询用的唯一键在上下文中的字段名，编译时据此把唯一键加入上下文的布局，见 ContextLayout
+     */
+    public static String keyField(EventTypeEnum event) {
+        //纳入处理的表，可能每一张获取数据的方式都有所不用，所以这里需要按照event类型进行数据处理
         if(event == EventTypeEnum.TABLE1){
-            String id = (String) contextMap.get("table1_id");
-            Object tableData = strategyContext.get(EventHandler.class, EventTypeEnum.TABLE1).findByKey(id);
-            return BeanToMapConverter.beanToSnakeCaseMap(tableData);
+            return "table1_id";
         } else if (event == EventTypeEnum.TABLE2){
-            String id = (String) contextMap.get("table2_id");
-            Object tableData = strategyContext.get(EventHandler.class, EventTypeEnum.TABLE2).findByKey(id);
-            return BeanToMapConverter.beanToSnakeCaseMap(tableData);
+            return "table2_id";
         } else {
             //其他的event表
-            String otherId = (String) contextMap.get("other_id");
-            Object otherTableData = strategyContext.get(EventHandler.class, event).findByKey(otherId);
-            return BeanToMapConverter.beanToSnakeCaseMap(otherTableData);
+            return "other_id";
         }
 
         //如果后面还有其他的表，或者是按照ID进行查询，在这里处理就行
     }
+
+    /**
+     * 根据唯一键查询一张表的数据
+     */
+    public Map<String, Object> fetchRow(EventTypeEnum event, String key) {
+        return fetchRow(event, key, null);
+    }
+
+    /**
+     * 根据唯一键查询一张表中指定字段的数据，fields 为 null 时查询整条数据
+     * 配置了缓存的表先读缓存，缓存未命中时再查询
+     */
+    public Map<String, Object> fetchRow(EventTypeEnum event, String key, Set<String> fields) {
+        TableRowCache cache = caches.get(event);
+        if (cache != null) {
+            return cache.get(key, fields);
+        }
+        return BeanToMapConverter.beanToSnakeCaseView(loadTableData(event, key, fields));
+    }
+
+    /**
+     * 失效一张表中一个唯一键的缓存，这张表没有配置缓存时什么都不做
+     */
+    public void invalidate(EventTypeEnum event, String key) {
+        TableRowCache cache = caches.get(event);
+        if (cache != null) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 失效一张表的所有缓存，这张表没有配置缓存时什么都不做
+     */
+    public void invalidate(EventTypeEnum event) {
+        TableRowCache cache = caches.get(event);
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * 配置了缓存的表 -> 缓存的命中、未命中、加载等统计信息
+     */
+    public Map<EventTypeEnum, CacheStats> cacheStats() {
+        Map<EventTypeEnum, CacheStats> stats = new EnumMap<>(EventTypeEnum.class);
+        caches.forEach((event, cache) -> stats.put(event, cache.stats()));
+        return stats;
+    }
+
+    /**
+     * 通过策略查询数据，开启查询合并时，和其他并发的求值对同一张表的查询合并成一次批量查询
+     */
+    private Object loadTableData(EventTypeEnum event, String key, Set<String> fields) {
+        if (fetchCoalescer != null && fetchCoalescer.isCoalescing(event)) {
+            return fetchCoalescer.load(event, key, fields);
+        }
+        EventHandler handler = strategyContext.get(EventHandler.class, event);
+        long start = System.nanoTime();
+        try {
+            return fields == null ? handler.findByKey(key) : handler.findByKey(key, fields);
+        } finally {
+            serviceMetrics.findByKey(event).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
 }
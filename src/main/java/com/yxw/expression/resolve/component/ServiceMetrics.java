@@ -0,0 +1,204 @@
+package com.yxw.expression.resolve.component;
+
+import com.google.common.cache.Cache;
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.expression.compile.CompiledExpression;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 服务的 Micrometer 指标，通过 /actuator/prometheus 或 /actuator/metrics 查看
+ * 所有 meter 都在启动时（或者表达式第一次求值时）创建好，记录时直接使用，不再按照 tag 查找、创建 meter
+ *
+ * <pre>
+ * expression.evaluation          求值耗时，tag：kind（registered 注册的表达式 / adhoc 请求中提交的表达式）、expression（表达式id / 内容hash）
+ * expression.evaluation.results  求值结果次数，tag：kind、expression、result（true / false / error）
+ * expression.parse.failures      表达式解析失败（求值结果为 false）的次数
+ * cache.*                        表达式缓存（cache=expression）和表数据缓存（cache=table.{表名}）的命中、未命中、淘汰
+ * expression.fetch               EventHandler.findByKey 的耗时和次数，tag：table
+ * expression.fetch.batch         EventHandler.findByKeys（查询合并）的耗时和次数，tag：table
+ * expression.fetch.batch.size    查询合并每个批次的唯一键个数，tag：table
+ * expression.fetch.batch.wait    查询合并每个批次从第一个唯一键加入到开始查询的等待时间，tag：table
+ * s3.requests                    S3 上传、下载、列表的耗时，tag：operation（upload / download / list）
+ * s3.transfer                    S3 上传、下载的字节数，tag：operation
+ * </pre>
+ *
+ * @author luffytmac
+ */
+@Component
+public class ServiceMetrics {
+
+    public static final String KIND_REGISTERED = "registered";
+    public static final String KIND_ADHOC = "adhoc";
+
+    private static final String EVALUATION = "expression.evaluation";
+    private static final String EVALUATION_RESULTS = "expression.evaluation.results";
+
+    private final MeterRegistry registry;
+
+    /**
+     * 耗时是否发布直方图（Prometheus 的 bucket），表达式很多时可以关闭以减少时间序列
+     */
+    private final boolean histogram;
+
+    private final Counter parseFailures;
+
+    private final Map<EventTypeEnum, Timer> findByKey = new EnumMap<>(EventTypeEnum.class);
+
+    private final Map<EventTypeEnum, Timer> findByKeys = new EnumMap<>(EventTypeEnum.class);
+
+    private final Map<EventTypeEnum, DistributionSummary> batchSize = new EnumMap<>(EventTypeEnum.class);
+
+    private final Map<EventTypeEnum, Timer> batchWait = new EnumMap<>(EventTypeEnum.class);
+
+    private final Timer s3Upload;
+    private final Timer s3Download;
+    private final Timer s3List;
+
+    private final DistributionSummary s3UploadBytes;
+    private final DistributionSummary s3DownloadBytes;
+
+    /**
+     * 没有 MeterRegistry 时（比如只启动了部分 bean 的基准测试）使用一个只在内存中累计的 registry
+     */
+    public ServiceMetrics(ObjectProvider<MeterRegistry> registryProvider,
+                          @Value("${expression.metrics.histogram:true}") boolean histogram) {
+        this.registry = registryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.histogram = histogram;
+        this.parseFailures = Counter.builder("expression.parse.failures").register(registry);
+        for (EventTypeEnum event : EventTypeEnum.values()) {
+            findByKey.put(event, timer("expression.fetch").tag("table", event.getTable()).register(registry));
+            findByKeys.put(event, timer("expression.fetch.batch").tag("table", event.getTable()).register(registry));
+            batchSize.put(event, DistributionSummary.builder("expression.fetch.batch.size").baseUnit("keys")
+                    .tag("table", event.getTable()).register(registry));
+            batchWait.put(event, timer("expression.fetch.batch.wait").tag("table", event.getTable()).register(registry));
+        }
+        this.s3Upload = timer("s3.requests").tag("operation", "upload").register(registry);
+        this.s3Download = timer("s3.requests").tag("operation", "download").register(registry);
+        this.s3List = timer("s3.requests").tag("operation", "list").register(registry);
+        this.s3UploadBytes = DistributionSummary.builder("s3.transfer").baseUnit("bytes").tag("operation", "upload").register(registry);
+        this.s3DownloadBytes = DistributionSummary.builder("s3.transfer").baseUnit("bytes").tag("operation", "download").register(registry);
+    }
+
+    private Timer.Builder timer(String name) {
+        return Timer.builder(name)
+                .publishPercentileHistogram(histogram)
+                .minimumExpectedValue(Duration.ofNanos(500))
+                .maximumExpectedValue(Duration.ofSeconds(10));
+    }
+
+    /**
+     * 请求中提交的表达式的求值指标，以内容hash区分
+     */
+    public ExpressionMeters meters(CompiledExpression expression) {
+        ExpressionMeters meters = expression.getMeters();
+        if (meters == null) {
+            meters = createMeters(KIND_ADHOC, hashTag(expression));
+            expression.setMeters(meters);
+        }
+        return meters;
+    }
+
+    /**
+     * 注册的表达式的求值指标，以表达式id区分，同一个id的所有版本记录到同一组 meter
+     */
+    public ExpressionMeters meters(CompiledExpression expression, String id) {
+        ExpressionMeters meters = expression.getMeters();
+        if (meters == null) {
+            meters = createMeters(KIND_REGISTERED, id);
+            expression.setMeters(meters);
+        }
+        return meters;
+    }
+
+    /**
+     * 并发创建时 MeterRegistry 返回同一个 meter，多创建的 ExpressionMeters 和保存下来的那个等价
+     */
+    private ExpressionMeters createMeters(String kind, String name) {
+        Tags tags = Tags.of("kind", kind, "expression", name);
+        return new ExpressionMeters(
+                timer(EVALUATION).tags(tags).register(registry),
+                Counter.builder(EVALUATION_RESULTS).tags(tags).tag("result", "true").register(registry),
+                Counter.builder(EVALUATION_RESULTS).tags(tags).tag("result", "false").register(registry),
+                Counter.builder(EVALUATION_RESULTS).tags(tags).tag("result", "error").register(registry));
+    }
+
+    /**
+     * 表达式被缓存淘汰、从注册表中删除后删除它的 meter，避免时间序列无限增长
+     */
+    public void removeAdhoc(CompiledExpression expression) {
+        remove(KIND_ADHOC, hashTag(expression));
+    }
+
+    public void removeRegistered(String id) {
+        remove(KIND_REGISTERED, id);
+    }
+
+    private void remove(String kind, String name) {
+        registry.find(EVALUATION).tags("kind", kind, "expression", name).meters().forEach(registry::remove);
+        registry.find(EVALUATION_RESULTS).tags("kind", kind, "expression", name).meters().forEach(registry::remove);
+    }
+
+    private static String hashTag(CompiledExpression expression) {
+        return String.valueOf(expression.getHash());
+    }
+
+    /**
+     * 监控 Guava 缓存的命中率，缓存需要开启 recordStats
+     */
+    public void monitor(Cache<?, ?> cache, String name) {
+        GuavaCacheMetrics.monitor(registry, cache, name);
+    }
+
+    public void parseFailed() {
+        parseFailures.increment();
+    }
+
+    public Timer findByKey(EventTypeEnum event) {
+        return findByKey.get(event);
+    }
+
+    public Timer findByKeys(EventTypeEnum event) {
+        return findByKeys.get(event);
+    }
+
+    public DistributionSummary batchSize(EventTypeEnum event) {
+        return batchSize.get(event);
+    }
+
+    public Timer batchWait(EventTypeEnum event) {
+        return batchWait.get(event);
+    }
+
+    public Timer s3Upload() {
+        return s3Upload;
+    }
+
+    public Timer s3Download() {
+        return s3Download;
+    }
+
+    public Timer s3List() {
+        return s3List;
+    }
+
+    public DistributionSummary s3UploadBytes() {
+        return s3UploadBytes;
+    }
+
+    public DistributionSummary s3DownloadBytes() {
+        return s3DownloadBytes;
+    }
+}
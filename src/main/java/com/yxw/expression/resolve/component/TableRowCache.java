@@ -0,0 +1,225 @@
+package com.yxw.expression.resolve.component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.utils.BeanToMapConverter;
+import org.springframework.core.env.Environment;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * 一张表的数据缓存，缓存的是转换好的下划线命名的数据，不是查询返回的对象
+ * 缓存未命中时通过 loader 查询（同一个唯一键并发未命中只查询一次），查不到的数据也会缓存，过期时间单独配置，
+ * 过期后在后台重新查询，不会在一次读取中查询两次
+ * 配置了 refresh-ms 时，数据写入超过这个时间后，下一次读取触发后台刷新，刷新完成前继续返回旧数据
+ * 每个唯一键只缓存一条数据：查询的字段是这张表到目前为止被读取过的所有字段的并集，不同表达式用到同一条数据的不同字段时共用一次查询和一份缓存；
+ * 读取到并集扩大之前缓存的数据、缺少需要的字段时，这个唯一键重新查询一次
+ *
+ * @author luffytmac
+ */
+public final class TableRowCache {
+
+    private static final String PREFIX = "expression.table-cache.";
+
+    private final EventTypeEnum event;
+
+    private final LoadingCache<String, CachedRow> cache;
+
+    /**
+     * 这张表被读取过的字段的并集，查询时只查询这些字段，为 null 代表查询整条数据；只会扩大
+     */
+    private volatile Set<String> fields = Collections.emptySet();
+
+    /**
+     * 查不到的数据的缓存时间，0 代表不缓存查不到的数据
+     */
+    private final long negativeTtlNanos;
+
+    private TableRowCache(EventTypeEnum event, Settings settings, BiFunction<String, Set<String>, Object> loader, Executor refreshExecutor) {
+        this.event = event;
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(settings.negativeTtlMillis());
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(settings.maxSize())
+                .recordStats();
+        if (settings.ttlMillis() > 0) {
+            builder.expireAfterWrite(settings.ttlMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (settings.refreshMillis() > 0) {
+            builder.refreshAfterWrite(settings.refreshMillis(), TimeUnit.MILLISECONDS);
+        }
+        CacheLoader<String, CachedRow> rowLoader = CacheLoader.from(key -> load(loader, key, fields));
+        this.cache = builder.build(CacheLoader.asyncReloading(rowLoader, refreshExecutor));
+    }
+
+    /**
+     * 按照配置创建一张表的缓存，max-size 小于等于 0 代表这张表不缓存，返回 null
+     * 每张表的配置为 expression.table-cache.{表名}.xxx，没有配置时使用 expression.table-cache.default.xxx
+     */
+    static TableRowCache create(EventTypeEnum event, Environment environment, BiFunction<String, Set<String>, Object> loader,
+                                Executor refreshExecutor) {
+        Settings settings = new Settings(
+                property(environment, event, "max-size"),
+                property(environment, event, "ttl-ms"),
+                property(environment, event, "refresh-ms"),
+                property(environment, event, "negative-ttl-ms"));
+        if (settings.maxSize() <= 0) {
+            return null;
+        }
+        return new TableRowCache(event, settings, loader, refreshExecutor);
+    }
+
+    private static long property(Environment environment, EventTypeEnum event, String name) {
+        Long value = environment.getProperty(PREFIX + event.getTable() + "." + name, Long.class);
+        if (value == null) {
+            value = environment.getProperty(PREFIX + "default." + name, Long.class, 0L);
+        }
+        return value;
+    }
+
+    /**
+     * 获取一条数据，查不到时返回空 map
+     *
+     * @param key    唯一键
+     * @param fields 用到的字段，为 null 时需要整条数据（之后这张表都查询整条数据）
+     */
+    public Map<String, Object> get(String key, Set<String> fields) {
+        widen(fields);
+        CachedRow row = getUnchecked(key);
+        if (!row.found()) {
+            expireMissing(key, row);
+        } else if (!row.covers(fields)) {
+            // 缓存的数据是在字段并集扩大之前查询的，按照扩大后的并集重新查询
+            cache.asMap().remove(key, row);
+            row = getUnchecked(key);
+        }
+        return row.row();
+    }
+
+    /**
+     * 把字段加入这张表的字段并集，并集已经包含这些字段时不加锁
+     */
+    private void widen(Set<String> requested) {
+        Set<String> current = fields;
+        if (current == null || (requested != null && current.containsAll(requested))) {
+            return;
+        }
+        synchronized (this) {
+            current = fields;
+            if (current == null || requested == null) {
+                fields = null;
+                return;
+            }
+            Set<String> union = new HashSet<>(current);
+            union.addAll(requested);
+            fields = Collections.unmodifiableSet(union);
+        }
+    }
+
+    /**
+     * 失效一个唯一键的缓存
+     */
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * 失效整张表的缓存
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public EventTypeEnum getEvent() {
+        return event;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * 底层的 Guava 缓存，只用于监控命中率
+     */
+    Cache<?, ?> cache() {
+        return cache;
+    }
+
+    /**
+     * 查不到的数据不重新查询，本次直接返回查不到
+     * 不缓存查不到的数据时，本次查询完成后移除，下一次读取重新查询（并发等待同一次查询的读取共用这次的结果）
+     * 查不到的数据过期后，触发一次后台刷新，刷新完成前继续返回查不到，和 refresh-ms 的行为一致
+     */
+    private void expireMissing(String key, CachedRow row) {
+        if (negativeTtlNanos <= 0) {
+            cache.asMap().remove(key, row);
+        } else if (System.nanoTime() - row.loadedAt() >= negativeTtlNanos) {
+            cache.refresh(key);
+        }
+    }
+
+    private CachedRow getUnchecked(String key) {
+        try {
+            return cache.getUnchecked(key);
+        } catch (UncheckedExecutionException e) {
+            // 和直接查询一样抛出原始异常
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static CachedRow load(BiFunction<String, Set<String>, Object> loader, String key, Set<String> fields) {
+        Object bean = loader.apply(key, fields);
+        if (bean == null) {
+            return new CachedRow(Collections.emptyMap(), fields, false, System.nanoTime());
+        }
+        return new CachedRow(toRow(bean, fields), fields, true, System.nanoTime());
+    }
+
+    /**
+     * 把查询返回的对象转换成不可修改的 map，只保留用到的字段，缓存中不持有查询返回的对象
+     */
+    private static Map<String, Object> toRow(Object bean, Set<String> fields) {
+        if (fields == null) {
+            return Collections.unmodifiableMap(BeanToMapConverter.beanToSnakeCaseMap(bean));
+        }
+        Map<String, Object> view = BeanToMapConverter.beanToSnakeCaseView(bean);
+        Map<String, Object> row = new HashMap<>(fields.size() * 2);
+        for (String field : fields) {
+            if (view.containsKey(field)) {
+                row.put(field, view.get(field));
+            }
+        }
+        return Collections.unmodifiableMap(row);
+    }
+
+    private record Settings(long maxSize, long ttlMillis, long refreshMillis, long negativeTtlMillis) {
+    }
+
+    /**
+     * @param fields 查询时的字段并集，null 代表整条数据
+     */
+    private record CachedRow(Map<String, Object> row, Set<String> fields, boolean found, long loadedAt) {
+
+        boolean covers(Set<String> requested) {
+            return fields == null || (requested != null && fields.containsAll(requested));
+        }
+    }
+}
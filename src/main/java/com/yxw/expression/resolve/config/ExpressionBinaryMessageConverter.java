@@ -0,0 +1,46 @@
+package com.yxw.expression.resolve.config;
+
+import com.yxw.expression.resolve.expression.codec.ExpressionBinaryCodec;
+import com.yxw.expression.resolve.request.EvaluationRequest;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Content-Type 为 application/x-expression 的 /validate 请求体，表达式为二进制格式，见 ExpressionBinaryCodec
+ *
+ * @author luffytmac
+ */
+@Component
+public class ExpressionBinaryMessageConverter extends AbstractHttpMessageConverter<EvaluationRequest> {
+
+    public ExpressionBinaryMessageConverter() {
+        super(MediaType.parseMediaType(ExpressionBinaryCodec.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return EvaluationRequest.class == clazz;
+    }
+
+    @Override
+    @NonNull
+    protected EvaluationRequest readInternal(@NonNull Class<? extends EvaluationRequest> clazz, @NonNull HttpInputMessage inputMessage) throws IOException {
+        try {
+            return ExpressionBinaryCodec.decodeRequest(inputMessage.getBody().readAllBytes());
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException(e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(@NonNull EvaluationRequest request, @NonNull HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(ExpressionBinaryCodec.encodeRequest(request.getExpressionBinary(), request.getContext()));
+    }
+}
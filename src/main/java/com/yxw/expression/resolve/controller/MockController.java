@@ -1,26 +1,299 @@
 package com.yxw.expression.resolve.controller;
 
+import com.yxw.expression.resolve.component.ContextSchemaRegistry;
+import com.yxw.expression.resolve.component.ExpressionRegistry;
+import com.yxw.expression.resolve.component.FetchTableData;
+import com.yxw.expression.resolve.dto.BatchEvaluationResult;
+import com.yxw.expression.resolve.dto.RegisteredExpressionInfo;
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import com.yxw.expression.resolve.expression.codec.ExpressionBinaryCodec;
+import com.yxw.expression.resolve.expression.compile.ExpressionTrace;
+import com.yxw.expression.resolve.request.BatchEvaluationRequest;
 import com.yxw.expression.resolve.request.EvaluationRequest;
 import com.yxw.expression.resolve.service.ExpressionService;
+import com.yxw.expression.resolve.utils.JsonUtils;
 import jakarta.annotation.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Optional;
+
 @RestController
 public class MockController {
 
     @Resource
     private ExpressionService expressionService;
 
+    @Resource
+    private FetchTableData fetchTableData;
+
+    @Resource
+    private ExpressionRegistry expressionRegistry;
+
+    @Resource
+    private ContextSchemaRegistry contextSchemaRegistry;
+
+    /**
+     * schema 参数为上下文类型声明的名称，见 /context-schemas，没有这个名称的类型声明时返回 400
+     */
     @PostMapping("/validate")
-    public ResponseEntity<Boolean> validate(@RequestBody EvaluationRequest request) {
+    public ResponseEntity<Boolean> validate(@RequestBody EvaluationRequest request,
+                                            @RequestParam(value = "schema", required = false) String schema) {
         try {
-            boolean b = expressionService.doEvaluateExpression(request.getExpressionJson(), request.getContext());
+            ContextSchema contextSchema = contextSchemaRegistry.require(schema);
+            boolean b;
+            if (request.getExpressionBinary() != null) {
+                b = expressionService.doEvaluateExpression(request.getExpressionBinary(), contextSchema, request.getContext());
+            } else if (request.getExpression() != null) {
+                b = expressionService.doEvaluateExpression(request.getExpression(), contextSchema, request.getContext());
+            } else {
+                b = expressionService.doEvaluateExpression(request.getExpressionJson(), contextSchema, request.getContext());
+            }
             return ResponseEntity.ok(b);
+        }catch (IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(false);
+        }catch (Exception e){
+            return ResponseEntity.internalServerError().body(false);
+        }
+    }
+
+    /**
+     * explain 模式：/validate?explain=true 返回执行过程（每个节点的结果、耗时、操作数的值、被短路跳过的节点、数据库查询），
+     * 不带这个参数时走上面的 validate，没有任何额外开销
+     */
+    @PostMapping(value = "/validate", params = "explain=true")
+    public ResponseEntity<ExpressionTrace> explain(@RequestBody EvaluationRequest request,
+                                                   @RequestParam(value = "schema", required = false) String schema) {
+        try {
+            ContextSchema contextSchema = contextSchemaRegistry.require(schema);
+            ExpressionTrace trace;
+            if (request.getExpressionBinary() != null) {
+                trace = expressionService.doExplainExpression(request.getExpressionBinary(), contextSchema, request.getContext());
+            } else if (request.getExpression() != null) {
+                trace = expressionService.doExplainExpression(request.getExpression(), contextSchema, request.getContext());
+            } else {
+                trace = expressionService.doExplainExpression(request.getExpressionJson(), contextSchema, request.getContext());
+            }
+            return ResponseEntity.ok(trace);
+        }catch (IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(ExpressionTrace.of(false, e.getMessage()));
+        }catch (Exception e){
+            return ResponseEntity.internalServerError().body(ExpressionTrace.of(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * 表达式json转换成二进制格式
+     */
+    @PostMapping(value = "/expression/binary", produces = ExpressionBinaryCodec.MEDIA_TYPE)
+    public ResponseEntity<byte[]> toBinary(@RequestBody String expressionJson) {
+        try {
+            return ResponseEntity.ok(ExpressionBinaryCodec.encode(JsonUtils.jsonToObject(expressionJson, BaseNode.class)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 二进制格式的表达式转换成表达式json
+     */
+    @PostMapping(value = "/expression/json", consumes = ExpressionBinaryCodec.MEDIA_TYPE)
+    public ResponseEntity<String> toJson(@RequestBody byte[] expressionBinary) {
+        try {
+            return ResponseEntity.ok(JsonUtils.toJson(ExpressionBinaryCodec.decode(expressionBinary)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 同一个表达式对多行上下文批量求值，返回按位保存的结果，表达式解析失败时返回 400
+     */
+    @PostMapping("/validate/batch")
+    public ResponseEntity<BatchEvaluationResult> validateBatch(@RequestBody BatchEvaluationRequest request) {
+        int size = request.getContexts() == null ? 0 : request.getContexts().size();
+        try {
+            BitSet bitSet = expressionService.doEvaluateBatch(request.getExpressionJson(), request.getContexts());
+            return ResponseEntity.ok(BatchEvaluationResult.of(size, bitSet));
+        }catch (IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(BatchEvaluationResult.of(size, new BitSet()));
+        }catch (Exception e){
+            return ResponseEntity.internalServerError().body(BatchEvaluationResult.of(size, new BitSet()));
+        }
+    }
+
+    /**
+     * 注册规则集，请求体为 规则id -> 表达式json
+     */
+    @PutMapping("/rule-sets/{name}")
+    public ResponseEntity<Boolean> registerRuleSet(@PathVariable("name") String name, @RequestBody Map<String, String> rules) {
+        try {
+            expressionService.registerRuleSet(name, rules);
+            return ResponseEntity.ok(true);
         }catch (Exception e){
             return ResponseEntity.internalServerError().body(false);
         }
     }
+
+    /**
+     * 用同一个上下文对规则集中的所有规则求值，返回 规则id -> 求值结果
+     */
+    @PostMapping("/rule-sets/{name}/validate")
+    public ResponseEntity<Map<String, Boolean>> validateRuleSet(@PathVariable("name") String name, @RequestBody Map<String, Object> context) {
+        try {
+            return ResponseEntity.ok(expressionService.doEvaluateRuleSet(name, context));
+        }catch (IllegalArgumentException e){
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * 注册表达式的一个版本，请求体为表达式json，注册成功后成为当前版本
+     * 同一个版本号已经注册了不同的表达式时返回 409
+     */
+    @PutMapping(value = "/expressions/{id}/versions/{version}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<RegisteredExpressionInfo> registerExpression(@PathVariable("id") String id, @PathVariable("version") String version,
+                                                                       @RequestBody String expressionJson) {
+        try {
+            return ResponseEntity.ok(expressionRegistry.register(id, version, expressionJson));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 注册二进制格式的表达式的一个版本
+     */
+    @PutMapping(value = "/expressions/{id}/versions/{version}", consumes = ExpressionBinaryCodec.MEDIA_TYPE)
+    public ResponseEntity<RegisteredExpressionInfo> registerExpression(@PathVariable("id") String id, @PathVariable("version") String version,
+                                                                       @RequestBody byte[] expressionBinary) {
+        try {
+            return ResponseEntity.ok(expressionRegistry.register(id, version, expressionBinary));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 对注册的表达式的当前版本求值，请求体只有上下文
+     */
+    @PostMapping("/expressions/{id}/validate")
+    public ResponseEntity<Boolean> validateRegistered(@PathVariable("id") String id, @RequestBody Map<String, Object> context,
+                                                      @RequestParam(value = "schema", required = false) String schema) {
+        ContextSchema contextSchema;
+        try {
+            contextSchema = contextSchemaRegistry.require(schema);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(false);
+        }
+        try {
+            return ResponseEntity.ok(expressionService.doEvaluateRegistered(id, contextSchema, context));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * 对注册的表达式的当前版本求值并返回执行过程，见 /validate?explain=true
+     */
+    @PostMapping(value = "/expressions/{id}/validate", params = "explain=true")
+    public ResponseEntity<ExpressionTrace> explainRegistered(@PathVariable("id") String id, @RequestBody Map<String, Object> context,
+                                                            @RequestParam(value = "schema", required = false) String schema) {
+        ContextSchema contextSchema;
+        try {
+            contextSchema = contextSchemaRegistry.require(schema);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ExpressionTrace.of(false, e.getMessage()));
+        }
+        try {
+            return ResponseEntity.ok(expressionService.doExplainRegistered(id, contextSchema, context));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * 回滚到上一个版本，没有上一个版本时返回 409
+     */
+    @PostMapping("/expressions/{id}/rollback")
+    public ResponseEntity<RegisteredExpressionInfo> rollbackExpression(@PathVariable("id") String id) {
+        try {
+            return ResponseEntity.ok(expressionRegistry.rollback(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @GetMapping("/expressions/{id}")
+    public ResponseEntity<RegisteredExpressionInfo> expressionInfo(@PathVariable("id") String id) {
+        RegisteredExpressionInfo info = expressionRegistry.info(id);
+        return info == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(info);
+    }
+
+    @DeleteMapping("/expressions/{id}")
+    public ResponseEntity<Boolean> removeExpression(@PathVariable("id") String id) {
+        return expressionRegistry.remove(id) ? ResponseEntity.ok(true) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 注册或者替换上下文的类型声明，请求体为 字段 -> NUMBER|STRING|BOOLEAN|DATE，类型不支持时返回 400
+     */
+    @PutMapping("/context-schemas/{name}")
+    public ResponseEntity<ContextSchema> registerContextSchema(@PathVariable("name") String name, @RequestBody Map<String, String> fields) {
+        try {
+            return ResponseEntity.ok(contextSchemaRegistry.register(name, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/context-schemas")
+    public ResponseEntity<Map<String, ContextSchema>> contextSchemas() {
+        return ResponseEntity.ok(contextSchemaRegistry.all());
+    }
+
+    /**
+     * 失效一张表中一个唯一键的缓存
+     */
+    @DeleteMapping("/table-cache/{table}/{key}")
+    public ResponseEntity<Boolean> invalidateTableCache(@PathVariable("table") String table, @PathVariable("key") String key) {
+        Optional<EventTypeEnum> etOpt = EventTypeEnum.getByTable(table);
+        if (etOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        fetchTableData.invalidate(etOpt.get(), key);
+        return ResponseEntity.ok(true);
+    }
+
+    /**
+     * 失效一张表的所有缓存
+     */
+    @DeleteMapping("/table-cache/{table}")
+    public ResponseEntity<Boolean> invalidateTableCache(@PathVariable("table") String table) {
+        Optional<EventTypeEnum> etOpt = EventTypeEnum.getByTable(table);
+        if (etOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        fetchTableData.invalidate(etOpt.get());
+        return ResponseEntity.ok(true);
+    }
 }
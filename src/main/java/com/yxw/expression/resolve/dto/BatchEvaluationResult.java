@@ -0,0 +1,29 @@
+package com.yxw.expression.resolve.dto;
+
+import lombok.Data;
+
+import java.util.BitSet;
+
+/**
+ * 批量求值的结果，按位保存每一行上下文的求值结果
+ * 第 i 行的结果在 bits[i / 64] 的第 i % 64 位，和 java.util.BitSet#toLongArray 的布局一致
+ */
+@Data
+public class BatchEvaluationResult {
+
+    // 上下文的行数
+    private int size;
+
+    // 结果为 true 的行数
+    private int matched;
+
+    private long[] bits;
+
+    public static BatchEvaluationResult of(int size, BitSet bitSet) {
+        BatchEvaluationResult result = new BatchEvaluationResult();
+        result.setSize(size);
+        result.setMatched(bitSet.cardinality());
+        result.setBits(bitSet.toLongArray());
+        return result;
+    }
+}
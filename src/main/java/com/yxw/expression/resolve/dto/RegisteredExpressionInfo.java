@@ -0,0 +1,29 @@
+package com.yxw.expression.resolve.dto;
+
+import lombok.Data;
+
+/**
+ * 注册表中一个表达式的状态
+ */
+@Data
+public class RegisteredExpressionInfo {
+
+    private String id;
+
+    // 当前生效的版本
+    private String version;
+
+    // 可以回滚到的上一个版本，没有时为 null
+    private String previousVersion;
+
+    // 当前版本的注册时间
+    private long registeredAt;
+
+    // 当前版本二进制格式的字节数
+    private int size;
+
+    // 当前版本的执行层级和调用次数
+    private String tier;
+
+    private int invocations;
+}
@@ -0,0 +1,49 @@
+package com.yxw.expression.resolve.enums;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.util.Optional;
+
+/**
+ * 上下文字段声明的类型，见 {@link com.yxw.expression.resolve.expression.ContextSchema}
+ *
+ * @author luffytmac
+ */
+public enum FieldTypeEnum {
+
+    NUMBER("NUMBER", "数值"),
+    STRING("STRING", "字符串"),
+    BOOLEAN("BOOLEAN", "布尔"),
+    DATE("DATE", "日期"),
+
+    ;
+
+    private final String code;
+    private final String desc;
+
+
+    FieldTypeEnum(String code, String desc) {
+        this.code = code;
+        this.desc = desc;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+
+    public static Optional<FieldTypeEnum> getByCode(String code) {
+        if(StrUtil.isEmpty(code)){
+            return Optional.empty();
+        }
+        for (FieldTypeEnum value : FieldTypeEnum.values()) {
+            if (code.equalsIgnoreCase(value.getCode())) {
+                return Optional.of(value);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -1,24 +1,28 @@
 package com.yxw.expression.resolve.expression;
 
-import cn.hutool.core.convert.Convert;
 import cn.hutool.core.util.StrUtil;
 import com.yxw.expression.resolve.component.FetchTableData;
 import com.yxw.expression.resolve.enums.ComparisonEnum;
 import com.yxw.expression.resolve.enums.EventTypeEnum;
-import com.yxw.expression.resolve.utils.DateConverter;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
-import org.thymeleaf.util.StringUtils;
 
-import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
+import static com.yxw.expression.resolve.expression.ValueComparators.compareDateDifference;
+import static com.yxw.expression.resolve.expression.ValueComparators.compareDatesByUnit;
+import static com.yxw.expression.resolve.expression.ValueComparators.compareNumericDifference;
+import static com.yxw.expression.resolve.expression.ValueComparators.compareValues;
+import static com.yxw.expression.resolve.expression.ValueComparators.containsStartWithEndWith;
+import static com.yxw.expression.resolve.expression.ValueComparators.customizeEquals;
+import static com.yxw.expression.resolve.expression.ValueComparators.isRightString;
+
 @Component
 public class ConditionEvaluator {
 
@@ -136,20 +140,6 @@ public class ConditionEvaluator {
         }
     }
 
-    private boolean customizeEquals(Object obj1, Object obj2){
-        //如果是判断两个对象是否相等，我们尽可能的去兼容判断
-        // 比如字符串 "123456" 和 123456 我们认为是相等，因为前端我们没有去指定数据类型
-        // 所以当比较双方类型不一致的时候，我们尝试将其转换为字符串进行比较一下
-        if(obj1 != null && obj2 != null && !obj1.getClass().equals(obj2.getClass())) {
-            String obj1Str = Convert.toStr(obj1);
-            String obj2Str = Convert.toStr(obj2);
-            if (Objects.equals(obj1Str, obj2Str)) {
-                return true;
-            }
-        }
-        return Objects.equals(obj1, obj2);
-    }
-
     /**
      * 根据 Operand 获取其对应的实际值
      */
@@ -188,146 +178,7 @@ public class ConditionEvaluator {
         }
     }
 
-    private int compareValues(Object obj1, Object obj2) {
-        if (obj1 == null && obj2 == null) {
-            // 两个都为 null，认为它们相等
-            return 0;
-        }
-        if (obj1 == null) {
-            // 左边为 null，右边不为 null，则左边小于右边
-            return -1;
-        }
-        if (obj2 == null) {
-            // 左边不为 null，右边为 null，则左边大于右边
-            return 1;
-        }
-
-        // 1. 处理数字类型
-        if (obj1 instanceof Number num1 && obj2 instanceof Number num2) {
-            return Double.compare(num1.doubleValue(), num2.doubleValue());
-        }
-        // 2. 处理通用字符串类型
-        if (obj1 instanceof String str1 && obj2 instanceof String str2) {
-            return str1.compareTo(str2);
-        }
-        // 3. 处理布尔类型
-        if (obj1 instanceof Boolean b1 && obj2 instanceof Boolean b2) {
-            return Boolean.compare(b1, b2);
-        }
-
-        // 4. 处理日期
-        try{
-            ZonedDateTime date1 = DateConverter.convertToZonedDateTime(obj1);
-            ZonedDateTime date2 = DateConverter.convertToZonedDateTime(obj2);
-            return date1.compareTo(date2);
-        } catch (Exception e) {
-            //do nothing
-        }
-
-        // 如果类型不匹配或不支持，直接抛出异常
-        throw new IllegalArgumentException("Unsupported types for comparison: 【" + obj1 + "】 and 【" + obj2 + "】");
-    }
-
-    /**
-     * 专门用于日期粒度比较的辅助方法。
-     */
-    private boolean compareDatesByUnit(Object obj1, Object obj2, ChronoUnit unit) {
-        ZonedDateTime date1 = DateConverter.convertToZonedDateTime(obj1);
-        ZonedDateTime date2 = DateConverter.convertToZonedDateTime(obj2);
-        if (date1 == null && date2 == null) {
-            // 两个都为 null，认为它们相等
-            return true;
-        }
-        if (date1 == null || date2 == null) {
-            // 一边为null，另一边不为 null，则不相等
-            return false;
-        }
-        return switch (unit) {
-            case YEARS -> date1.getYear() == date2.getYear();
-            case MONTHS -> date1.getMonth() == date2.getMonth();
-            case DAYS -> date1.getDayOfMonth() == date2.getDayOfMonth();
-            default -> throw new IllegalArgumentException("Unsupported date comparison unit: " + unit);
-        };
-    }
-
-    /**
-     * 比较两个日期之间的差值。
-     */
-    private boolean compareDateDifference(Object obj1, Object obj2, Number comparedValue, String valueComparison, ChronoUnit unit) {
-        ComparisonEnum comparisonEnum = ComparisonEnum.getByCode(valueComparison)
-                .orElseThrow(() -> new IllegalArgumentException("Unsupported value comparison operator: " + valueComparison));
-        ZonedDateTime date1 = DateConverter.convertToZonedDateTime(obj1);
-        ZonedDateTime date2 = DateConverter.convertToZonedDateTime(obj2);
-        if (date1 == null || date2 == null) {
-            // 只要出现null，无法完成日期相关差值比较，直接返回 false
-            return false;
-        }
-        long diff = unit.between(date2, date1);
-        return switch (comparisonEnum) {
-            case EQUAL -> diff == comparedValue.longValue();
-            case NOT_EQUAL -> diff != comparedValue.longValue();
-            case GREATER_THAN -> diff > comparedValue.longValue();
-            case LESS_THAN -> diff < comparedValue.longValue();
-            case GREATER_THAN_OR_EQUAL -> diff >= comparedValue.longValue();
-            case LESS_THAN_OR_EQUAL -> diff <= comparedValue.longValue();
-            default -> throw new IllegalArgumentException("Unsupported Date Difference value comparison operator: " + valueComparison);
-        };
-    }
-
-    /**
-     * 比较两个数值之间的差值。
-     *
-     * @param obj1 第一个数值对象
-     * @param obj2 第二个数值对象
-     * @param comparedValue 用于比较的固定数值
-     * @param valueComparison 比较操作符，如 "GREATER_THAN"
-     * @return 比较结果
-     */
-    private boolean compareNumericDifference(Object obj1, Object obj2, Number comparedValue, String valueComparison) {
-        //差值比较，如果一个对象为 null，没办法完成数值比较，直接返回 false
-        if (obj1 == null || obj2 == null) {
-            return false;
-        }
-        ComparisonEnum comparisonEnum = ComparisonEnum.getByCode(valueComparison)
-                .orElseThrow(() -> new IllegalArgumentException("Unsupported value comparison operator: " + valueComparison));
-        if (!(obj1 instanceof Number) || !(obj2 instanceof Number)) {
-            throw new IllegalArgumentException("Numeric difference comparison requires number types.");
-        }
-        double diff = Math.abs(((Number) obj1).doubleValue() - ((Number) obj2).doubleValue());
-        return switch (comparisonEnum) {
-            case EQUAL -> diff == comparedValue.doubleValue();
-            case NOT_EQUAL -> diff != comparedValue.doubleValue();
-            case GREATER_THAN -> diff > comparedValue.doubleValue();
-            case LESS_THAN -> diff < comparedValue.doubleValue();
-            case GREATER_THAN_OR_EQUAL -> diff >= comparedValue.doubleValue();
-            case LESS_THAN_OR_EQUAL -> diff <= comparedValue.doubleValue();
-            default -> throw new IllegalArgumentException("Unsupported value comparison operator: " + valueComparison);
-        };
-    }
-
-    private boolean containsStartWithEndWith(Object leftValue, Object rightValue, ComparisonEnum comparisonEnum){
-        // 安全地将 Object 转换为 String
-        String leftStr = safeToString(leftValue);
-        String rightStr = safeToString(rightValue);
-        return switch (comparisonEnum) {
-            case CONTAINS -> StringUtils.contains(leftStr, rightStr);
-            case STARTS_WITH -> StringUtils.startsWith(leftStr, rightStr);
-            case ENDS_WITH -> StringUtils.endsWith(leftStr, rightStr);
-            default -> throw new IllegalArgumentException("Unsupported String comparison operator: " + comparisonEnum);
-        };
-    }
-
-    private boolean isRightString(Object obj) {
-        if(obj == null) {
-            return false;
-        }
-        return obj instanceof String;
-    }
-
     public String safeToString(Object value) {
-        if (value == null) {
-            return null;
-        }
-        return value.toString();
+        return ValueComparators.safeToString(value);
     }
 }
@@ -0,0 +1,203 @@
+package com.yxw.expression.resolve.expression;
+
+import cn.hutool.core.convert.Convert;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+import com.yxw.expression.resolve.utils.DateConverter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 上下文的类型声明：字段 -> 类型，按照上下文的种类（比如订单、用户）配置，求值请求通过名称选用
+ * 声明了类型的字段在一次求值中第一次被条件节点读取时转换成规范的类型，同一次求值中其他条件直接使用转换结果，之后的比较不再判断、转换类型：
+ * 编译时两边都是同一类型的字段（或者一边是可以转换成该类型的字面量）的条件节点使用只处理这一种类型的比较逻辑
+ *
+ * <pre>
+ * NUMBER   Long（整数且在 long 范围内）或者 Double（其他数值），数值或者数值字符串；整数不经过 double，超过 2^53 的整数也能精确比较
+ * STRING   String，其他类型通过 Convert.toStr 转换
+ * BOOLEAN  Boolean，布尔或者 "true"/"false" 字符串（不区分大小写）
+ * DATE     UTC 的 ZonedDateTime，DateConverter 支持的日期、字符串，数值按照毫秒时间戳处理
+ * </pre>
+ *
+ * 没有声明的字段保持原样，比较逻辑和没有类型声明时一致；表达式没有用到的字段不转换；
+ * 字段的值无法转换成声明的类型时，和其他求值异常一样，读取这个字段的条件节点为 false；
+ * 查询数据库用的唯一键始终按照上下文中的原值读取，不转换
+ *
+ * @author luffytmac
+ */
+public final class ContextSchema {
+
+    private final String name;
+
+    private final Map<String, FieldTypeEnum> fields;
+
+    /**
+     * 名称和字段类型的内容hash，用于标识不同类型声明编译出来的表达式
+     */
+    private final HashCode hash;
+
+    private ContextSchema(String name, Map<String, FieldTypeEnum> fields) {
+        this.name = name;
+        this.fields = ImmutableMap.copyOf(fields);
+        Hasher hasher = Hashing.murmur3_128().newHasher().putInt(name.length()).putString(name, StandardCharsets.UTF_8);
+        new TreeMap<>(fields).forEach((field, type) -> hasher.putInt(field.length()).putString(field, StandardCharsets.UTF_8)
+                .putInt(type.ordinal()));
+        this.hash = hasher.hash();
+    }
+
+    public static ContextSchema of(String name, Map<String, FieldTypeEnum> fields) {
+        return new ContextSchema(name, fields);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, FieldTypeEnum> getFields() {
+        return fields;
+    }
+
+    @JsonIgnore
+    public HashCode getHash() {
+        return hash;
+    }
+
+    /**
+     * 字段声明的类型，没有声明时返回 null
+     */
+    public FieldTypeEnum typeOf(String field) {
+        return field == null ? null : fields.get(field);
+    }
+
+    /**
+     * 把值转换成类型的规范形式，null 保持为 null
+     *
+     * @throws IllegalArgumentException 无法转换
+     */
+    public static Object convert(FieldTypeEnum type, Object value) {
+        return convert(type, value, null);
+    }
+
+    /**
+     * @param field 字段名，只用于异常信息
+     */
+    public static Object convert(FieldTypeEnum type, Object value, String field) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return switch (type) {
+                case NUMBER -> toNumber(value);
+                case STRING -> value instanceof String ? value : Convert.toStr(value);
+                case BOOLEAN -> toBoolean(value);
+                case DATE -> toDate(value);
+            };
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Field " + (field == null ? "" : field + " ") + "is declared as "
+                    + type.getCode() + " but value is 【" + value + "】", e);
+        }
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigInteger big) {
+            return big.bitLength() < Long.SIZE ? Long.valueOf(big.longValue()) : normalize(big.doubleValue());
+        }
+        if (value instanceof BigDecimal decimal) {
+            try {
+                return decimal.longValueExact();
+            } catch (ArithmeticException e) {
+                return normalize(decimal.doubleValue());
+            }
+        }
+        if (value instanceof Number number) {
+            return normalize(number.doubleValue());
+        }
+        if (value instanceof String str) {
+            String text = str.trim();
+            if (isInteger(text)) {
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    // 超出 long 的范围，按照 double 处理
+                }
+            }
+            return normalize(Double.parseDouble(text));
+        }
+        throw new IllegalArgumentException("Not a number");
+    }
+
+    /**
+     * 在 long 范围内的整数转换成 Long，数值相等的两个值转换后的类型相同，相等比较可以直接用 equals
+     */
+    private static Number normalize(double value) {
+        if (value == Math.rint(value) && value >= -0x1p63 && value < 0x1p63) {
+            return (long) value;
+        }
+        return value;
+    }
+
+    private static boolean isInteger(String text) {
+        int start = !text.isEmpty() && (text.charAt(0) == '-' || text.charAt(0) == '+') ? 1 : 0;
+        if (start == text.length() || text.length() - start > 19) {
+            return false;
+        }
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Boolean toBoolean(Object value) {
+        if (value instanceof Boolean b) {
+            return b;
+        }
+        if (value instanceof String str) {
+            if ("true".equalsIgnoreCase(str)) {
+                return Boolean.TRUE;
+            }
+            if ("false".equalsIgnoreCase(str)) {
+                return Boolean.FALSE;
+            }
+        }
+        throw new IllegalArgumentException("Not a boolean");
+    }
+
+    private static ZonedDateTime toDate(Object value) {
+        if (value instanceof Number number && !(value instanceof Long)) {
+            return DateConverter.convertToZonedDateTime(number.longValue());
+        }
+        return DateConverter.convertToZonedDateTime(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        // hash 只用于快速排除，相等时按照内容比较，不同的类型声明不会因为 hash 碰撞被当成同一个
+        return o instanceof ContextSchema other && hash.equals(other.hash) && name.equals(other.name)
+                && fields.equals(other.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name + fields;
+    }
+}
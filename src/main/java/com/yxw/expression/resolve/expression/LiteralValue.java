@@ -0,0 +1,97 @@
+package com.yxw.expression.resolve.expression;
+
+import cn.hutool.core.convert.Convert;
+import com.yxw.expression.resolve.utils.DateConverter;
+
+import java.time.ZonedDateTime;
+
+/**
+ * 编译阶段预先转换好的字面量
+ * 字面量在每次比较时都是一样的，这里一次性把它转换成比较时会用到的各种形式：数值、字符串、日期，
+ * 比较时直接使用转换好的结果，不再重复转换
+ *
+ * @author luffytmac
+ */
+public final class LiteralValue {
+
+    private final Object value;
+
+    // Convert.toStr 的结果，用于类型不一致时的相等比较
+    private final String convertedString;
+
+    // toString 的结果，用于包含、开头、结尾的比较
+    private final String text;
+
+    private final boolean number;
+
+    private final double doubleValue;
+
+    // 字面量转换成的日期，不是日期时为 null
+    private final ZonedDateTime date;
+
+    // 字面量对应的毫秒时间戳，无法精确转换时为 DateConverter.INVALID_EPOCH_MILLI
+    private final long epochMilli;
+
+    // 字面量无法转换成日期时的异常信息
+    private final String dateError;
+
+    private LiteralValue(Object value) {
+        this.value = value;
+        String str = Convert.toStr(value);
+        this.convertedString = str == null ? null : str.intern();
+        this.text = value.toString().intern();
+        this.number = value instanceof Number;
+        this.doubleValue = number ? ((Number) value).doubleValue() : 0D;
+        ZonedDateTime convertedDate = null;
+        String error = null;
+        try {
+            convertedDate = DateConverter.convertToZonedDateTime(value);
+        } catch (Exception e) {
+            error = e.getMessage();
+        }
+        this.date = convertedDate;
+        this.dateError = error;
+        this.epochMilli = DateConverter.toEpochMilli(value);
+    }
+
+    /**
+     * 预先转换字面量，字面量为 null 时不需要转换，返回 null
+     */
+    public static LiteralValue of(Object value) {
+        return value == null ? null : new LiteralValue(value);
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public String getConvertedString() {
+        return convertedString;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isNumber() {
+        return number;
+    }
+
+    public double getDoubleValue() {
+        return doubleValue;
+    }
+
+    public long getEpochMilli() {
+        return epochMilli;
+    }
+
+    /**
+     * 字面量对应的日期，和 DateConverter.convertToZonedDateTime 一样，无法转换时抛出异常
+     */
+    public ZonedDateTime getDate() {
+        if (date == null) {
+            throw new IllegalArgumentException(dateError);
+        }
+        return date;
+    }
+}
@@ -0,0 +1,320 @@
+package com.yxw.expression.resolve.expression;
+
+import cn.hutool.core.convert.Convert;
+import com.yxw.expression.resolve.enums.ComparisonEnum;
+import com.yxw.expression.resolve.utils.DateConverter;
+import org.thymeleaf.util.StringUtils;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/**
+ * 条件节点中左右两个值的比较逻辑
+ * 解释执行（ConditionEvaluator）和编译执行（ExpressionCompiler）共用这里的比较规则，保证两边的结果一致
+ * 参数为 LiteralValue 的版本用于编译执行时一边是字面量的情况，字面量已经预先转换好，比较结果和 Object 版本一致
+ *
+ * @author luffytmac
+ */
+public final class ValueComparators {
+
+    private ValueComparators() {
+    }
+
+    public static boolean customizeEquals(Object obj1, Object obj2){
+        //如果是判断两个对象是否相等，我们尽可能的去兼容判断
+        // 比如字符串 "123456" 和 123456 我们认为是相等，因为前端我们没有去指定数据类型
+        // 所以当比较双方类型不一致的时候，我们尝试将其转换为字符串进行比较一下
+        if(obj1 != null && obj2 != null && !obj1.getClass().equals(obj2.getClass())) {
+            String obj1Str = Convert.toStr(obj1);
+            String obj2Str = Convert.toStr(obj2);
+            if (Objects.equals(obj1Str, obj2Str)) {
+                return true;
+            }
+        }
+        return Objects.equals(obj1, obj2);
+    }
+
+    public static boolean customizeEquals(Object obj1, LiteralValue literal){
+        Object obj2 = literal.getValue();
+        if(obj1 != null && !obj1.getClass().equals(obj2.getClass())) {
+            if (Objects.equals(Convert.toStr(obj1), literal.getConvertedString())) {
+                return true;
+            }
+        }
+        return Objects.equals(obj1, obj2);
+    }
+
+    public static int compareValues(Object obj1, Object obj2) {
+        if (obj1 == null && obj2 == null) {
+            // 两个都为 null，认为它们相等
+            return 0;
+        }
+        if (obj1 == null) {
+            // 左边为 null，右边不为 null，则左边小于右边
+            return -1;
+        }
+        if (obj2 == null) {
+            // 左边不为 null，右边为 null，则左边大于右边
+            return 1;
+        }
+
+        // 1. 处理数字类型
+        if (obj1 instanceof Number num1 && obj2 instanceof Number num2) {
+            return Double.compare(num1.doubleValue(), num2.doubleValue());
+        }
+        // 2. 处理通用字符串类型
+        if (obj1 instanceof String str1 && obj2 instanceof String str2) {
+            return str1.compareTo(str2);
+        }
+        // 3. 处理布尔类型
+        if (obj1 instanceof Boolean b1 && obj2 instanceof Boolean b2) {
+            return Boolean.compare(b1, b2);
+        }
+
+        // 4. 处理日期，两边都能得到精确的毫秒时间戳时直接比较 long
+        long epoch1 = DateConverter.toEpochMilli(obj1);
+        long epoch2 = DateConverter.toEpochMilli(obj2);
+        if (epoch1 != DateConverter.INVALID_EPOCH_MILLI && epoch2 != DateConverter.INVALID_EPOCH_MILLI) {
+            return Long.compare(epoch1, epoch2);
+        }
+        try{
+            ZonedDateTime date1 = DateConverter.convertToZonedDateTime(obj1);
+            ZonedDateTime date2 = DateConverter.convertToZonedDateTime(obj2);
+            return date1.compareTo(date2);
+        } catch (Exception e) {
+            //do nothing
+        }
+
+        // 如果类型不匹配或不支持，直接抛出异常
+        throw new IllegalArgumentException("Unsupported types for comparison: 【" + obj1 + "】 and 【" + obj2 + "】");
+    }
+
+    /**
+     * 和字面量比较大小，字面量不为 null
+     */
+    public static int compareValues(Object obj1, LiteralValue literal) {
+        Object obj2 = literal.getValue();
+        if (obj1 == null) {
+            // 左边为 null，右边不为 null，则左边小于右边
+            return -1;
+        }
+        if (obj1 instanceof Number num1 && literal.isNumber()) {
+            return Double.compare(num1.doubleValue(), literal.getDoubleValue());
+        }
+        if (obj1 instanceof String str1 && obj2 instanceof String str2) {
+            return str1.compareTo(str2);
+        }
+        if (obj1 instanceof Boolean b1 && obj2 instanceof Boolean b2) {
+            return Boolean.compare(b1, b2);
+        }
+        long epoch1 = DateConverter.toEpochMilli(obj1);
+        if (epoch1 != DateConverter.INVALID_EPOCH_MILLI && literal.getEpochMilli() != DateConverter.INVALID_EPOCH_MILLI) {
+            return Long.compare(epoch1, literal.getEpochMilli());
+        }
+        try{
+            ZonedDateTime date1 = DateConverter.convertToZonedDateTime(obj1);
+            return date1.compareTo(literal.getDate());
+        } catch (Exception e) {
+            //do nothing
+        }
+        throw new IllegalArgumentException("Unsupported types for comparison: 【" + obj1 + "】 and 【" + obj2 + "】");
+    }
+
+    /**
+     * 专门用于日期粒度比较的辅助方法。
+     */
+    public static boolean compareDatesByUnit(Object obj1, Object obj2, ChronoUnit unit) {
+        ZonedDateTime date1 = DateConverter.convertToZonedDateTime(obj1);
+        ZonedDateTime date2 = DateConverter.convertToZonedDateTime(obj2);
+        if (date1 == null && date2 == null) {
+            // 两个都为 null，认为它们相等
+            return true;
+        }
+        if (date1 == null || date2 == null) {
+            // 一边为null，另一边不为 null，则不相等
+            return false;
+        }
+        return switch (unit) {
+            case YEARS -> date1.getYear() == date2.getYear();
+            case MONTHS -> date1.getMonth() == date2.getMonth();
+            case DAYS -> date1.getDayOfMonth() == date2.getDayOfMonth();
+            default -> throw new IllegalArgumentException("Unsupported date comparison unit: " + unit);
+        };
+    }
+
+    /**
+     * 和字面量按照日期粒度比较，字面量不为 null
+     */
+    public static boolean compareDatesByUnit(Object obj1, LiteralValue literal, ChronoUnit unit) {
+        ZonedDateTime date1 = DateConverter.convertToZonedDateTime(obj1);
+        ZonedDateTime date2 = literal.getDate();
+        if (date1 == null) {
+            return false;
+        }
+        return switch (unit) {
+            case YEARS -> date1.getYear() == date2.getYear();
+            case MONTHS -> date1.getMonth() == date2.getMonth();
+            case DAYS -> date1.getDayOfMonth() == date2.getDayOfMonth();
+            default -> throw new IllegalArgumentException("Unsupported date comparison unit: " + unit);
+        };
+    }
+
+    /**
+     * 比较两个日期之间的差值。
+     */
+    public static boolean compareDateDifference(Object obj1, Object obj2, Number comparedValue, String valueComparison, ChronoUnit unit) {
+        ComparisonEnum comparisonEnum = ComparisonEnum.getByCode(valueComparison)
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported value comparison operator: " + valueComparison));
+        return compareDateDifference(obj1, obj2, comparedValue, comparisonEnum, unit);
+    }
+
+    /**
+     * 比较两个日期之间的差值，比较操作符已经提前解析好
+     */
+    public static boolean compareDateDifference(Object obj1, Object obj2, Number comparedValue, ComparisonEnum comparisonEnum, ChronoUnit unit) {
+        long epoch1 = DateConverter.toEpochMilli(obj1);
+        long epoch2 = DateConverter.toEpochMilli(obj2);
+        if (epoch1 != DateConverter.INVALID_EPOCH_MILLI && epoch2 != DateConverter.INVALID_EPOCH_MILLI) {
+            return compareDifference(DateConverter.between(unit, epoch2, epoch1), comparedValue, comparisonEnum);
+        }
+        ZonedDateTime date1 = DateConverter.convertToZonedDateTime(obj1);
+        ZonedDateTime date2 = DateConverter.convertToZonedDateTime(obj2);
+        return compareDateDifference(date1, date2, comparedValue, comparisonEnum, unit);
+    }
+
+    /**
+     * 比较日期和字面量之间的差值，字面量不为 null
+     */
+    public static boolean compareDateDifference(Object obj1, LiteralValue literal2, Number comparedValue, ComparisonEnum comparisonEnum, ChronoUnit unit) {
+        long epoch1 = DateConverter.toEpochMilli(obj1);
+        if (epoch1 != DateConverter.INVALID_EPOCH_MILLI && literal2.getEpochMilli() != DateConverter.INVALID_EPOCH_MILLI) {
+            return compareDifference(DateConverter.between(unit, literal2.getEpochMilli(), epoch1), comparedValue, comparisonEnum);
+        }
+        ZonedDateTime date1 = DateConverter.convertToZonedDateTime(obj1);
+        return compareDateDifference(date1, literal2.getDate(), comparedValue, comparisonEnum, unit);
+    }
+
+    /**
+     * 比较字面量和日期之间的差值，字面量不为 null
+     */
+    public static boolean compareDateDifference(LiteralValue literal1, Object obj2, Number comparedValue, ComparisonEnum comparisonEnum, ChronoUnit unit) {
+        long epoch2 = DateConverter.toEpochMilli(obj2);
+        if (literal1.getEpochMilli() != DateConverter.INVALID_EPOCH_MILLI && epoch2 != DateConverter.INVALID_EPOCH_MILLI) {
+            return compareDifference(DateConverter.between(unit, epoch2, literal1.getEpochMilli()), comparedValue, comparisonEnum);
+        }
+        ZonedDateTime date1 = literal1.getDate();
+        ZonedDateTime date2 = DateConverter.convertToZonedDateTime(obj2);
+        return compareDateDifference(date1, date2, comparedValue, comparisonEnum, unit);
+    }
+
+    private static boolean compareDateDifference(ZonedDateTime date1, ZonedDateTime date2, Number comparedValue, ComparisonEnum comparisonEnum, ChronoUnit unit) {
+        if (date1 == null || date2 == null) {
+            // 只要出现null，无法完成日期相关差值比较，直接返回 false
+            return false;
+        }
+        return compareDifference(unit.between(date2, date1), comparedValue, comparisonEnum);
+    }
+
+    private static boolean compareDifference(long diff, Number comparedValue, ComparisonEnum comparisonEnum) {
+        return switch (comparisonEnum) {
+            case EQUAL -> diff == comparedValue.longValue();
+            case NOT_EQUAL -> diff != comparedValue.longValue();
+            case GREATER_THAN -> diff > comparedValue.longValue();
+            case LESS_THAN -> diff < comparedValue.longValue();
+            case GREATER_THAN_OR_EQUAL -> diff >= comparedValue.longValue();
+            case LESS_THAN_OR_EQUAL -> diff <= comparedValue.longValue();
+            default -> throw new IllegalArgumentException("Unsupported Date Difference value comparison operator: " + comparisonEnum.getCode());
+        };
+    }
+
+    /**
+     * 比较两个数值之间的差值。
+     *
+     * @param obj1 第一个数值对象
+     * @param obj2 第二个数值对象
+     * @param comparedValue 用于比较的固定数值
+     * @param valueComparison 比较操作符，如 "GREATER_THAN"
+     * @return 比较结果
+     */
+    public static boolean compareNumericDifference(Object obj1, Object obj2, Number comparedValue, String valueComparison) {
+        //差值比较，如果一个对象为 null，没办法完成数值比较，直接返回 false
+        if (obj1 == null || obj2 == null) {
+            return false;
+        }
+        ComparisonEnum comparisonEnum = ComparisonEnum.getByCode(valueComparison)
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported value comparison operator: " + valueComparison));
+        return compareNumericDifference(obj1, obj2, comparedValue, comparisonEnum);
+    }
+
+    /**
+     * 比较两个数值之间的差值，比较操作符已经提前解析好
+     */
+    public static boolean compareNumericDifference(Object obj1, Object obj2, Number comparedValue, ComparisonEnum comparisonEnum) {
+        //差值比较，如果一个对象为 null，没办法完成数值比较，直接返回 false
+        if (obj1 == null || obj2 == null) {
+            return false;
+        }
+        if (!(obj1 instanceof Number) || !(obj2 instanceof Number)) {
+            throw new IllegalArgumentException("Numeric difference comparison requires number types.");
+        }
+        double diff = Math.abs(((Number) obj1).doubleValue() - ((Number) obj2).doubleValue());
+        return switch (comparisonEnum) {
+            case EQUAL -> diff == comparedValue.doubleValue();
+            case NOT_EQUAL -> diff != comparedValue.doubleValue();
+            case GREATER_THAN -> diff > comparedValue.doubleValue();
+            case LESS_THAN -> diff < comparedValue.doubleValue();
+            case GREATER_THAN_OR_EQUAL -> diff >= comparedValue.doubleValue();
+            case LESS_THAN_OR_EQUAL -> diff <= comparedValue.doubleValue();
+            default -> throw new IllegalArgumentException("Unsupported value comparison operator: " + comparisonEnum.getCode());
+        };
+    }
+
+    /**
+     * 和字面量比较数值差值，字面量不为 null；差值取绝对值，字面量在左边还是右边结果一样
+     */
+    public static boolean compareNumericDifference(Object obj1, LiteralValue literal, Number comparedValue, ComparisonEnum comparisonEnum) {
+        if (obj1 == null) {
+            return false;
+        }
+        if (!(obj1 instanceof Number) || !literal.isNumber()) {
+            throw new IllegalArgumentException("Numeric difference comparison requires number types.");
+        }
+        double diff = Math.abs(((Number) obj1).doubleValue() - literal.getDoubleValue());
+        return switch (comparisonEnum) {
+            case EQUAL -> diff == comparedValue.doubleValue();
+            case NOT_EQUAL -> diff != comparedValue.doubleValue();
+            case GREATER_THAN -> diff > comparedValue.doubleValue();
+            case LESS_THAN -> diff < comparedValue.doubleValue();
+            case GREATER_THAN_OR_EQUAL -> diff >= comparedValue.doubleValue();
+            case LESS_THAN_OR_EQUAL -> diff <= comparedValue.doubleValue();
+            default -> throw new IllegalArgumentException("Unsupported value comparison operator: " + comparisonEnum.getCode());
+        };
+    }
+
+    public static boolean containsStartWithEndWith(Object leftValue, Object rightValue, ComparisonEnum comparisonEnum){
+        // 安全地将 Object 转换为 String
+        String leftStr = safeToString(leftValue);
+        String rightStr = safeToString(rightValue);
+        return switch (comparisonEnum) {
+            case CONTAINS -> StringUtils.contains(leftStr, rightStr);
+            case STARTS_WITH -> StringUtils.startsWith(leftStr, rightStr);
+            case ENDS_WITH -> StringUtils.endsWith(leftStr, rightStr);
+            default -> throw new IllegalArgumentException("Unsupported String comparison operator: " + comparisonEnum);
+        };
+    }
+
+    public static boolean isRightString(Object obj) {
+        if(obj == null) {
+            return false;
+        }
+        return obj instanceof String;
+    }
+
+    public static String safeToString(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,544 @@
+package com.yxw.expression.resolve.expression.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ConditionNode;
+import com.yxw.expression.resolve.expression.LogicNode;
+import com.yxw.expression.resolve.expression.Operand;
+import com.yxw.expression.resolve.request.EvaluationRequest;
+import com.yxw.expression.resolve.utils.JsonUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 表达式的二进制格式
+ * 表达式json中每个节点都会重复 "valueComparison"、"source" 这样的字段名，这里把表达式树编码成紧凑的二进制：
+ * 节点类型、逻辑操作符、比较符、数据来源使用固定编号，表名、字段名、字面量等放在常量池中，相同的值只保存一次
+ * 二进制和 BaseNode 可以无损互转，同一个 BaseNode 转换成json和转换成二进制再转换回来的json完全一致
+ *
+ * 格式（第 1 版），整数都是变长编码：
+ * <pre>
+ * 0xFE 0xE1 版本号
+ * 常量池：个数，每个常量为 类型 + 内容
+ * 表达式树：先序遍历，节点为 类型 + 内容
+ *   LOGIC：操作符 子节点个数+1（0 代表 null） 子节点...
+ *   CONDITION：比较符 左操作数 右操作数 差值 差值比较符
+ *   操作数：0 代表 null，否则为 1 数据来源 表名 字段名 值
+ * </pre>
+ * 字符串引用：0 代表 null，1 ~ 内置字符串个数为内置字符串，之后为常量池中的字符串；值引用：0 代表 null，之后为常量池中的常量
+ * 第一个字节 0xFE 不会出现在 UTF-8 编码中，二进制和表达式json的内容不会相同
+ *
+ * @author luffytmac
+ */
+public final class ExpressionBinaryCodec {
+
+    /**
+     * 二进制表达式的 Content-Type
+     */
+    public static final String MEDIA_TYPE = "application/x-expression";
+
+    public static final int VERSION = 1;
+
+    /**
+     * 解码时逻辑节点的最大嵌套层数，超过时抛出 IllegalArgumentException，避免构造的深层嵌套导致栈溢出
+     * 和表达式json一致：jackson 默认最多 1000 层嵌套，每一层逻辑节点占用对象和子节点数组两层
+     */
+    public static final int MAX_DEPTH = 500;
+
+    private static final byte MAGIC_0 = (byte) 0xFE;
+    private static final byte MAGIC_1 = (byte) 0xE1;
+
+    private static final int NODE_NULL = 0;
+    private static final int NODE_LOGIC = 1;
+    private static final int NODE_CONDITION = 2;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_INT = 2;
+    private static final int TAG_LONG = 3;
+    private static final int TAG_BIG_INTEGER = 4;
+    private static final int TAG_DOUBLE = 5;
+    private static final int TAG_BIG_DECIMAL = 6;
+    private static final int TAG_TRUE = 7;
+    private static final int TAG_FALSE = 8;
+    // 对象和数组保存为json
+    private static final int TAG_JSON = 9;
+
+    /**
+     * 第 1 版的内置字符串，编号即下标 + 1，编号写入了二进制中，不能调整顺序
+     */
+    private static final List<String> DICTIONARY = List.of(
+            "AND", "OR",
+            "context", "literal", "database",
+            "EQUAL", "NOT_EQUAL", "GREATER_THAN", "LESS_THAN", "GREATER_THAN_OR_EQUAL", "LESS_THAN_OR_EQUAL",
+            "CONTAINS", "STARTS_WITH", "ENDS_WITH",
+            "EQUAL_YEAR", "EQUAL_MONTH", "EQUAL_DAY",
+            "DIFFERENCE_IN_YEARS", "DIFFERENCE_IN_MONTHS", "DIFFERENCE_IN_DAYS", "DIFFERENCE_IN_VALUE",
+            "IS_NULL", "IS_NOT_NULL", "IS_EMPTY", "IS_NOT_EMPTY");
+
+    private static final Map<String, Integer> DICTIONARY_CODES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < DICTIONARY.size(); i++) {
+            DICTIONARY_CODES.put(DICTIONARY.get(i), i + 1);
+        }
+    }
+
+    private ExpressionBinaryCodec() {
+    }
+
+    /**
+     * 表达式树转换成二进制
+     */
+    public static byte[] encode(BaseNode node) {
+        Encoder encoder = new Encoder();
+        encoder.node(node);
+        Output output = new Output();
+        output.write(MAGIC_0);
+        output.write(MAGIC_1);
+        output.write(VERSION);
+        output.varInt(encoder.pool.size());
+        for (Object constant : encoder.pool) {
+            writeValue(output, constant);
+        }
+        output.bytes(encoder.tree.toByteArray());
+        return output.toByteArray();
+    }
+
+    /**
+     * 二进制转换成表达式树，格式不正确、版本不支持或者嵌套超过 MAX_DEPTH 层时抛出 IllegalArgumentException
+     */
+    public static BaseNode decode(byte[] binary) {
+        return decode(ByteBuffer.wrap(binary));
+    }
+
+    /**
+     * 从 position 到 limit 之间的二进制转换成表达式树，不修改 binary 的 position，
+     * binary 可以是内存映射的文件中的一段，直接从中读取，不需要先复制出来
+     */
+    public static BaseNode decode(ByteBuffer binary) {
+        Input input = new Input(binary);
+        if (input.remaining() < 3 || input.read() != MAGIC_0 || input.read() != MAGIC_1) {
+            throw new IllegalArgumentException("Not an expression binary");
+        }
+        int version = input.read() & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported expression binary version: " + version);
+        }
+        int size = input.count();
+        Object[] pool = new Object[size];
+        for (int i = 0; i < size; i++) {
+            pool[i] = readValue(input);
+        }
+        BaseNode node = new Decoder(input, pool).node(0);
+        if (input.remaining() != 0) {
+            throw new IllegalArgumentException("Unexpected trailing bytes in expression binary");
+        }
+        return node;
+    }
+
+    /**
+     * 表达式二进制和上下文组成的 /validate 请求体：表达式长度 表达式 上下文个数+1（0 代表 null） (字段名 值)...
+     */
+    public static byte[] encodeRequest(byte[] expression, Map<String, Object> context) {
+        Output output = new Output();
+        if (expression == null) {
+            output.varInt(0);
+        } else {
+            output.varInt(expression.length);
+            output.bytes(expression);
+        }
+        if (context == null) {
+            output.varInt(0);
+        } else {
+            output.varInt(context.size() + 1);
+            context.forEach((key, value) -> {
+                writeValue(output, key);
+                writeValue(output, value);
+            });
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * 读取 encodeRequest 生成的请求体，表达式只截取出来，不解析
+     */
+    public static EvaluationRequest decodeRequest(byte[] body) {
+        Input input = new Input(ByteBuffer.wrap(body));
+        int length = input.count();
+        EvaluationRequest request = new EvaluationRequest();
+        request.setExpressionBinary(input.bytes(length));
+        int size = input.count();
+        if (size > 0) {
+            Map<String, Object> context = new LinkedHashMap<>();
+            for (int i = 0; i < size - 1; i++) {
+                Object key = readValue(input);
+                if (!(key instanceof String)) {
+                    throw new IllegalArgumentException("Context key must be a string");
+                }
+                context.put((String) key, readValue(input));
+            }
+            request.setContext(context);
+        }
+        if (input.remaining() != 0) {
+            throw new IllegalArgumentException("Unexpected trailing bytes in request binary");
+        }
+        return request;
+    }
+
+    private static void writeValue(Output output, Object value) {
+        if (value == null) {
+            output.write(TAG_NULL);
+        } else if (value instanceof String text) {
+            output.write(TAG_STRING);
+            output.string(text);
+        } else if (value instanceof Integer number) {
+            output.write(TAG_INT);
+            output.varLong(zigZag(number));
+        } else if (value instanceof Long number) {
+            output.write(TAG_LONG);
+            output.varLong(zigZag(number));
+        } else if (value instanceof BigInteger number) {
+            output.write(TAG_BIG_INTEGER);
+            byte[] bytes = number.toByteArray();
+            output.varInt(bytes.length);
+            output.bytes(bytes);
+        } else if (value instanceof Double number) {
+            output.write(TAG_DOUBLE);
+            long bits = Double.doubleToRawLongBits(number);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                output.write((int) (bits >>> shift));
+            }
+        } else if (value instanceof BigDecimal number) {
+            output.write(TAG_BIG_DECIMAL);
+            output.string(number.toString());
+        } else if (value instanceof Boolean bool) {
+            output.write(bool ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Map || value instanceof List) {
+            output.write(TAG_JSON);
+            output.string(JsonUtils.toJson(value));
+        } else {
+            throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(Input input) {
+        int tag = input.read() & 0xFF;
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_STRING -> input.string();
+            case TAG_INT -> (int) unZigZag(input.varLong());
+            case TAG_LONG -> unZigZag(input.varLong());
+            case TAG_BIG_INTEGER -> new BigInteger(input.bytes(input.count()));
+            case TAG_DOUBLE -> {
+                long bits = 0;
+                for (int i = 0; i < 8; i++) {
+                    bits = (bits << 8) | (input.read() & 0xFF);
+                }
+                yield Double.longBitsToDouble(bits);
+            }
+            case TAG_BIG_DECIMAL -> new BigDecimal(input.string());
+            case TAG_TRUE -> Boolean.TRUE;
+            case TAG_FALSE -> Boolean.FALSE;
+            case TAG_JSON -> {
+                try {
+                    yield JsonUtils.getObjectMapper().readValue(input.string(), Object.class);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException("Invalid json value in expression binary: " + e.getOriginalMessage());
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown value tag: " + tag);
+        };
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 编码表达式树，同时收集常量池
+     */
+    private static final class Encoder {
+
+        private final Output tree = new Output();
+
+        private final List<Object> pool = new ArrayList<>();
+
+        // 值的类型和值 -> 常量池下标，Integer 1 和 Long 1 是不同的常量
+        private final Map<List<Object>, Integer> poolIndexes = new HashMap<>();
+
+        private void node(BaseNode node) {
+            if (node instanceof LogicNode logicNode) {
+                tree.write(NODE_LOGIC);
+                string(logicNode.getOperator());
+                List<BaseNode> children = logicNode.getChildren();
+                if (children == null) {
+                    tree.varInt(0);
+                } else {
+                    tree.varInt(children.size() + 1);
+                    children.forEach(this::node);
+                }
+            } else if (node instanceof ConditionNode conditionNode) {
+                tree.write(NODE_CONDITION);
+                string(conditionNode.getComparison());
+                operand(conditionNode.getLeft());
+                operand(conditionNode.getRight());
+                value(conditionNode.getValue());
+                string(conditionNode.getValueComparison());
+            } else if (node == null) {
+                tree.write(NODE_NULL);
+            } else {
+                throw new IllegalArgumentException("Unsupported node type: " + node.getClass().getName());
+            }
+        }
+
+        private void operand(Operand operand) {
+            if (operand == null) {
+                tree.varInt(0);
+                return;
+            }
+            tree.varInt(1);
+            string(operand.getSource());
+            string(operand.getTable());
+            string(operand.getField());
+            value(operand.getValue());
+        }
+
+        private void string(String text) {
+            if (text == null) {
+                tree.varInt(0);
+                return;
+            }
+            Integer code = DICTIONARY_CODES.get(text);
+            tree.varInt(code != null ? code : DICTIONARY.size() + 1 + constant(text));
+        }
+
+        private void value(Object value) {
+            tree.varInt(value == null ? 0 : constant(value) + 1);
+        }
+
+        private int constant(Object value) {
+            return poolIndexes.computeIfAbsent(Arrays.asList(value.getClass(), value), key -> {
+                pool.add(value);
+                return pool.size() - 1;
+            });
+        }
+    }
+
+    private static final class Decoder {
+
+        private final Input input;
+
+        private final Object[] pool;
+
+        private Decoder(Input input, Object[] pool) {
+            this.input = input;
+            this.pool = pool;
+        }
+
+        private BaseNode node(int depth) {
+            if (depth >= MAX_DEPTH) {
+                throw new IllegalArgumentException("Expression binary is nested deeper than " + MAX_DEPTH + " levels");
+            }
+            int type = input.read() & 0xFF;
+            switch (type) {
+                case NODE_NULL:
+                    return null;
+                case NODE_LOGIC: {
+                    LogicNode node = new LogicNode();
+                    node.setOperator(string());
+                    int size = input.count();
+                    if (size > 0) {
+                        List<BaseNode> children = new ArrayList<>(size - 1);
+                        for (int i = 0; i < size - 1; i++) {
+                            children.add(node(depth + 1));
+                        }
+                        node.setChildren(children);
+                    }
+                    return node;
+                }
+                case NODE_CONDITION: {
+                    ConditionNode node = new ConditionNode();
+                    node.setComparison(string());
+                    node.setLeft(operand());
+                    node.setRight(operand());
+                    Object value = value();
+                    if (value != null && !(value instanceof Number)) {
+                        throw new IllegalArgumentException("Value of condition node must be a number");
+                    }
+                    node.setValue((Number) value);
+                    node.setValueComparison(string());
+                    return node;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown node type: " + type);
+            }
+        }
+
+        private Operand operand() {
+            int present = input.ref();
+            if (present == 0) {
+                return null;
+            }
+            Operand operand = new Operand();
+            operand.setSource(string());
+            operand.setTable(string());
+            operand.setField(string());
+            operand.setValue(value());
+            return operand;
+        }
+
+        private String string() {
+            int code = input.ref();
+            if (code == 0) {
+                return null;
+            }
+            if (code <= DICTIONARY.size()) {
+                return DICTIONARY.get(code - 1);
+            }
+            Object constant = constant(code - DICTIONARY.size() - 1);
+            if (!(constant instanceof String)) {
+                throw new IllegalArgumentException("Constant " + (code - DICTIONARY.size() - 1) + " is not a string");
+            }
+            return (String) constant;
+        }
+
+        private Object value() {
+            int code = input.ref();
+            return code == 0 ? null : constant(code - 1);
+        }
+
+        private Object constant(int index) {
+            if (index >= pool.length) {
+                throw new IllegalArgumentException("Constant index out of range: " + index);
+            }
+            return pool[index];
+        }
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+
+        private void varInt(int value) {
+            varLong(value & 0xFFFFFFFFL);
+        }
+
+        private void varLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void bytes(byte[] bytes) {
+            write(bytes, 0, bytes.length);
+        }
+
+        private void string(String text) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            varInt(bytes.length);
+            bytes(bytes);
+        }
+    }
+
+    private static final class Input {
+
+        private final ByteBuffer buffer;
+
+        private int position;
+
+        private final int limit;
+
+        private Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.position = buffer.position();
+            this.limit = buffer.limit();
+        }
+
+        private int remaining() {
+            return limit - position;
+        }
+
+        private byte read() {
+            if (position >= limit) {
+                throw new IllegalArgumentException("Truncated expression binary");
+            }
+            return buffer.get(position++);
+        }
+
+        private long varLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in expression binary");
+        }
+
+        /**
+         * 读取个数、长度、引用这类非负整数，不能超过剩余的字节数，避免格式错误时分配过大的数组
+         */
+        private int count() {
+            long value = varLong();
+            if (value < 0 || value > remaining() + 1L) {
+                throw new IllegalArgumentException("Invalid length in expression binary: " + value);
+            }
+            return (int) value;
+        }
+
+        /**
+         * 读取字符串引用、值引用
+         */
+        private int ref() {
+            long value = varLong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid reference in expression binary: " + value);
+            }
+            return (int) value;
+        }
+
+        private byte[] bytes(int length) {
+            if (length > remaining()) {
+                throw new IllegalArgumentException("Truncated expression binary");
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(position, bytes);
+            position += length;
+            return bytes;
+        }
+
+        private String string() {
+            int length = count();
+            if (length > remaining()) {
+                throw new IllegalArgumentException("Truncated expression binary");
+            }
+            String text;
+            if (buffer.hasArray()) {
+                text = new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(position, bytes);
+                text = new String(bytes, StandardCharsets.UTF_8);
+            }
+            position += length;
+            return text;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把编译后的节点树生成为一个隐藏类
+ * AND/OR 节点被展开成条件跳转，每个条件节点保存在生成类的一个字段中，
+ * 这样每个条件节点的调用点都是单态的，JIT 可以直接内联
+ * 隐藏类没有被类加载器强引用，表达式被淘汰、不再被引用后生成的类可以被卸载
+ *
+ * @author luffytmac
+ */
+final class BytecodeGenerator {
+
+    /**
+     * 单个方法的字节码不能超过 64K，条件节点过多时不生成字节码
+     */
+    static final int MAX_LEAVES = 2000;
+
+    private static final String CLASS_NAME = "com/yxw/expression/resolve/expression/compile/GeneratedExpression";
+
+    private static final String NODE_TYPE = Type.getInternalName(CompiledNode.class);
+    private static final String NODE_DESC = Type.getDescriptor(CompiledNode.class);
+    private static final String EVALUATE_DESC = "(" + Type.getDescriptor(EvaluationContext.class) + ")Z";
+    private static final String CONSTRUCTOR_DESC = "(" + Type.getDescriptor(CompiledNode[].class) + ")V";
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private BytecodeGenerator() {
+    }
+
+    /**
+     * 生成字节码版本的节点
+     * 开启自适应排序时子节点顺序可能同时在变化，每个逻辑节点的子节点数组只读取一次，生成的代码按照读取时的顺序展开
+     *
+     * @param root 编译后的节点树
+     * @return 生成的节点，条件节点过多时返回 null
+     */
+    static Generated generate(CompiledNode root) throws Throwable {
+        List<CompiledNode> leaves = new ArrayList<>();
+        Map<CompiledNode, CompiledNode[]> order = new IdentityHashMap<>();
+        collectLeaves(root, leaves, order);
+        if (leaves.size() > MAX_LEAVES) {
+            return null;
+        }
+        byte[] bytes = generateClass(root, leaves, order);
+        MethodHandles.Lookup lookup = LOOKUP.defineHiddenClass(bytes, true);
+        MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, CompiledNode[].class));
+        return new Generated((CompiledNode) constructor.invoke(leaves.toArray(new CompiledNode[0])), order);
+    }
+
+    /**
+     * 逻辑节点的子节点数组，不是逻辑节点时返回 null
+     */
+    private static CompiledNode[] children(CompiledNode node) {
+        if (node instanceof AndNode andNode) {
+            return andNode.children();
+        }
+        if (node instanceof OrNode orNode) {
+            return orNode.children();
+        }
+        return null;
+    }
+
+    private static void collectLeaves(CompiledNode node, List<CompiledNode> leaves, Map<CompiledNode, CompiledNode[]> order) {
+        CompiledNode[] children = children(node);
+        if (children == null) {
+            leaves.add(node);
+            return;
+        }
+        order.put(node, children);
+        for (CompiledNode child : children) {
+            collectLeaves(child, leaves, order);
+        }
+    }
+
+    private static byte[] generateClass(CompiledNode root, List<CompiledNode> leaves, Map<CompiledNode, CompiledNode[]> order) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, CLASS_NAME, null,
+                Type.getInternalName(Object.class), new String[]{NODE_TYPE});
+
+        for (int i = 0; i < leaves.size(); i++) {
+            cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, fieldName(i), NODE_DESC, null, null).visitEnd();
+        }
+        generateConstructor(cw, leaves.size());
+        generateEvaluate(cw, root, order);
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateConstructor(ClassWriter cw, int leafCount) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(Object.class), "<init>", "()V", false);
+        for (int i = 0; i < leafCount; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(Opcodes.AALOAD);
+            mv.visitFieldInsn(Opcodes.PUTFIELD, CLASS_NAME, fieldName(i), NODE_DESC);
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateEvaluate(ClassWriter cw, CompiledNode root, Map<CompiledNode, CompiledNode[]> order) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "evaluate", EVALUATE_DESC, null, null);
+        mv.visitCode();
+        Label ifTrue = new Label();
+        Label ifFalse = new Label();
+        generateNode(mv, root, ifTrue, ifFalse, order, new int[]{0});
+        mv.visitLabel(ifTrue);
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitLabel(ifFalse);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 生成一个节点的跳转代码，节点为 true 时跳到 ifTrue，为 false 时跳到 ifFalse
+     * 叶子节点的编号顺序和 collectLeaves 的收集顺序一致
+     */
+    private static void generateNode(MethodVisitor mv, CompiledNode node, Label ifTrue, Label ifFalse,
+                                     Map<CompiledNode, CompiledNode[]> order, int[] leafIndex) {
+        if (node instanceof AndNode) {
+            CompiledNode[] children = order.get(node);
+            if (children.length == 0) {
+                mv.visitJumpInsn(Opcodes.GOTO, ifTrue);
+                return;
+            }
+            for (int i = 0; i < children.length - 1; i++) {
+                // 子节点为 true 继续下一个子节点，为 false 直接短路
+                Label next = new Label();
+                generateNode(mv, children[i], next, ifFalse, order, leafIndex);
+                mv.visitLabel(next);
+            }
+            generateNode(mv, children[children.length - 1], ifTrue, ifFalse, order, leafIndex);
+        } else if (node instanceof OrNode) {
+            CompiledNode[] children = order.get(node);
+            if (children.length == 0) {
+                mv.visitJumpInsn(Opcodes.GOTO, ifFalse);
+                return;
+            }
+            for (int i = 0; i < children.length - 1; i++) {
+                // 子节点为 true 直接短路，为 false 继续下一个子节点
+                Label next = new Label();
+                generateNode(mv, children[i], ifTrue, next, order, leafIndex);
+                mv.visitLabel(next);
+            }
+            generateNode(mv, children[children.length - 1], ifTrue, ifFalse, order, leafIndex);
+        } else {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, CLASS_NAME, fieldName(leafIndex[0]++), NODE_DESC);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, NODE_TYPE, "evaluate", EVALUATE_DESC, true);
+            mv.visitJumpInsn(Opcodes.IFEQ, ifFalse);
+            mv.visitJumpInsn(Opcodes.GOTO, ifTrue);
+        }
+    }
+
+    private static String fieldName(int index) {
+        return "n" + index;
+    }
+
+    /**
+     * 生成的节点和生成时每个逻辑节点的子节点数组
+     */
+    record Generated(CompiledNode node, Map<CompiledNode, CompiledNode[]> order) {
+
+        /**
+         * 开启自适应排序的逻辑节点是否调整过子节点顺序，调整后需要重新生成
+         */
+        boolean orderChanged() {
+            for (Map.Entry<CompiledNode, CompiledNode[]> entry : order.entrySet()) {
+                if (children(entry.getKey()) != entry.getValue()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 是否有开启自适应排序的逻辑节点
+         */
+        boolean reorderable() {
+            for (CompiledNode node : order.keySet()) {
+                if (node instanceof AndNode andNode ? andNode.reorderable() : ((OrNode) node).reorderable()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ConditionNode;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import com.yxw.expression.resolve.expression.LogicNode;
+import com.yxw.expression.resolve.expression.Operand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译时的共享范围，单个表达式和规则集都有一个
+ * 规则集先统计所有规则中每个操作数、条件节点出现的次数，编译时出现多次的操作数和条件节点只生成一份，
+ * 并分配一个求值结果的缓存下标，一次求值内只计算一次；单个表达式不做统计，不会共享
+ * 同时收集每张表用到的字段，查询数据库时只查询这些字段；以及用到的上下文字段，分配下标后生成 ContextLayout
+ * 单个表达式可以带有上下文的类型声明，声明了类型的上下文字段使用对应类型的比较逻辑，见 {@link TypedComparators}
+ *
+ * @author luffytmac
+ */
+final class CompileScope {
+
+    private static final String CONTEXT = "context";
+    private static final String DATABASE = "database";
+
+    private final Map<Object, Integer> occurrences = new HashMap<>();
+
+    private final Map<Object, SharedOperand> sharedOperands = new HashMap<>();
+
+    private final Map<Object, SharedCondition> sharedConditions = new HashMap<>();
+
+    private final Map<EventTypeEnum, Set<String>> projections = new EnumMap<>(EventTypeEnum.class);
+
+    private int slots;
+
+    /**
+     * 上下文字段 -> 在 ContextLayout 中的下标
+     */
+    private final Map<String, Integer> contextSlots = new LinkedHashMap<>();
+
+    /**
+     * 数据库查询用的唯一键字段
+     */
+    private final Set<String> keyFields = new HashSet<>();
+
+    /**
+     * 上下文的类型声明，没有声明时为 null
+     */
+    private final ContextSchema schema;
+
+    CompileScope() {
+        this(null);
+    }
+
+    CompileScope(ContextSchema schema) {
+        this.schema = schema;
+    }
+
+    ContextSchema schema() {
+        return schema;
+    }
+
+    /**
+     * 上下文来源的操作数声明的类型，不是上下文来源或者没有声明类型时返回 null
+     */
+    FieldTypeEnum contextType(Operand operand) {
+        if (schema == null || operand == null || !CONTEXT.equalsIgnoreCase(operand.getSource())) {
+            return null;
+        }
+        return schema.typeOf(operand.getField());
+    }
+
+    /**
+     * 统计一个规则中的操作数和条件节点
+     */
+    void count(BaseNode node) {
+        if (node instanceof LogicNode lNode) {
+            List<BaseNode> children = lNode.getChildren();
+            if (children != null) {
+                children.forEach(this::count);
+            }
+        } else if (node instanceof ConditionNode cNode) {
+            occurrences.merge(conditionKey(cNode), 1, Integer::sum);
+            countOperand(cNode.getLeft());
+            countOperand(cNode.getRight());
+        }
+    }
+
+    private void countOperand(Operand operand) {
+        Object key = operandKey(operand);
+        if (key != null) {
+            occurrences.merge(key, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * 出现多次的操作数返回共享的操作数，否则原样返回
+     */
+    OperandResolver shareOperand(Operand operand, OperandResolver resolver) {
+        Object key = operandKey(operand);
+        if (key == null || occurrences.getOrDefault(key, 0) < 2) {
+            return resolver;
+        }
+        return sharedOperands.computeIfAbsent(key, k -> new SharedOperand(slots++, resolver));
+    }
+
+    /**
+     * 出现多次的条件节点返回共享的条件节点，否则原样返回
+     * 共享的条件节点在第一次编译时创建，后续相同的条件节点不需要再编译
+     */
+    SharedCondition findCondition(ConditionNode node) {
+        return sharedConditions.get(conditionKey(node));
+    }
+
+    CompiledNode shareCondition(ConditionNode node, CompiledNode condition) {
+        Object key = conditionKey(node);
+        if (occurrences.getOrDefault(key, 0) < 2) {
+            return condition;
+        }
+        return sharedConditions.computeIfAbsent(key, k -> new SharedCondition(slots++, condition));
+    }
+
+    /**
+     * 记录数据库操作数用到的字段，返回这张表在整个编译范围内用到的所有字段
+     * 返回的集合在编译结束后才完整，求值时只读
+     */
+    Set<String> project(EventTypeEnum event, String field) {
+        Set<String> fields = projections.computeIfAbsent(event, e -> new LinkedHashSet<>());
+        fields.add(field);
+        return Collections.unmodifiableSet(fields);
+    }
+
+    /**
+     * 用到的所有表和每张表用到的字段，编译结束后调用
+     */
+    Map<EventTypeEnum, Set<String>> projections() {
+        Map<EventTypeEnum, Set<String>> result = new EnumMap<>(EventTypeEnum.class);
+        projections.forEach((event, fields) -> result.put(event, Collections.unmodifiableSet(fields)));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 上下文字段在 ContextLayout 中的下标，同一个字段只分配一次
+     */
+    int contextSlot(String field) {
+        return contextSlots.computeIfAbsent(field, f -> contextSlots.size());
+    }
+
+    /**
+     * 给数据库查询用的唯一键字段分配下标，唯一键始终按照原值读取，布局中不带类型
+     */
+    int keySlot(String field) {
+        keyFields.add(field);
+        return contextSlot(field);
+    }
+
+    /**
+     * 用到的上下文字段的布局，编译结束后调用
+     */
+    ContextLayout layout() {
+        List<String> fields = new ArrayList<>(contextSlots.keySet());
+        FieldTypeEnum[] types = new FieldTypeEnum[fields.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = schema == null || keyFields.contains(fields.get(i)) ? null : schema.typeOf(fields.get(i));
+        }
+        return new ContextLayout(fields, types);
+    }
+
+    int slots() {
+        return slots;
+    }
+
+    int sharedOperandCount() {
+        return sharedOperands.size();
+    }
+
+    int sharedConditionCount() {
+        return sharedConditions.size();
+    }
+
+    /**
+     * 只有上下文和数据库来源的操作数需要共享，字面量取值没有成本
+     */
+    private static Object operandKey(Operand operand) {
+        if (operand == null || operand.getSource() == null) {
+            return null;
+        }
+        String source = operand.getSource().toLowerCase(Locale.ROOT);
+        if (CONTEXT.equals(source)) {
+            return Arrays.asList(CONTEXT, operand.getField());
+        }
+        if (DATABASE.equals(source)) {
+            return Arrays.asList(DATABASE, operand.getTable(), operand.getField());
+        }
+        return null;
+    }
+
+    private static Object conditionKey(ConditionNode node) {
+        return Arrays.asList(valueKey(node.getLeft()), valueKey(node.getRight()), node.getComparison(),
+                node.getValue(), node.getValueComparison());
+    }
+
+    private static Object valueKey(Operand operand) {
+        if (operand == null) {
+            return null;
+        }
+        Object key = operandKey(operand);
+        if (key != null) {
+            return key;
+        }
+        return Arrays.asList(operand.getSource(), operand.getTable(), operand.getField(), operand.getValue());
+    }
+}
@@ -0,0 +1,228 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.google.common.hash.HashCode;
+import com.yxw.expression.resolve.component.ExpressionMeters;
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 编译后的表达式，包含表达式json的内容hash、原始的表达式树和编译后的节点树
+ * 原始的表达式树只用于排查问题，求值只走编译后的节点
+ *
+ * 表达式先以节点树的方式执行，调用次数超过阈值后生成字节码，之后的求值都走字节码
+ * 开启自适应排序时，字节码层每 sampleInterval 次求值回到节点树上采样一次，逻辑节点调整子节点顺序后按照新的顺序重新生成字节码
+ * 带有上下文类型声明编译的表达式，求值的上下文需要通过 newContext 创建，先把声明了类型的字段转换成规范的类型
+ * 频繁求值的调用方可以通过 newSlotContext 创建按照下标保存字段的上下文并反复使用，不需要每次都创建 Map，见 {@link SlotContext}
+ *
+ * @author luffytmac
+ */
+public final class CompiledExpression {
+
+    private static final Logger log = LoggerFactory.getLogger(CompiledExpression.class);
+
+    private final HashCode hash;
+
+    private final BaseNode source;
+
+    private final CompiledNode root;
+
+    /**
+     * 生成字节码的调用次数阈值，小于等于 0 代表不生成字节码
+     */
+    private final int tierThreshold;
+
+    /**
+     * 字节码层每多少次求值回到节点树上采样一次，0 代表没有开启自适应排序
+     */
+    private final int sampleInterval;
+
+    /**
+     * 求值前并发预取数据库数据，不需要预取时为 null
+     */
+    private final PrefetchPlan prefetchPlan;
+
+    /**
+     * 编译时使用的上下文类型声明，没有时为 null
+     */
+    private final ContextSchema schema;
+
+    /**
+     * 用到的上下文字段的布局
+     */
+    private final ContextLayout layout;
+
+    private final AtomicBoolean promoting = new AtomicBoolean();
+
+    private volatile CompiledNode active;
+
+    /**
+     * 当前使用的字节码，还在节点树层时为 null
+     */
+    private volatile BytecodeGenerator.Generated generated;
+
+    private volatile ExpressionTier tier = ExpressionTier.TREE;
+
+    /**
+     * 节点树层的调用次数，用于判断是否达到阈值；进入字节码层后在开启自适应排序时继续计数，用于判断是否需要采样
+     */
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    /**
+     * 求值指标，第一次求值时由 ServiceMetrics 创建
+     */
+    private volatile ExpressionMeters meters;
+
+    CompiledExpression(HashCode hash, BaseNode source, CompiledNode root, int tierThreshold, int sampleInterval,
+                       PrefetchPlan prefetchPlan, ContextSchema schema, ContextLayout layout) {
+        this.hash = hash;
+        this.source = source;
+        this.root = root;
+        this.active = root;
+        this.tierThreshold = tierThreshold;
+        this.sampleInterval = sampleInterval;
+        this.prefetchPlan = prefetchPlan;
+        this.schema = schema;
+        this.layout = layout;
+    }
+
+    public boolean evaluate(Map<String, Object> context) {
+        return evaluate(newContext(context));
+    }
+
+    /**
+     * 创建求值的上下文，有类型声明时声明了类型的字段在条件节点读取时转换，见 {@link ContextOperand}
+     */
+    public EvaluationContext newContext(Map<String, Object> context) {
+        return new EvaluationContext(context);
+    }
+
+    /**
+     * 按照这个表达式的布局创建一个空的上下文，见 {@link SlotContext}
+     */
+    public SlotContext newSlotContext() {
+        return layout.newContext();
+    }
+
+    /**
+     * 用按照下标保存字段的上下文求值，求值过程中不再创建上下文对象，结果和把同样的字段放进 Map 求值一致
+     *
+     * @throws IllegalArgumentException 上下文不是按照这个表达式的布局创建的
+     */
+    public boolean evaluate(SlotContext context) {
+        if (!layout.isCompatible(context.getLayout())) {
+            throw new IllegalArgumentException("Slot context is created for another layout: " + context.getLayout().fields());
+        }
+        return evaluate(context.evaluationContext());
+    }
+
+    public boolean evaluate(EvaluationContext context) {
+        BytecodeGenerator.Generated current = generated;
+        if (current == null) {
+            if (tierThreshold > 0 && invocations.incrementAndGet() >= tierThreshold) {
+                promote();
+            }
+        } else if (sampleInterval > 0 && invocations.incrementAndGet() % sampleInterval == 0 && current.reorderable()) {
+            return sample(current, context);
+        }
+        if (prefetchPlan != null) {
+            prefetchPlan.prefetch(context);
+        }
+        return active.evaluate(context);
+    }
+
+    /**
+     * 字节码层回到节点树上求值并采样，采样后子节点顺序发生变化时重新生成字节码
+     */
+    private boolean sample(BytecodeGenerator.Generated current, EvaluationContext context) {
+        if (prefetchPlan != null) {
+            prefetchPlan.prefetch(context);
+        }
+        boolean result = root.sample(context);
+        if (current.orderChanged()) {
+            promote();
+        }
+        return result;
+    }
+
+    /**
+     * 执行表达式并记录执行过程，结果和 evaluate 一致，见 {@link ExpressionExplainer}
+     * 始终按照节点树执行，不计入调用次数，不会触发生成字节码
+     */
+    public ExpressionTrace explain(EvaluationContext context) {
+        long start = System.nanoTime();
+        if (prefetchPlan != null) {
+            prefetchPlan.prefetch(context);
+        }
+        ExpressionTrace trace = new ExpressionExplainer(context).explain(root);
+        trace.setNanos(System.nanoTime() - start);
+        trace.setTier(tier.name());
+        if (context.getFetchScope() != null) {
+            trace.setPrefetchCount(context.getFetchScope().getPrefetchCount());
+        }
+        return trace;
+    }
+
+    /**
+     * 按照当前的子节点顺序生成字节码并切换执行层级，只会有一个线程执行生成
+     * 生成失败时继续使用节点树（或者上一次生成的字节码），之后不再尝试生成
+     */
+    private void promote() {
+        if (!promoting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            BytecodeGenerator.Generated result = BytecodeGenerator.generate(root);
+            if (result == null) {
+                log.info("Expression {} has more than {} conditions, keep running as tree", hash, BytecodeGenerator.MAX_LEAVES);
+                return;
+            }
+            active = result.node();
+            generated = result;
+            tier = ExpressionTier.BYTECODE;
+            promoting.set(false);
+        } catch (Throwable e) {
+            log.warn("Failed to generate bytecode for expression {}: {}", hash, e.getMessage());
+        }
+    }
+
+    public HashCode getHash() {
+        return hash;
+    }
+
+    public BaseNode getSource() {
+        return source;
+    }
+
+    public ContextSchema getSchema() {
+        return schema;
+    }
+
+    public ContextLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 当前所处的执行层级
+     */
+    public ExpressionTier getTier() {
+        return tier;
+    }
+
+    public int getInvocations() {
+        return invocations.get();
+    }
+
+    public ExpressionMeters getMeters() {
+        return meters;
+    }
+
+    public void setMeters(ExpressionMeters meters) {
+        this.meters = meters;
+    }
+}
@@ -0,0 +1,28 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 编译后的表达式节点
+ * 操作符、比较符、操作数来源、表名等在编译阶段就已经解析好，求值时不再做任何字符串判断
+ * 实现类可以被多个线程同时使用；除了开启自适应排序时 AND/OR 节点的子节点顺序（运行时整体替换子节点数组，见 {@link LogicProfile}），
+ * 其他状态在编译后都不再变化
+ *
+ * @author luffytmac
+ */
+public interface CompiledNode {
+
+    /**
+     * 对节点求值
+     *
+     * @param context 上下文数据
+     * @return 节点的布尔值结果
+     */
+    boolean evaluate(EvaluationContext context);
+
+    /**
+     * 对节点求值，同时让这个节点和下面所有开启了自适应排序的逻辑节点都记录一次采样，结果和 evaluate 一致
+     * 表达式生成字节码之后，定期通过这个方法回到节点树上采样，见 {@link CompiledExpression}
+     */
+    default boolean sample(EvaluationContext context) {
+        return evaluate(context);
+    }
+}
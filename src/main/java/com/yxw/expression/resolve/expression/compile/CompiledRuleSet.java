@@ -0,0 +1,83 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 编译后的规则集
+ * 规则集中所有规则共享同一份求值图，相同的操作数、条件节点在一次求值内只计算一次
+ *
+ * @author luffytmac
+ */
+public final class CompiledRuleSet {
+
+    private static final Logger log = LoggerFactory.getLogger(CompiledRuleSet.class);
+
+    private final String name;
+
+    private final Map<String, CompiledNode> rules;
+
+    private final int memoSize;
+
+    /**
+     * 求值前并发预取所有规则用到的数据库数据，不需要预取时为 null
+     */
+    private final PrefetchPlan prefetchPlan;
+
+    CompiledRuleSet(String name, Map<String, CompiledNode> rules, int memoSize, PrefetchPlan prefetchPlan) {
+        this.name = name;
+        this.rules = rules;
+        this.memoSize = memoSize;
+        this.prefetchPlan = prefetchPlan;
+    }
+
+    /**
+     * 用同一个上下文对规则集中的所有规则求值
+     *
+     * @param context 上下文数据
+     * @return 规则id -> 求值结果，顺序和注册时一致
+     */
+    public Map<String, Boolean> evaluate(Map<String, Object> context) {
+        return evaluate(new EvaluationContext(context, memoSize));
+    }
+
+    /**
+     * 用同一个上下文对规则集中的所有规则求值，求值上下文需要通过 newContext 创建
+     */
+    public Map<String, Boolean> evaluate(EvaluationContext evaluationContext) {
+        Map<String, Boolean> result = new LinkedHashMap<>(rules.size() * 2);
+        if (prefetchPlan != null) {
+            prefetchPlan.prefetch(evaluationContext);
+        }
+        for (Map.Entry<String, CompiledNode> entry : rules.entrySet()) {
+            boolean matched;
+            try {
+                matched = entry.getValue().evaluate(evaluationContext);
+            } catch (Exception e) {
+                log.error("Error evaluating rule, ruleSet: {}, ruleId: {}, exception info: {}", name, entry.getKey(), e.getMessage());
+                matched = false;
+            }
+            result.put(entry.getKey(), matched);
+        }
+        return result;
+    }
+
+    /**
+     * 创建本规则集求值用的上下文
+     */
+    public EvaluationContext newContext(Map<String, Object> context) {
+        return new EvaluationContext(context, memoSize);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, CompiledNode> getRules() {
+        return Collections.unmodifiableMap(rules);
+    }
+}
@@ -0,0 +1,59 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 条件节点：取出左右两个操作数的值，再用编译阶段选定的比较逻辑进行比较
+ */
+final class ConditionLeaf implements CompiledNode {
+
+    private static final Logger log = LoggerFactory.getLogger(ConditionLeaf.class);
+
+    private final OperandResolver left;
+
+    private final OperandResolver right;
+
+    private final ConditionTest test;
+
+    /**
+     * 配置的比较符，只用于 explain
+     */
+    private final String comparison;
+
+    ConditionLeaf(OperandResolver left, OperandResolver right, ConditionTest test, String comparison) {
+        this.left = left;
+        this.right = right;
+        this.test = test;
+        this.comparison = comparison;
+    }
+
+    @Override
+    public boolean evaluate(EvaluationContext context) {
+        try {
+            Object leftValue = left.resolve(context);
+            Object rightValue = right.resolve(context);
+            return test.test(leftValue, rightValue);
+        } catch (Exception e) {
+            //如果在比较过程中发生异常，返回false
+            log.warn("Exception occurred during evaluation: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    OperandResolver left() {
+        return left;
+    }
+
+    OperandResolver right() {
+        return right;
+    }
+
+    ConditionTest test() {
+        return test;
+    }
+
+    String comparison() {
+        return comparison;
+    }
+}
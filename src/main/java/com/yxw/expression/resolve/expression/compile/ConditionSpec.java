@@ -0,0 +1,16 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.yxw.expression.resolve.expression.ConditionNode;
+import com.yxw.expression.resolve.expression.Operand;
+
+/**
+ * 编译一个条件节点需要的内容，既可以来自 ConditionNode，也可以在 JsonParser 中直接读取，见 {@link ExpressionStreamParser}
+ *
+ * @author luffytmac
+ */
+record ConditionSpec(Operand left, Operand right, String comparison, Number value, String valueComparison) {
+
+    static ConditionSpec of(ConditionNode node) {
+        return new ConditionSpec(node.getLeft(), node.getRight(), node.getComparison(), node.getValue(), node.getValueComparison());
+    }
+}
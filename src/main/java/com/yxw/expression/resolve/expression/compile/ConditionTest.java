@@ -0,0 +1,10 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 编译阶段根据比较符选定的比较逻辑，差值比较需要的固定数值和比较符也在编译阶段绑定好
+ */
+@FunctionalInterface
+interface ConditionTest {
+
+    boolean test(Object leftValue, Object rightValue);
+}
@@ -0,0 +1,22 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 结果固定的节点，比如规则集中没有配置表达式的规则固定为 true，表达式解析失败的规则固定为 false
+ */
+final class ConstantNode implements CompiledNode {
+
+    static final ConstantNode TRUE = new ConstantNode(true);
+
+    static final ConstantNode FALSE = new ConstantNode(false);
+
+    private final boolean value;
+
+    private ConstantNode(boolean value) {
+        this.value = value;
+    }
+
+    @Override
+    public boolean evaluate(EvaluationContext context) {
+        return value;
+    }
+}
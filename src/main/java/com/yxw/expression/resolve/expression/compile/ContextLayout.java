@@ -0,0 +1,77 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+import com.yxw.expression.resolve.expression.ContextSchema;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 表达式用到的上下文字段的布局：每个字段在编译阶段分配一个下标
+ * 包含上下文来源的操作数用到的字段，以及数据库操作数查询时用到的唯一键字段
+ * 调用方按照布局创建可以复用的 {@link SlotContext}，求值时按照下标读取字段，不再查找 Map
+ * 布局不可变，同一个表达式的同一次编译只有一个布局
+ *
+ * @author luffytmac
+ */
+public final class ContextLayout {
+
+    private final String[] fields;
+
+    /**
+     * 每个字段在上下文类型声明中的类型，没有声明时、以及数据库查询用的唯一键字段为 null，见 {@link ContextSchema}
+     */
+    private final FieldTypeEnum[] types;
+
+    private final Map<String, Integer> slots;
+
+    ContextLayout(List<String> fields, FieldTypeEnum[] types) {
+        this.fields = fields.toArray(new String[0]);
+        this.types = types;
+        this.slots = new HashMap<>();
+        for (int i = 0; i < this.fields.length; i++) {
+            slots.put(this.fields[i], i);
+        }
+    }
+
+    /**
+     * 按照布局创建一个空的上下文，上下文可以反复使用，但是不能跨线程共享
+     */
+    public SlotContext newContext() {
+        return new SlotContext(this);
+    }
+
+    /**
+     * 字段的下标，表达式没有用到这个字段时返回 -1
+     */
+    public int slot(String field) {
+        Integer slot = slots.get(field);
+        return slot == null ? -1 : slot;
+    }
+
+    public int size() {
+        return fields.length;
+    }
+
+    public String field(int slot) {
+        return fields[slot];
+    }
+
+    public List<String> fields() {
+        return Collections.unmodifiableList(Arrays.asList(fields));
+    }
+
+    FieldTypeEnum type(int slot) {
+        return types[slot];
+    }
+
+    /**
+     * 字段和类型都相同的布局可以使用同一个上下文，比如同一个表达式被重新编译
+     */
+    public boolean isCompatible(ContextLayout other) {
+        return this == other || (other != null && Arrays.equals(fields, other.fields) && Arrays.equals(types, other.types));
+    }
+}
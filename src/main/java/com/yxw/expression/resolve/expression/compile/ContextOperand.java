@@ -0,0 +1,77 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+import com.yxw.expression.resolve.expression.ContextSchema;
+
+import java.util.Map;
+
+/**
+ * 从上下文中获取值的操作数，上下文是 SlotContext 时按照编译阶段分配的下标读取
+ * 字段在上下文类型声明中有类型时，读取时转换成声明的类型，无法转换时抛出异常，所在的条件节点为 false
+ * 转换结果（包括转换失败）保存在本次求值的上下文中，同一个字段被多个条件读取时只转换一次
+ */
+final class ContextOperand extends OperandResolver {
+
+    private final String field;
+
+    /**
+     * 字段在 ContextLayout 中的下标
+     */
+    private final int slot;
+
+    /**
+     * 字段在上下文类型声明中的类型，没有声明时为 null
+     */
+    private final FieldTypeEnum type;
+
+    ContextOperand(String field, int slot, FieldTypeEnum type) {
+        this.field = field;
+        this.slot = slot;
+        this.type = type;
+    }
+
+    /**
+     * 转换结果为 null 时的占位，和还没有转换区分开
+     */
+    private static final Object NULL = new Object();
+
+    @Override
+    Object doResolve(EvaluationContext context) {
+        if (type == null) {
+            return value(context);
+        }
+        Object[] converted = context.converted(slot);
+        Object cached = converted[slot];
+        if (cached == null) {
+            try {
+                Object value = ContextSchema.convert(type, value(context), field);
+                cached = value == null ? NULL : value;
+            } catch (IllegalArgumentException e) {
+                cached = e;
+            }
+            converted[slot] = cached;
+        }
+        if (cached instanceof IllegalArgumentException e) {
+            throw e;
+        }
+        return cached == NULL ? null : cached;
+    }
+
+    private Object value(EvaluationContext context) {
+        SlotContext slots = context.slots();
+        if (slots != null) {
+            return slots.get(slot);
+        }
+        //如果context中不包含字段，直接抛出异常，对应就会返回false
+        Map<String, Object> data = context.getData();
+        Object value = data.get(field);
+        if (value == null && !data.containsKey(field)) {
+            throw new IllegalArgumentException("Context does not contain key: " + field);
+        }
+        return value;
+    }
+
+    String field() {
+        return field;
+    }
+}
@@ -0,0 +1,46 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.yxw.expression.resolve.component.FetchTableData;
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 从数据库中获取值的操作数，表名对应的事件在编译阶段就已经确定
+ * 同一次求值中同一张表的数据只查询一次，查询时只查整个表达式用到的这张表的字段
+ */
+final class DatabaseOperand extends OperandResolver {
+
+    private final FetchTableData fetchTableData;
+
+    private final EventTypeEnum event;
+
+    private final String field;
+
+    private final Set<String> fields;
+
+    DatabaseOperand(FetchTableData fetchTableData, EventTypeEnum event, String field, Set<String> fields) {
+        this.fetchTableData = fetchTableData;
+        this.event = event;
+        this.field = field;
+        this.fields = fields;
+    }
+
+    @Override
+    Object doResolve(EvaluationContext context) {
+        Map<String, Object> data = fetchTableData.fetchData(event, context.getData(), context.fetchScope(), fields);
+        if (data == null || data.isEmpty()) {
+            return null;
+        }
+        return data.get(field);
+    }
+
+    EventTypeEnum event() {
+        return event;
+    }
+
+    String field() {
+        return field;
+    }
+}
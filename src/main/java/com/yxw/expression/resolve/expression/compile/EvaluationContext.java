@@ -0,0 +1,113 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.yxw.expression.resolve.component.FetchScope;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 一次求值过程中的上下文
+ * 除了调用方传入的上下文数据，还保存本次求值过程中可以复用的中间结果，只在一次求值内有效，不能跨线程共享
+ * 上下文数据可以是 Map，也可以是按照下标保存字段的 {@link SlotContext}，后者的求值上下文随 SlotContext 一起复用
+ *
+ * @author luffytmac
+ */
+public final class EvaluationContext {
+
+    private static final Object[] NO_MEMO = new Object[0];
+
+    private final Map<String, Object> data;
+
+    /**
+     * 规则集中被多个规则共享的操作数、条件节点的求值结果，下标由编译阶段分配
+     */
+    private final Object[] memo;
+
+    /**
+     * 按照下标保存的上下文数据，上下文数据是 Map 时为 null
+     */
+    private final SlotContext slots;
+
+    /**
+     * 声明了类型的上下文字段转换后的值（或者转换失败的异常），按照 ContextLayout 的下标保存，第一次读取时创建
+     * 同一个字段被多个条件读取时只转换一次，见 {@link ContextOperand}
+     */
+    private Object[] converted;
+
+    /**
+     * 本次求值中已经查询过的数据，第一次查询数据库时才创建
+     */
+    private FetchScope fetchScope;
+
+    public EvaluationContext(Map<String, Object> data) {
+        this(data, 0);
+    }
+
+    EvaluationContext(Map<String, Object> data, int memoSize) {
+        this.data = data;
+        this.memo = memoSize == 0 ? NO_MEMO : new Object[memoSize];
+        this.slots = null;
+    }
+
+    EvaluationContext(SlotContext slots) {
+        this.data = slots.asMap();
+        this.memo = NO_MEMO;
+        this.slots = slots;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    /**
+     * 上下文数据是否为空，为空时所有操作数的值都是 null
+     */
+    boolean isDataEmpty() {
+        if (slots != null) {
+            return slots.isEmpty();
+        }
+        return data == null || data.isEmpty();
+    }
+
+    SlotContext slots() {
+        return slots;
+    }
+
+    /**
+     * 复用前清掉上一次求值的中间结果
+     */
+    void reset() {
+        fetchScope = null;
+        if (converted != null) {
+            Arrays.fill(converted, null);
+        }
+    }
+
+    /**
+     * 转换结果的缓存，长度至少为 slot + 1
+     */
+    Object[] converted(int slot) {
+        if (converted == null || converted.length <= slot) {
+            converted = Arrays.copyOf(converted == null ? NO_MEMO : converted, Math.max(slot + 1, 8));
+        }
+        return converted;
+    }
+
+    Object[] memo() {
+        return memo;
+    }
+
+    FetchScope fetchScope() {
+        if (fetchScope == null) {
+            fetchScope = new FetchScope();
+        }
+        return fetchScope;
+    }
+
+    /**
+     * 本次求值的数据获取范围，没有查询过数据库时返回 null
+     */
+    public FetchScope getFetchScope() {
+        return fetchScope;
+    }
+}
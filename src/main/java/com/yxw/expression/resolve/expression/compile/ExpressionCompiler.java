@@ -0,0 +1,504 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.common.hash.HashCode;
+import com.yxw.expression.resolve.component.DatabasePrefetcher;
+import com.yxw.expression.resolve.component.FetchTableData;
+import com.yxw.expression.resolve.enums.ComparisonEnum;
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ConditionNode;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import com.yxw.expression.resolve.expression.LiteralValue;
+import com.yxw.expression.resolve.expression.LogicNode;
+import com.yxw.expression.resolve.expression.Operand;
+import com.yxw.expression.resolve.expression.ValueComparators;
+import com.yxw.expression.resolve.utils.JsonUtils;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.util.StringUtils;
+
+import java.io.IOException;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * 表达式编译器
+ * 将 LogicNode/ConditionNode 组成的表达式树编译成 CompiledNode 树，
+ * 操作符、比较符、操作数来源、表名在这里一次性解析好，求值时不再重复判断
+ * 编译后的求值结果和 ConditionEvaluator 解释执行的结果完全一致
+ * 调用次数超过 expression.tiered.threshold 的表达式会进一步生成字节码，见 {@link CompiledExpression}
+ * 开启 expression.optimizer.reorder.enabled 时，AND/OR 子节点的执行顺序会按照采样统计自适应调整，见 {@link LogicProfile}，
+ * 生成字节码时使用当时的执行顺序，之后不再调整
+ * 带有上下文类型声明编译时，声明了类型的上下文字段之间、字段和字面量之间的大小、相等比较使用对应类型的比较逻辑，见 {@link ContextSchema}
+ *
+ * @author luffytmac
+ */
+@Component
+public class ExpressionCompiler {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpressionCompiler.class);
+
+    private static final String CONTEXT = "context";
+    private static final String LITERAL = "literal";
+    private static final String DATABASE = "database";
+
+    private static final String OPERATOR_AND = "AND";
+    private static final String OPERATOR_OR = "OR";
+
+    @Resource
+    private FetchTableData fetchTableData;
+
+    @Resource
+    private DatabasePrefetcher databasePrefetcher;
+
+    /**
+     * 表达式调用多少次之后生成字节码，小于等于 0 代表不生成字节码
+     */
+    @Value("${expression.tiered.threshold:10000}")
+    private int tierThreshold;
+
+    /**
+     * 是否按照采样统计自适应调整 AND/OR 子节点的执行顺序
+     */
+    @Value("${expression.optimizer.reorder.enabled:true}")
+    private boolean reorderEnabled;
+
+    @Value("${expression.optimizer.reorder.sample-interval:16}")
+    private int reorderSampleInterval;
+
+    @Value("${expression.optimizer.reorder.reorder-samples:256}")
+    private int reorderSamples;
+
+    @Value("${expression.optimizer.reorder.min-samples:16}")
+    private int reorderMinSamples;
+
+    /**
+     * 编译整个表达式树
+     *
+     * @param hash 表达式json的内容hash
+     * @param root 表达式树的根节点
+     */
+    public CompiledExpression compile(HashCode hash, BaseNode root) {
+        return compile(hash, root, null);
+    }
+
+    /**
+     * 按照上下文的类型声明编译整个表达式树，求值时先按照类型声明转换上下文
+     *
+     * @param schema 上下文的类型声明，为 null 时和没有类型声明一致
+     */
+    public CompiledExpression compile(HashCode hash, BaseNode root, ContextSchema schema) {
+        CompileScope scope = new CompileScope(schema);
+        CompiledNode compiled = compileNode(root, scope);
+        return new CompiledExpression(hash, root, compiled, tierThreshold, sampleInterval(), prefetchPlan(scope), schema, scope.layout());
+    }
+
+    /**
+     * 从 JsonParser 中直接编译表达式，不生成表达式json字符串和 LogicNode/ConditionNode，见 {@link ExpressionStreamParser}
+     * 编译后的表达式没有原始的表达式树
+     *
+     * @param hash   表达式 token 流的内容hash
+     * @param parser 指向表达式对象开头的 JsonParser
+     */
+    public CompiledExpression compile(HashCode hash, JsonParser parser) throws IOException {
+        return compile(hash, parser, null);
+    }
+
+    public CompiledExpression compile(HashCode hash, JsonParser parser, ContextSchema schema) throws IOException {
+        CompileScope scope = new CompileScope(schema);
+        CompiledNode compiled = new ExpressionStreamParser(this, scope).parse(parser);
+        return new CompiledExpression(hash, null, compiled, tierThreshold, sampleInterval(), prefetchPlan(scope), schema, scope.layout());
+    }
+
+    /**
+     * 编译规则集，所有规则中相同的操作数、条件节点只会编译一份，一次求值内只计算一次
+     * 没有配置表达式的规则固定为 true，表达式解析失败的规则固定为 false
+     *
+     * @param name  规则集名称
+     * @param rules 规则id -> 表达式json
+     */
+    public CompiledRuleSet compileRuleSet(String name, Map<String, String> rules) {
+        Map<String, BaseNode> parsed = new LinkedHashMap<>();
+        CompileScope scope = new CompileScope();
+        rules.forEach((ruleId, expressionJson) -> {
+            BaseNode node = parseRule(name, ruleId, expressionJson);
+            parsed.put(ruleId, node);
+            scope.count(node);
+        });
+
+        Map<String, CompiledNode> compiled = new LinkedHashMap<>();
+        parsed.forEach((ruleId, node) -> {
+            if (StrUtil.isEmpty(rules.get(ruleId))) {
+                compiled.put(ruleId, ConstantNode.TRUE);
+            } else if (node == null) {
+                compiled.put(ruleId, ConstantNode.FALSE);
+            } else {
+                compiled.put(ruleId, compileNode(node, scope));
+            }
+        });
+        log.info("Rule set {} compiled, rules: {}, shared operands: {}, shared conditions: {}",
+                name, compiled.size(), scope.sharedOperandCount(), scope.sharedConditionCount());
+        return new CompiledRuleSet(name, compiled, scope.slots(), prefetchPlan(scope));
+    }
+
+    /**
+     * 用到两张及以上的表并且开启了预取时生成预取计划，否则返回 null
+     */
+    private PrefetchPlan prefetchPlan(CompileScope scope) {
+        if (databasePrefetcher == null || !databasePrefetcher.isEager()) {
+            return null;
+        }
+        Map<EventTypeEnum, Set<String>> tables = scope.projections();
+        return tables.size() < 2 ? null : new PrefetchPlan(databasePrefetcher, tables);
+    }
+
+    private BaseNode parseRule(String name, String ruleId, String expressionJson) {
+        if (StrUtil.isEmpty(expressionJson)) {
+            return null;
+        }
+        try {
+            return JsonUtils.jsonToObject(expressionJson, BaseNode.class);
+        } catch (Exception e) {
+            log.error("解析规则集中的表达式失败, ruleSet: {}, ruleId: {}, exception info: {}", name, ruleId, e.getMessage());
+            return null;
+        }
+    }
+
+    private CompiledNode compileNode(BaseNode node, CompileScope scope) {
+        if (node instanceof LogicNode lNode) {
+            return compileLogicNode(lNode, scope);
+        } else if (node instanceof ConditionNode cNode) {
+            return compileConditionNode(cNode, scope);
+        }
+        return unsupportedNode(node);
+    }
+
+    private CompiledNode compileLogicNode(LogicNode logicNode, CompileScope scope) {
+        String operator = logicNode.getOperator();
+        if (!OPERATOR_AND.equals(operator) && !OPERATOR_OR.equals(operator)) {
+            return new FailingNode("Unsupported operator: " + operator);
+        }
+        List<BaseNode> children = logicNode.getChildren();
+        if (children == null) {
+            return new FailingNode("Children of logic node is null");
+        }
+        CompiledNode[] compiledChildren = new CompiledNode[children.size()];
+        for (int i = 0; i < compiledChildren.length; i++) {
+            compiledChildren[i] = compileNode(children.get(i), scope);
+        }
+        return compileLogic(operator, compiledChildren);
+    }
+
+    /**
+     * 用已经编译好的子节点编译逻辑节点，子节点为 null 代表没有配置子节点
+     */
+    CompiledNode compileLogic(String operator, CompiledNode[] children) {
+        if (!OPERATOR_AND.equals(operator) && !OPERATOR_OR.equals(operator)) {
+            return new FailingNode("Unsupported operator: " + operator);
+        }
+        if (children == null) {
+            return new FailingNode("Children of logic node is null");
+        }
+        ReorderPolicy policy = reorderPolicy(children);
+        return OPERATOR_AND.equals(operator) ? new AndNode(children, policy) : new OrNode(children, policy);
+    }
+
+    /**
+     * 不支持的节点，比如子节点列表中的 null
+     */
+    CompiledNode unsupportedNode(Object node) {
+        return new FailingNode("Unsupported node type: " + (node == null ? null : node.getClass().getName()));
+    }
+
+    /**
+     * 字节码层回到节点树上采样的间隔，没有开启自适应排序时为 0
+     */
+    private int sampleInterval() {
+        return reorderEnabled ? Math.max(1, reorderSampleInterval) : 0;
+    }
+
+    /**
+     * 只有一个子节点时不需要排序
+     */
+    private ReorderPolicy reorderPolicy(CompiledNode[] children) {
+        if (!reorderEnabled || children.length < 2) {
+            return null;
+        }
+        return new ReorderPolicy(Math.max(1, reorderSampleInterval), Math.max(1, reorderSamples), reorderMinSamples);
+    }
+
+    private CompiledNode compileConditionNode(ConditionNode node, CompileScope scope) {
+        // 规则集中已经编译过的相同条件节点直接复用
+        CompiledNode shared = scope.findCondition(node);
+        if (shared != null) {
+            return shared;
+        }
+        return scope.shareCondition(node, compileCondition(ConditionSpec.of(node), scope));
+    }
+
+    /**
+     * 编译条件节点，不处理条件节点的共享
+     */
+    CompiledNode compileCondition(ConditionSpec node, CompileScope scope) {
+        OperandResolver left = scope.shareOperand(node.left(), compileOperand(node.left(), scope));
+        OperandResolver right = scope.shareOperand(node.right(), compileOperand(node.right(), scope));
+        return new ConditionLeaf(left, right, compileTest(node, scope), node.comparison());
+    }
+
+    /**
+     * 根据比较符选定比较逻辑，一边是字面量时使用预先转换好字面量的比较逻辑
+     */
+    private ConditionTest compileTest(ConditionSpec node, CompileScope scope) {
+        ConditionTest generic = compileGenericTest(node);
+        String comparison = node.comparison();
+        Optional<ComparisonEnum> comparisonOpt = comparison == null
+                ? Optional.empty() : ComparisonEnum.getByCode(comparison.toUpperCase());
+        if (comparisonOpt.isEmpty()) {
+            return generic;
+        }
+        ConditionTest typed = compileTypedTest(node, comparisonOpt.get(), scope, generic);
+        if (typed != null) {
+            return typed;
+        }
+        LiteralValue rightLiteral = literalOf(node.right());
+        if (rightLiteral != null) {
+            Predicate<Object> test = compileRightLiteralTest(node, comparisonOpt.get(), rightLiteral);
+            if (test != null) {
+                // 上下文为空时字面量的值也是 null，这时走通用的比较逻辑
+                return (leftValue, rightValue) -> rightValue == null ? generic.test(leftValue, null) : test.test(leftValue);
+            }
+        }
+        LiteralValue leftLiteral = literalOf(node.left());
+        if (leftLiteral != null) {
+            Predicate<Object> test = compileLeftLiteralTest(node, comparisonOpt.get(), leftLiteral);
+            if (test != null) {
+                return (leftValue, rightValue) -> leftValue == null ? generic.test(null, rightValue) : test.test(rightValue);
+            }
+        }
+        return generic;
+    }
+
+    /**
+     * 声明了类型的上下文字段的比较逻辑：两边是同一类型的字段，或者一边是字段、另一边是可以转换成该类型的字面量
+     * 字面量在这里转换成字段的类型；其他情况返回 null，使用通用的比较逻辑
+     */
+    private ConditionTest compileTypedTest(ConditionSpec node, ComparisonEnum comparisonEnum, CompileScope scope,
+                                           ConditionTest generic) {
+        FieldTypeEnum leftType = scope.contextType(node.left());
+        FieldTypeEnum rightType = scope.contextType(node.right());
+        if (leftType == null && rightType == null) {
+            return null;
+        }
+        ConditionTest test = TypedComparators.of(leftType != null ? leftType : rightType, comparisonEnum);
+        if (test == null) {
+            return null;
+        }
+        if (leftType != null && leftType == rightType) {
+            return test;
+        }
+        if (leftType != null) {
+            Object literal = typedLiteralOf(node.right(), leftType);
+            // 上下文为空时字面量的值也是 null，这时走通用的比较逻辑
+            return literal == null ? null
+                    : (leftValue, rightValue) -> rightValue == null ? generic.test(leftValue, null) : test.test(leftValue, literal);
+        }
+        Object literal = typedLiteralOf(node.left(), rightType);
+        return literal == null ? null
+                : (leftValue, rightValue) -> leftValue == null ? generic.test(null, rightValue) : test.test(literal, rightValue);
+    }
+
+    /**
+     * 字面量转换成字段声明的类型，不是字面量、字面量为 null 或者无法转换时返回 null
+     */
+    private Object typedLiteralOf(Operand operand, FieldTypeEnum type) {
+        if (operand == null || !LITERAL.equalsIgnoreCase(operand.getSource())) {
+            return null;
+        }
+        try {
+            return ContextSchema.convert(type, operand.getValue());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 字面量操作数预先转换，不是字面量或者字面量为 null 时返回 null
+     */
+    private LiteralValue literalOf(Operand operand) {
+        if (operand == null || !LITERAL.equalsIgnoreCase(operand.getSource())) {
+            return null;
+        }
+        return LiteralValue.of(operand.getValue());
+    }
+
+    /**
+     * 右边是字面量时的比较逻辑，参数为左边的值；不需要特殊处理的比较符返回 null
+     */
+    private Predicate<Object> compileRightLiteralTest(ConditionSpec node, ComparisonEnum comparisonEnum, LiteralValue literal) {
+        ComparisonEnum valueComparison = ComparisonEnum.getByCode(node.valueComparison()).orElse(null);
+        return switch (comparisonEnum) {
+            case EQUAL -> value -> ValueComparators.customizeEquals(value, literal);
+            case GREATER_THAN -> value -> ValueComparators.compareValues(value, literal) > 0;
+            case LESS_THAN -> value -> ValueComparators.compareValues(value, literal) < 0;
+            case GREATER_THAN_OR_EQUAL -> value -> ValueComparators.compareValues(value, literal) >= 0;
+            case LESS_THAN_OR_EQUAL -> value -> ValueComparators.compareValues(value, literal) <= 0;
+            case CONTAINS -> value -> StringUtils.contains(ValueComparators.safeToString(value), literal.getText());
+            case STARTS_WITH -> value -> StringUtils.startsWith(ValueComparators.safeToString(value), literal.getText());
+            case ENDS_WITH -> value -> StringUtils.endsWith(ValueComparators.safeToString(value), literal.getText());
+            case EQUAL_YEAR -> value -> ValueComparators.compareDatesByUnit(value, literal, ChronoUnit.YEARS);
+            case EQUAL_MONTH -> value -> ValueComparators.compareDatesByUnit(value, literal, ChronoUnit.MONTHS);
+            case EQUAL_DAY -> value -> ValueComparators.compareDatesByUnit(value, literal, ChronoUnit.DAYS);
+            case DIFFERENCE_IN_YEARS, DIFFERENCE_IN_MONTHS, DIFFERENCE_IN_DAYS -> valueComparison == null ? null
+                    : value -> ValueComparators.compareDateDifference(value, literal, node.value(), valueComparison, differenceUnit(comparisonEnum));
+            case DIFFERENCE_IN_VALUE -> valueComparison == null ? null
+                    : value -> ValueComparators.compareNumericDifference(value, literal, node.value(), valueComparison);
+            default -> null;
+        };
+    }
+
+    /**
+     * 左边是字面量时的比较逻辑，参数为右边的值；大小比较交换左右两边，比较符随之取反
+     */
+    private Predicate<Object> compileLeftLiteralTest(ConditionSpec node, ComparisonEnum comparisonEnum, LiteralValue literal) {
+        ComparisonEnum valueComparison = ComparisonEnum.getByCode(node.valueComparison()).orElse(null);
+        return switch (comparisonEnum) {
+            case EQUAL -> value -> ValueComparators.customizeEquals(value, literal);
+            case GREATER_THAN -> value -> ValueComparators.compareValues(value, literal) < 0;
+            case LESS_THAN -> value -> ValueComparators.compareValues(value, literal) > 0;
+            case GREATER_THAN_OR_EQUAL -> value -> ValueComparators.compareValues(value, literal) <= 0;
+            case LESS_THAN_OR_EQUAL -> value -> ValueComparators.compareValues(value, literal) >= 0;
+            case CONTAINS -> value -> StringUtils.contains(literal.getText(), ValueComparators.safeToString(value));
+            case STARTS_WITH -> value -> StringUtils.startsWith(literal.getText(), ValueComparators.safeToString(value));
+            case ENDS_WITH -> value -> StringUtils.endsWith(literal.getText(), ValueComparators.safeToString(value));
+            case EQUAL_YEAR -> value -> ValueComparators.compareDatesByUnit(value, literal, ChronoUnit.YEARS);
+            case EQUAL_MONTH -> value -> ValueComparators.compareDatesByUnit(value, literal, ChronoUnit.MONTHS);
+            case EQUAL_DAY -> value -> ValueComparators.compareDatesByUnit(value, literal, ChronoUnit.DAYS);
+            case DIFFERENCE_IN_YEARS, DIFFERENCE_IN_MONTHS, DIFFERENCE_IN_DAYS -> valueComparison == null ? null
+                    : value -> ValueComparators.compareDateDifference(literal, value, node.value(), valueComparison, differenceUnit(comparisonEnum));
+            case DIFFERENCE_IN_VALUE -> valueComparison == null ? null
+                    : value -> ValueComparators.compareNumericDifference(value, literal, node.value(), valueComparison);
+            default -> null;
+        };
+    }
+
+    private static ChronoUnit differenceUnit(ComparisonEnum comparisonEnum) {
+        return switch (comparisonEnum) {
+            case DIFFERENCE_IN_YEARS -> ChronoUnit.YEARS;
+            case DIFFERENCE_IN_MONTHS -> ChronoUnit.MONTHS;
+            default -> ChronoUnit.DAYS;
+        };
+    }
+
+    /**
+     * 根据比较符选定通用的比较逻辑
+     */
+    private ConditionTest compileGenericTest(ConditionSpec node) {
+        String comparison = node.comparison();
+        Optional<ComparisonEnum> comparisonOpt = comparison == null
+                ? Optional.empty() : ComparisonEnum.getByCode(comparison.toUpperCase());
+        if (comparisonOpt.isEmpty()) {
+            return (leftValue, rightValue) -> {
+                throw new IllegalArgumentException("Invalid comparison operator: " + comparison);
+            };
+        }
+        ComparisonEnum comparisonEnum = comparisonOpt.get();
+        return switch (comparisonEnum) {
+            case EQUAL -> ValueComparators::customizeEquals;
+            case NOT_EQUAL -> (leftValue, rightValue) -> !Objects.equals(leftValue, rightValue);
+
+            case GREATER_THAN -> (leftValue, rightValue) -> ValueComparators.compareValues(leftValue, rightValue) > 0;
+            case LESS_THAN -> (leftValue, rightValue) -> ValueComparators.compareValues(leftValue, rightValue) < 0;
+            case GREATER_THAN_OR_EQUAL -> (leftValue, rightValue) -> ValueComparators.compareValues(leftValue, rightValue) >= 0;
+            case LESS_THAN_OR_EQUAL -> (leftValue, rightValue) -> ValueComparators.compareValues(leftValue, rightValue) <= 0;
+
+            // 字符串 包含、开头、结尾
+            case CONTAINS, STARTS_WITH, ENDS_WITH ->
+                    (leftValue, rightValue) -> ValueComparators.containsStartWithEndWith(leftValue, rightValue, comparisonEnum);
+
+            // 两个日期的年|月|日比较
+            case EQUAL_YEAR -> (leftValue, rightValue) -> ValueComparators.compareDatesByUnit(leftValue, rightValue, ChronoUnit.YEARS);
+            case EQUAL_MONTH -> (leftValue, rightValue) -> ValueComparators.compareDatesByUnit(leftValue, rightValue, ChronoUnit.MONTHS);
+            case EQUAL_DAY -> (leftValue, rightValue) -> ValueComparators.compareDatesByUnit(leftValue, rightValue, ChronoUnit.DAYS);
+
+            // 两个日期差值比较
+            case DIFFERENCE_IN_YEARS -> compileDateDifference(node, ChronoUnit.YEARS);
+            case DIFFERENCE_IN_MONTHS -> compileDateDifference(node, ChronoUnit.MONTHS);
+            case DIFFERENCE_IN_DAYS -> compileDateDifference(node, ChronoUnit.DAYS);
+
+            // 数值差值比较
+            case DIFFERENCE_IN_VALUE -> compileNumericDifference(node);
+
+            // NULL 和 EMPTY 检查
+            case IS_NULL -> (leftValue, rightValue) -> leftValue == null;
+            case IS_NOT_NULL -> (leftValue, rightValue) -> leftValue != null;
+            case IS_EMPTY -> (leftValue, rightValue) -> ValueComparators.isRightString(leftValue) && ((String) leftValue).isEmpty();
+            case IS_NOT_EMPTY -> (leftValue, rightValue) -> ValueComparators.isRightString(leftValue) && !((String) leftValue).isEmpty();
+        };
+    }
+
+    private ConditionTest compileDateDifference(ConditionSpec node, ChronoUnit unit) {
+        Number comparedValue = node.value();
+        String valueComparison = node.valueComparison();
+        Optional<ComparisonEnum> valueComparisonOpt = ComparisonEnum.getByCode(valueComparison);
+        if (valueComparisonOpt.isEmpty()) {
+            // 比较符非法时走未解析的版本，保持和解释执行一致的异常信息
+            return (leftValue, rightValue) ->
+                    ValueComparators.compareDateDifference(leftValue, rightValue, comparedValue, valueComparison, unit);
+        }
+        ComparisonEnum valueComparisonEnum = valueComparisonOpt.get();
+        return (leftValue, rightValue) ->
+                ValueComparators.compareDateDifference(leftValue, rightValue, comparedValue, valueComparisonEnum, unit);
+    }
+
+    private ConditionTest compileNumericDifference(ConditionSpec node) {
+        Number comparedValue = node.value();
+        String valueComparison = node.valueComparison();
+        Optional<ComparisonEnum> valueComparisonOpt = ComparisonEnum.getByCode(valueComparison);
+        if (valueComparisonOpt.isEmpty()) {
+            return (leftValue, rightValue) ->
+                    ValueComparators.compareNumericDifference(leftValue, rightValue, comparedValue, valueComparison);
+        }
+        ComparisonEnum valueComparisonEnum = valueComparisonOpt.get();
+        return (leftValue, rightValue) ->
+                ValueComparators.compareNumericDifference(leftValue, rightValue, comparedValue, valueComparisonEnum);
+    }
+
+    /**
+     * 根据 Operand 的数据来源选定取值方式
+     */
+    private OperandResolver compileOperand(Operand operand, CompileScope scope) {
+        if (operand == null) {
+            return NullOperand.INSTANCE;
+        }
+        String source = operand.getSource();
+        if (CONTEXT.equalsIgnoreCase(source)) {
+            return new ContextOperand(operand.getField(), scope.contextSlot(operand.getField()), scope.contextType(operand));
+        } else if (LITERAL.equalsIgnoreCase(source)) {
+            return new LiteralOperand(operand.getValue());
+        } else if (DATABASE.equalsIgnoreCase(source)) {
+            if (StrUtil.isEmpty(operand.getTable()) || StrUtil.isEmpty(operand.getField())) {
+                return new InvalidOperand("Table or field is empty");
+            }
+            Optional<EventTypeEnum> etOpt = EventTypeEnum.getByTable(operand.getTable());
+            if (etOpt.isEmpty()) {
+                return new InvalidOperand("Unsupported table name: " + operand.getTable());
+            }
+            // 查询用的唯一键也从上下文中读取，同样分配下标
+            scope.keySlot(FetchTableData.keyField(etOpt.get()));
+            return new DatabaseOperand(fetchTableData, etOpt.get(), operand.getField(), scope.project(etOpt.get(), operand.getField()));
+        }
+        return new InvalidOperand("Unsupported operand source: " + source);
+    }
+}
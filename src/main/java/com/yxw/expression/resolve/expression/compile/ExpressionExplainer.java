@@ -0,0 +1,214 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.yxw.expression.resolve.component.FetchScope;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按照编译后的节点树逐个节点执行表达式，同时记录执行过程，见 {@link ExpressionTrace}
+ * 求值逻辑和各个节点的 evaluate 完全一致（包括 AND/OR 当前的子节点顺序、短路、条件节点的异常处理），结果相同
+ * 只在请求 explain 时使用，正常求值的路径上没有任何记录逻辑；explain 不计入调用次数，也不参与自适应排序的采样
+ * 一个实例只用于一次求值，不能跨线程共享
+ *
+ * @author luffytmac
+ */
+final class ExpressionExplainer {
+
+    private final EvaluationContext context;
+
+    private final List<ExpressionTrace.FetchTrace> fetches = new ArrayList<>();
+
+    ExpressionExplainer(EvaluationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * 执行节点树，FailingNode 等抛出的异常会中断整个求值，和正常求值一样结果为 false
+     */
+    ExpressionTrace explain(CompiledNode root) {
+        ExpressionTrace trace = new ExpressionTrace();
+        ExpressionTrace.NodeTrace rootTrace = describe(root);
+        trace.setRoot(rootTrace);
+        try {
+            trace.setResult(evaluate(root, rootTrace));
+        } catch (RuntimeException e) {
+            trace.setResult(false);
+            trace.setError(e.getMessage());
+        }
+        trace.setFetches(fetches);
+        return trace;
+    }
+
+    private boolean evaluate(CompiledNode node, ExpressionTrace.NodeTrace trace) {
+        CompiledNode target = unwrap(node);
+        long start = System.nanoTime();
+        try {
+            boolean result;
+            if (target instanceof AndNode andNode) {
+                result = evaluateLogic(andNode.children(), true, trace);
+            } else if (target instanceof OrNode orNode) {
+                result = evaluateLogic(orNode.children(), false, trace);
+            } else if (target instanceof ConditionLeaf leaf) {
+                result = evaluateCondition(leaf, trace);
+            } else {
+                result = evaluateOther(target, trace);
+            }
+            trace.setResult(result);
+            return result;
+        } finally {
+            trace.setNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 短路之后剩下的子节点标记为跳过
+     */
+    private boolean evaluateLogic(CompiledNode[] children, boolean and, ExpressionTrace.NodeTrace trace) {
+        List<ExpressionTrace.NodeTrace> traces = new ArrayList<>(children.length);
+        trace.setChildren(traces);
+        boolean result = and;
+        for (CompiledNode child : children) {
+            if (result != and) {
+                traces.add(skipped(child));
+                continue;
+            }
+            ExpressionTrace.NodeTrace childTrace = describe(child);
+            traces.add(childTrace);
+            if (evaluate(child, childTrace) != and) {
+                result = !and;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 和 ConditionLeaf#evaluate 一致，取值、比较时的异常不向上抛出，条件节点为 false
+     */
+    private boolean evaluateCondition(ConditionLeaf leaf, ExpressionTrace.NodeTrace trace) {
+        try {
+            Object leftValue = resolve(leaf.left(), trace.getLeft());
+            Object rightValue = resolve(leaf.right(), trace.getRight());
+            return leaf.test().test(leftValue, rightValue);
+        } catch (Exception e) {
+            trace.setError(e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean evaluateOther(CompiledNode node, ExpressionTrace.NodeTrace trace) {
+        try {
+            return node.evaluate(context);
+        } catch (RuntimeException e) {
+            trace.setError(e.getMessage());
+            throw e;
+        }
+    }
+
+    private Object resolve(OperandResolver operand, ExpressionTrace.OperandTrace trace) {
+        OperandResolver target = unwrap(operand);
+        if (!(target instanceof DatabaseOperand database) || context.isDataEmpty()) {
+            Object value = target.resolve(context);
+            if (trace != null) {
+                trace.setValue(value);
+            }
+            return value;
+        }
+        ExpressionTrace.FetchTrace fetch = new ExpressionTrace.FetchTrace();
+        fetch.setTable(database.event().getTable());
+        fetch.setField(database.field());
+        fetches.add(fetch);
+        int fetchCount = fetchCount();
+        long start = System.nanoTime();
+        try {
+            Object value = target.resolve(context);
+            trace.setValue(value);
+            return value;
+        } finally {
+            fetch.setNanos(System.nanoTime() - start);
+            fetch.setFetched(fetchCount() > fetchCount);
+        }
+    }
+
+    private int fetchCount() {
+        FetchScope fetchScope = context.getFetchScope();
+        return fetchScope == null ? 0 : fetchScope.getFetchCount();
+    }
+
+    /**
+     * 没有执行的节点只记录结构
+     */
+    private ExpressionTrace.NodeTrace skipped(CompiledNode node) {
+        ExpressionTrace.NodeTrace trace = describe(node);
+        trace.setSkipped(true);
+        CompiledNode target = unwrap(node);
+        CompiledNode[] children = target instanceof AndNode andNode ? andNode.children()
+                : target instanceof OrNode orNode ? orNode.children() : null;
+        if (children != null) {
+            List<ExpressionTrace.NodeTrace> traces = new ArrayList<>(children.length);
+            for (CompiledNode child : children) {
+                traces.add(skipped(child));
+            }
+            trace.setChildren(traces);
+        }
+        return trace;
+    }
+
+    private static ExpressionTrace.NodeTrace describe(CompiledNode node) {
+        CompiledNode target = unwrap(node);
+        ExpressionTrace.NodeTrace trace = new ExpressionTrace.NodeTrace();
+        if (target instanceof AndNode) {
+            trace.setType("AND");
+        } else if (target instanceof OrNode) {
+            trace.setType("OR");
+        } else if (target instanceof ConditionLeaf leaf) {
+            trace.setType("CONDITION");
+            trace.setComparison(leaf.comparison());
+            trace.setLeft(describe(leaf.left()));
+            trace.setRight(describe(leaf.right()));
+        } else if (target instanceof ConstantNode) {
+            trace.setType("CONSTANT");
+        } else if (target instanceof FailingNode) {
+            trace.setType("FAILING");
+        } else {
+            trace.setType(target.getClass().getSimpleName());
+        }
+        return trace;
+    }
+
+    /**
+     * 没有配置的操作数返回 null
+     */
+    private static ExpressionTrace.OperandTrace describe(OperandResolver operand) {
+        OperandResolver target = unwrap(operand);
+        if (target instanceof NullOperand) {
+            return null;
+        }
+        ExpressionTrace.OperandTrace trace = new ExpressionTrace.OperandTrace();
+        if (target instanceof ContextOperand contextOperand) {
+            trace.setSource("context");
+            trace.setField(contextOperand.field());
+        } else if (target instanceof LiteralOperand literal) {
+            trace.setSource("literal");
+            trace.setValue(literal.value());
+        } else if (target instanceof DatabaseOperand database) {
+            trace.setSource("database");
+            trace.setTable(database.event().getTable());
+            trace.setField(database.field());
+        } else {
+            trace.setSource("invalid");
+        }
+        return trace;
+    }
+
+    /**
+     * explain 只用于单个表达式，一次只执行一个节点树，共享的节点直接执行被共享的节点
+     */
+    private static CompiledNode unwrap(CompiledNode node) {
+        return node instanceof SharedCondition shared ? shared.delegate() : node;
+    }
+
+    private static OperandResolver unwrap(OperandResolver operand) {
+        return operand instanceof SharedOperand shared ? shared.delegate() : operand;
+    }
+}
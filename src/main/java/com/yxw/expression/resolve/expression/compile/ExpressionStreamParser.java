@@ -0,0 +1,170 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.yxw.expression.resolve.expression.Operand;
+import com.yxw.expression.resolve.utils.JsonUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 从 JsonParser 中按 token 读取表达式，边读边编译成 CompiledNode，不生成 LogicNode/ConditionNode
+ * 接受的json和 BaseNode 的反序列化一致：字段顺序任意，type 决定节点类型，出现节点类型之外的字段、
+ * 缺少 type 或者 type 不支持时，整个表达式解析失败
+ * 编译结果和先反序列化成 BaseNode 再编译完全一致
+ *
+ * @author luffytmac
+ */
+final class ExpressionStreamParser {
+
+    private static final String TYPE_LOGIC = "LOGIC";
+    private static final String TYPE_CONDITION = "CONDITION";
+
+    private final ExpressionCompiler compiler;
+
+    private final CompileScope scope;
+
+    ExpressionStreamParser(ExpressionCompiler compiler, CompileScope scope) {
+        this.compiler = compiler;
+        this.scope = scope;
+    }
+
+    /**
+     * 解析并编译 parser 当前位置（还没有读取时为下一个 token）开始的表达式对象
+     */
+    CompiledNode parse(JsonParser parser) throws IOException {
+        JsonToken token = parser.hasCurrentToken() ? parser.currentToken() : parser.nextToken();
+        if (token == null || token == JsonToken.VALUE_NULL) {
+            throw new IllegalArgumentException("expression is null");
+        }
+        return parseNode(parser);
+    }
+
+    private CompiledNode parseNode(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return compiler.unsupportedNode(null);
+        }
+        expect(parser, JsonToken.START_OBJECT);
+
+        String type = null;
+        // 逻辑节点的字段
+        String operator = null;
+        CompiledNode[] children = null;
+        String logicField = null;
+        // 条件节点的字段
+        Operand left = null;
+        Operand right = null;
+        String comparison = null;
+        Number value = null;
+        String valueComparison = null;
+        String conditionField = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "type" -> type = readString(parser);
+                case "operator" -> {
+                    operator = readString(parser);
+                    logicField = name;
+                }
+                case "children" -> {
+                    children = readChildren(parser);
+                    logicField = name;
+                }
+                case "left" -> {
+                    left = readOperand(parser);
+                    conditionField = name;
+                }
+                case "right" -> {
+                    right = readOperand(parser);
+                    conditionField = name;
+                }
+                case "comparison" -> {
+                    comparison = readString(parser);
+                    conditionField = name;
+                }
+                case "value" -> {
+                    value = JsonUtils.getObjectMapper().readValue(parser, Number.class);
+                    conditionField = name;
+                }
+                case "valueComparison" -> {
+                    valueComparison = readString(parser);
+                    conditionField = name;
+                }
+                default -> throw new IllegalArgumentException("Unrecognized field \"" + name + "\" of expression node");
+            }
+        }
+        expect(parser, JsonToken.END_OBJECT);
+
+        if (TYPE_LOGIC.equals(type)) {
+            if (conditionField != null) {
+                throw new IllegalArgumentException("Unrecognized field \"" + conditionField + "\" of LOGIC node");
+            }
+            return compiler.compileLogic(operator, children);
+        }
+        if (TYPE_CONDITION.equals(type)) {
+            if (logicField != null) {
+                throw new IllegalArgumentException("Unrecognized field \"" + logicField + "\" of CONDITION node");
+            }
+            return compiler.compileCondition(new ConditionSpec(left, right, comparison, value, valueComparison), scope);
+        }
+        throw new IllegalArgumentException("Could not resolve type id '" + type + "' of expression node");
+    }
+
+    private CompiledNode[] readChildren(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, JsonToken.START_ARRAY);
+        List<CompiledNode> children = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            children.add(parseNode(parser));
+        }
+        return children.toArray(new CompiledNode[0]);
+    }
+
+    private Operand readOperand(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, JsonToken.START_OBJECT);
+        Operand operand = new Operand();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "source" -> operand.setSource(readString(parser));
+                case "table" -> operand.setTable(readString(parser));
+                case "field" -> operand.setField(readString(parser));
+                case "value" -> operand.setValue(JsonUtils.getObjectMapper().readValue(parser, Object.class));
+                default -> throw new IllegalArgumentException("Unrecognized field \"" + name + "\" of operand");
+            }
+        }
+        expect(parser, JsonToken.END_OBJECT);
+        return operand;
+    }
+
+    /**
+     * 和 jackson 反序列化 String 字段一致，数字、布尔值转换成字符串，对象和数组不支持
+     */
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == null || !token.isScalarValue()) {
+            throw new IllegalArgumentException("Expected a string value but was " + token);
+        }
+        return parser.getText();
+    }
+
+    private static void expect(JsonParser parser, JsonToken expected) {
+        if (parser.currentToken() != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " but was " + parser.currentToken());
+        }
+    }
+}
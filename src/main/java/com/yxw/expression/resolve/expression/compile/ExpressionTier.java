@@ -0,0 +1,20 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 表达式当前所处的执行层级
+ *
+ * @author luffytmac
+ */
+public enum ExpressionTier {
+
+    /**
+     * 编译后的节点树，逐个节点调用求值
+     */
+    TREE,
+
+    /**
+     * 调用次数超过阈值后生成的字节码，AND/OR 的短路逻辑被展开成直线代码
+     */
+    BYTECODE,
+    ;
+}
@@ -0,0 +1,123 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次 explain 求值的执行过程，见 {@link ExpressionExplainer}
+ * 包含每个节点的结果和耗时、条件节点两边操作数的实际值、被 AND/OR 短路跳过的子节点以及数据库查询
+ *
+ * @author luffytmac
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExpressionTrace {
+
+    private boolean result;
+
+    /**
+     * 整个求值的耗时，包含求值前的预取
+     */
+    private long nanos;
+
+    /**
+     * 表达式当前的执行层级，explain 始终按照节点树执行，结果和字节码一致
+     */
+    private String tier;
+
+    /**
+     * 表达式解析失败或者求值中断时的异常信息
+     */
+    private String error;
+
+    private NodeTrace root;
+
+    /**
+     * 求值前预取的数据库查询次数
+     */
+    private Integer prefetchCount;
+
+    /**
+     * 求值过程中数据库操作数的取值，按照执行顺序
+     */
+    private List<FetchTrace> fetches = new ArrayList<>();
+
+    /**
+     * 没有执行任何节点的结果，比如没有配置表达式、表达式解析失败
+     */
+    public static ExpressionTrace of(boolean result, String error) {
+        ExpressionTrace trace = new ExpressionTrace();
+        trace.setResult(result);
+        trace.setError(error);
+        return trace;
+    }
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class NodeTrace {
+
+        /**
+         * AND、OR、CONDITION、CONSTANT、FAILING
+         */
+        private String type;
+
+        /**
+         * 节点的结果，被跳过或者求值中断时为 null
+         */
+        private Boolean result;
+
+        /**
+         * 被 AND/OR 短路跳过，没有执行
+         */
+        private boolean skipped;
+
+        private Long nanos;
+
+        private String comparison;
+
+        private OperandTrace left;
+
+        private OperandTrace right;
+
+        /**
+         * 条件节点比较时的异常信息（节点结果为 false），或者中断整个求值的异常信息
+         */
+        private String error;
+
+        private List<NodeTrace> children;
+    }
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class OperandTrace {
+
+        private String source;
+
+        private String table;
+
+        private String field;
+
+        /**
+         * 操作数的实际值，没有执行时为 null
+         */
+        private Object value;
+    }
+
+    @Data
+    public static class FetchTrace {
+
+        private String table;
+
+        private String field;
+
+        /**
+         * true 代表查询了数据库（或者表数据缓存），false 代表复用了本次求值中已经查询过的数据
+         */
+        private boolean fetched;
+
+        private long nanos;
+    }
+}
@@ -0,0 +1,19 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 编译时发现的非法逻辑节点，比如不支持的操作符、子节点为空
+ * 解释执行时这类节点在被执行到的时候才会抛出异常，所以这里也保持一致，求值时才抛出
+ */
+final class FailingNode implements CompiledNode {
+
+    private final String message;
+
+    FailingNode(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public boolean evaluate(EvaluationContext context) {
+        throw new IllegalArgumentException(message);
+    }
+}
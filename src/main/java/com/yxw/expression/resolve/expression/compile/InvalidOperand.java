@@ -0,0 +1,19 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 编译时发现配置错误的操作数，比如不支持的数据来源、未知的表名
+ * 和解释执行保持一致：上下文为空时返回 null，否则抛出异常，对应的条件节点返回 false
+ */
+final class InvalidOperand extends OperandResolver {
+
+    private final String message;
+
+    InvalidOperand(String message) {
+        this.message = message;
+    }
+
+    @Override
+    Object doResolve(EvaluationContext context) {
+        throw new IllegalArgumentException(message);
+    }
+}
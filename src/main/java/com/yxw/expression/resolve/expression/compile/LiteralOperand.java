@@ -0,0 +1,22 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 字面量操作数
+ */
+final class LiteralOperand extends OperandResolver {
+
+    private final Object value;
+
+    LiteralOperand(Object value) {
+        this.value = value;
+    }
+
+    @Override
+    Object doResolve(EvaluationContext context) {
+        return value;
+    }
+
+    Object value() {
+        return value;
+    }
+}
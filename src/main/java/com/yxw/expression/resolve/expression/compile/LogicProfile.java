@@ -0,0 +1,151 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 逻辑节点的子节点统计，记录每个子节点的平均耗时和 true/false 比例，按照统计结果定期给子节点重新排序
+ * AND 节点让耗时低、更容易为 false 的子节点先执行，OR 节点让耗时低、更容易为 true 的子节点先执行，尽早短路
+ *
+ * 求值时可能抛出异常的子节点（比如配置了不支持的操作符）会中断整个表达式，执行顺序会影响结果，
+ * 这类子节点固定在原来的位置，其他子节点也不会跨过它们移动
+ *
+ * 统计数据在多个线程间不做同步，只是近似值，不影响求值结果
+ *
+ * @author luffytmac
+ */
+final class LogicProfile {
+
+    private final ReorderPolicy policy;
+
+    /**
+     * true 代表 AND 节点，false 代表 OR 节点
+     */
+    private final boolean and;
+
+    private final Map<CompiledNode, ChildStats> stats = new IdentityHashMap<>();
+
+    private int invocations;
+
+    private int samples;
+
+    LogicProfile(ReorderPolicy policy, boolean and, CompiledNode[] children) {
+        this.policy = policy;
+        this.and = and;
+        for (CompiledNode child : children) {
+            stats.put(child, new ChildStats(!canThrow(child)));
+        }
+    }
+
+    boolean shouldSample() {
+        return ++invocations % policy.sampleInterval() == 0;
+    }
+
+    void record(CompiledNode child, boolean result, long nanos) {
+        ChildStats childStats = stats.get(child);
+        childStats.count++;
+        childStats.nanos += nanos;
+        if (result) {
+            childStats.trueCount++;
+        }
+    }
+
+    /**
+     * 一次采样结束，返回是否需要重新排序
+     */
+    boolean sampled() {
+        return ++samples % policy.reorderSamples() == 0;
+    }
+
+    /**
+     * 按照统计结果给子节点排序，不能移动的子节点把子节点分成若干段，每段内部各自排序
+     * 顺序没有变化时返回原来的数组，调用方可以通过数组是否是同一个判断顺序是否变化
+     */
+    CompiledNode[] reorder(CompiledNode[] current) {
+        // 其他线程在排序的同时还在修改统计数据，先把每个子节点的得分复制出来，排序过程中同一个子节点的得分不会变化，
+        // 否则比较结果前后矛盾时 TimSort 会抛出 "Comparison method violates its general contract"
+        double[] scores = new double[current.length];
+        for (int i = 0; i < current.length; i++) {
+            scores[i] = score(current[i]);
+        }
+        CompiledNode[] reordered = new CompiledNode[current.length];
+        List<Integer> segment = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= current.length; i++) {
+            if (i == current.length || !stats.get(current[i]).movable) {
+                segment.sort(Comparator.comparingDouble(index -> scores[index]));
+                for (int j = 0; j < segment.size(); j++) {
+                    reordered[start + j] = current[segment.get(j)];
+                }
+                if (i < current.length) {
+                    reordered[i] = current[i];
+                }
+                segment.clear();
+                start = i + 1;
+            } else {
+                segment.add(i);
+            }
+        }
+        return Arrays.equals(reordered, current) ? current : reordered;
+    }
+
+    /**
+     * 每次能够短路的平均成本，越小越应该先执行；采样次数不够的子节点排在后面，保持原有的相对顺序
+     */
+    private double score(CompiledNode child) {
+        ChildStats childStats = stats.get(child);
+        long count = childStats.count;
+        if (count < policy.minSamples()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        long decisive = and ? count - childStats.trueCount : childStats.trueCount;
+        if (decisive <= 0) {
+            return Double.MAX_VALUE;
+        }
+        return (double) childStats.nanos / decisive;
+    }
+
+    /**
+     * 求值时可能抛出异常的子节点
+     */
+    private static boolean canThrow(CompiledNode node) {
+        if (node instanceof FailingNode) {
+            return true;
+        }
+        if (node instanceof AndNode andNode) {
+            return anyCanThrow(andNode.children());
+        }
+        if (node instanceof OrNode orNode) {
+            return anyCanThrow(orNode.children());
+        }
+        return false;
+    }
+
+    private static boolean anyCanThrow(CompiledNode[] children) {
+        for (CompiledNode child : children) {
+            if (canThrow(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class ChildStats {
+
+        private final boolean movable;
+
+        private long count;
+
+        private long trueCount;
+
+        private long nanos;
+
+        private ChildStats(boolean movable) {
+            this.movable = movable;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 条件节点中没有配置的操作数，值始终为 null
+ */
+final class NullOperand extends OperandResolver {
+
+    static final NullOperand INSTANCE = new NullOperand();
+
+    private NullOperand() {
+    }
+
+    @Override
+    Object doResolve(EvaluationContext context) {
+        return null;
+    }
+}
@@ -0,0 +1,19 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 编译后的操作数，数据来源在编译阶段就已经确定
+ */
+abstract class OperandResolver {
+
+    /**
+     * 获取操作数的实际值，上下文为空时和解释执行一样直接返回 null
+     */
+    final Object resolve(EvaluationContext context) {
+        if (context.isDataEmpty()) {
+            return null;
+        }
+        return doResolve(context);
+    }
+
+    abstract Object doResolve(EvaluationContext context);
+}
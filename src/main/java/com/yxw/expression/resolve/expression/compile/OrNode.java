@@ -0,0 +1,76 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * OR 逻辑节点：任何一个子节点为 true，则整个节点为 true
+ * 开启自适应排序时，按照采样统计定期调整子节点的执行顺序，见 {@link LogicProfile}
+ */
+final class OrNode implements CompiledNode {
+
+    private volatile CompiledNode[] children;
+
+    private final LogicProfile profile;
+
+    OrNode(CompiledNode[] children, ReorderPolicy policy) {
+        this.children = children;
+        this.profile = policy == null ? null : new LogicProfile(policy, false, children);
+    }
+
+    @Override
+    public boolean evaluate(EvaluationContext context) {
+        CompiledNode[] current = children;
+        if (profile != null && profile.shouldSample()) {
+            return evaluateSampled(current, context, false);
+        }
+        for (CompiledNode child : current) {
+            if (child.evaluate(context)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean sample(EvaluationContext context) {
+        CompiledNode[] current = children;
+        if (profile != null) {
+            return evaluateSampled(current, context, true);
+        }
+        for (CompiledNode child : current) {
+            if (child.sample(context)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param nested 子节点是否也记录采样
+     */
+    private boolean evaluateSampled(CompiledNode[] current, EvaluationContext context, boolean nested) {
+        boolean result = false;
+        for (CompiledNode child : current) {
+            long start = System.nanoTime();
+            boolean childResult = nested ? child.sample(context) : child.evaluate(context);
+            profile.record(child, childResult, System.nanoTime() - start);
+            if (childResult) {
+                result = true;
+                break;
+            }
+        }
+        if (profile.sampled()) {
+            children = profile.reorder(current);
+        }
+        return result;
+    }
+
+    CompiledNode[] children() {
+        return children;
+    }
+
+    /**
+     * 是否开启了自适应排序，子节点顺序可能在运行时变化
+     */
+    boolean reorderable() {
+        return profile != null;
+    }
+}
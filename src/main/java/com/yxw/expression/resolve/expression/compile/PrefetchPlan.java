@@ -0,0 +1,37 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.yxw.expression.resolve.component.DatabasePrefetcher;
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译阶段确定的预取计划：表达式（或规则集）可能用到的所有表和每张表用到的字段
+ * 只有用到两张及以上的表时才会生成，求值前并发查询这些表的数据
+ *
+ * @author luffytmac
+ */
+final class PrefetchPlan {
+
+    private final DatabasePrefetcher prefetcher;
+
+    private final Map<EventTypeEnum, Set<String>> tables;
+
+    PrefetchPlan(DatabasePrefetcher prefetcher, Map<EventTypeEnum, Set<String>> tables) {
+        this.prefetcher = prefetcher;
+        this.tables = tables;
+    }
+
+    void prefetch(EvaluationContext context) {
+        if (context.isDataEmpty()) {
+            // 上下文为空时所有操作数的值都是 null，不会查询数据库
+            return;
+        }
+        prefetcher.prefetch(tables, context.getData(), context.fetchScope());
+    }
+
+    Map<EventTypeEnum, Set<String>> tables() {
+        return tables;
+    }
+}
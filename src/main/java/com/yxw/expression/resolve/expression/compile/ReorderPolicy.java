@@ -0,0 +1,11 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 逻辑节点子节点自适应排序的参数
+ *
+ * @param sampleInterval 每多少次求值采样一次子节点的耗时和结果
+ * @param reorderSamples 每采样多少次重新排序一次
+ * @param minSamples     子节点至少被采样多少次才参与排序
+ */
+record ReorderPolicy(int sampleInterval, int reorderSamples, int minSamples) {
+}
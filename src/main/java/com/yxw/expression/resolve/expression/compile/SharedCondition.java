@@ -0,0 +1,32 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 规则集中被多个规则引用的同一个条件节点，一次求值内只比较一次
+ */
+final class SharedCondition implements CompiledNode {
+
+    private final int slot;
+
+    private final CompiledNode delegate;
+
+    SharedCondition(int slot, CompiledNode delegate) {
+        this.slot = slot;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean evaluate(EvaluationContext context) {
+        Object[] memo = context.memo();
+        Object cached = memo[slot];
+        if (cached != null) {
+            return (Boolean) cached;
+        }
+        boolean result = delegate.evaluate(context);
+        memo[slot] = result;
+        return result;
+    }
+
+    CompiledNode delegate() {
+        return delegate;
+    }
+}
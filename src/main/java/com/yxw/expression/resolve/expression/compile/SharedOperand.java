@@ -0,0 +1,49 @@
+package com.yxw.expression.resolve.expression.compile;
+
+/**
+ * 规则集中被多个条件引用的同一个操作数，一次求值内只取一次值
+ * 取值失败时同样记录下来，后续引用直接抛出同一个异常
+ */
+final class SharedOperand extends OperandResolver {
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final int slot;
+
+    private final OperandResolver delegate;
+
+    SharedOperand(int slot, OperandResolver delegate) {
+        this.slot = slot;
+        this.delegate = delegate;
+    }
+
+    @Override
+    Object doResolve(EvaluationContext context) {
+        Object[] memo = context.memo();
+        Object cached = memo[slot];
+        if (cached == null) {
+            try {
+                Object value = delegate.doResolve(context);
+                memo[slot] = value == null ? NULL_VALUE : value;
+                return value;
+            } catch (RuntimeException e) {
+                memo[slot] = new Failure(e);
+                throw e;
+            }
+        }
+        if (cached == NULL_VALUE) {
+            return null;
+        }
+        if (cached instanceof Failure failure) {
+            throw failure.exception();
+        }
+        return cached;
+    }
+
+    OperandResolver delegate() {
+        return delegate;
+    }
+
+    private record Failure(RuntimeException exception) {
+    }
+}
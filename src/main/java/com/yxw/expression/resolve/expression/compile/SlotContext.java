@@ -0,0 +1,275 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.yxw.expression.resolve.component.FetchScope;
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+import com.yxw.expression.resolve.expression.ContextSchema;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 按照 {@link ContextLayout} 的下标保存上下文字段的值，代替每次求值都新建的 Map
+ * 数值可以直接以 long、double 写入，不需要装箱；求值时按照下标读取，不再查找 Map
+ * long 在第一次被读取时装箱，和 json 反序列化的结果一样，int 范围内为 Integer，否则为 Long
+ * 一个上下文可以反复使用（比如每个线程一个）：clear 之后重新写入字段再求值，求值本身不再创建上下文对象
+ * 结果和把同样的字段放进 Map 求值一致：没有写入的字段等同于 Map 中没有这个 key，写入 null 等同于 key 对应的值为 null
+ * 表达式带有上下文类型声明时，声明了类型的字段按照原值保存，在一次求值中第一次被读取时转换，见 {@link ContextSchema}
+ * 不能跨线程共享
+ *
+ * @author luffytmac
+ */
+public final class SlotContext {
+
+    private static final byte ABSENT = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte OBJECT = 3;
+
+    private final ContextLayout layout;
+
+    private final byte[] kinds;
+
+    private final long[] longs;
+
+    private final double[] doubles;
+
+    /**
+     * 以对象写入的值，以及 long、double 第一次被读取时装箱的结果，一次写入最多装箱一次
+     */
+    private final Object[] objects;
+
+    private int present;
+
+    /**
+     * 是否写入过表达式没有用到的字段，只用于判断上下文是否为空，和 Map 的语义保持一致
+     */
+    private boolean unused;
+
+    private final Map<String, Object> view = new View();
+
+    private final EvaluationContext evaluationContext;
+
+    SlotContext(ContextLayout layout) {
+        this.layout = layout;
+        int size = layout.size();
+        this.kinds = new byte[size];
+        this.longs = new long[size];
+        this.doubles = new double[size];
+        this.objects = new Object[size];
+        this.evaluationContext = new EvaluationContext(this);
+    }
+
+    public ContextLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 清空所有字段，准备下一次求值
+     */
+    public SlotContext clear() {
+        Arrays.fill(kinds, ABSENT);
+        Arrays.fill(objects, null);
+        present = 0;
+        unused = false;
+        return this;
+    }
+
+    public SlotContext setLong(int slot, long value) {
+        FieldTypeEnum type = layout.type(slot);
+        if (type != null && type != FieldTypeEnum.NUMBER) {
+            return set(slot, value);
+        }
+        mark(slot, LONG);
+        longs[slot] = value;
+        return this;
+    }
+
+    public SlotContext setDouble(int slot, double value) {
+        FieldTypeEnum type = layout.type(slot);
+        if (type != null && type != FieldTypeEnum.NUMBER) {
+            return set(slot, value);
+        }
+        mark(slot, DOUBLE);
+        doubles[slot] = value;
+        return this;
+    }
+
+    public SlotContext set(int slot, Object value) {
+        mark(slot, OBJECT);
+        objects[slot] = value;
+        return this;
+    }
+
+    /**
+     * 按照字段名写入，表达式没有用到的字段不保存
+     */
+    public SlotContext set(String field, Object value) {
+        int slot = layout.slot(field);
+        if (slot < 0) {
+            unused = true;
+            return this;
+        }
+        return set(slot, value);
+    }
+
+    public SlotContext setLong(String field, long value) {
+        int slot = layout.slot(field);
+        if (slot < 0) {
+            unused = true;
+            return this;
+        }
+        return setLong(slot, value);
+    }
+
+    public SlotContext setDouble(String field, double value) {
+        int slot = layout.slot(field);
+        if (slot < 0) {
+            unused = true;
+            return this;
+        }
+        return setDouble(slot, value);
+    }
+
+    /**
+     * 写入 Map 中的所有字段，用于从 Map 形式的上下文迁移
+     */
+    public SlotContext setAll(Map<String, Object> context) {
+        if (context != null) {
+            context.forEach(this::set);
+        }
+        return this;
+    }
+
+    /**
+     * 本次求值的数据获取范围，没有查询过数据库时返回 null
+     */
+    public FetchScope getFetchScope() {
+        return evaluationContext.getFetchScope();
+    }
+
+    private void mark(int slot, byte kind) {
+        if (kinds[slot] == ABSENT) {
+            present++;
+        }
+        kinds[slot] = kind;
+        objects[slot] = null;
+    }
+
+    boolean contains(int slot) {
+        return kinds[slot] != ABSENT;
+    }
+
+    /**
+     * 读取字段的值，没有写入时和 Map 中没有这个 key 一样抛出异常
+     */
+    Object get(int slot) {
+        return switch (kinds[slot]) {
+            case OBJECT -> objects[slot];
+            case LONG -> box(slot, boxLong(longs[slot]));
+            case DOUBLE -> box(slot, Double.valueOf(doubles[slot]));
+            default -> throw new IllegalArgumentException("Context does not contain key: " + layout.field(slot));
+        };
+    }
+
+    /**
+     * 和 jackson 反序列化 json 数字的结果一致：int 范围内为 Integer，否则为 Long
+     * 和字面量（同样来自 json）类型相同时相等比较不需要转换成字符串
+     */
+    private static Object boxLong(long value) {
+        // 不能写成条件表达式，Integer 和 Long 两个分支会被统一提升成 long
+        if (value == (int) value) {
+            return Integer.valueOf((int) value);
+        }
+        return Long.valueOf(value);
+    }
+
+    private Object box(int slot, Object value) {
+        kinds[slot] = OBJECT;
+        objects[slot] = value;
+        return value;
+    }
+
+    boolean isEmpty() {
+        return present == 0 && !unused;
+    }
+
+    /**
+     * 求值使用的上下文，每次求值前重置
+     */
+    EvaluationContext evaluationContext() {
+        evaluationContext.reset();
+        return evaluationContext;
+    }
+
+    /**
+     * 只包含写入过的字段的只读 Map 视图，查询数据库时按照字段名读取唯一键
+     */
+    Map<String, Object> asMap() {
+        return view;
+    }
+
+    private final class View extends AbstractMap<String, Object> {
+
+        @Override
+        public Object get(Object key) {
+            int slot = key instanceof String field ? layout.slot(field) : -1;
+            return slot < 0 || !contains(slot) ? null : SlotContext.this.get(slot);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int slot = key instanceof String field ? layout.slot(field) : -1;
+            return slot >= 0 && contains(slot);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return present == 0;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+
+                        private int next = advance(0);
+
+                        private int advance(int from) {
+                            while (from < kinds.length && kinds[from] == ABSENT) {
+                                from++;
+                            }
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < kinds.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int slot = next;
+                            next = advance(slot + 1);
+                            return new SimpleImmutableEntry<>(layout.field(slot), SlotContext.this.get(slot));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return present;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.yxw.expression.resolve.enums.ComparisonEnum;
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * 声明了类型的上下文字段的比较逻辑，见 {@link com.yxw.expression.resolve.expression.ContextSchema}
+ * 两边的值在条件节点读取时已经转换成同一种规范类型，比较时直接强转后比较，不再判断类型、转换；
+ * 每种类型、每个比较符都是单独的比较逻辑，条件节点上的比较调用只会遇到一种类型
+ * null 的处理和 ValueComparators 一致：两边都为 null 时相等，只有一边为 null 时 null 较小
+ *
+ * @author luffytmac
+ */
+final class TypedComparators {
+
+    private TypedComparators() {
+    }
+
+    /**
+     * 类型对应的比较逻辑，不支持的比较符返回 null，由调用方使用通用的比较逻辑
+     */
+    static ConditionTest of(FieldTypeEnum type, ComparisonEnum comparison) {
+        if (comparison == ComparisonEnum.EQUAL) {
+            return Objects::equals;
+        }
+        if (comparison == ComparisonEnum.NOT_EQUAL) {
+            return (leftValue, rightValue) -> !Objects.equals(leftValue, rightValue);
+        }
+        return switch (type) {
+            case NUMBER -> switch (comparison) {
+                case GREATER_THAN -> (leftValue, rightValue) -> compareNumbers(leftValue, rightValue) > 0;
+                case LESS_THAN -> (leftValue, rightValue) -> compareNumbers(leftValue, rightValue) < 0;
+                case GREATER_THAN_OR_EQUAL -> (leftValue, rightValue) -> compareNumbers(leftValue, rightValue) >= 0;
+                case LESS_THAN_OR_EQUAL -> (leftValue, rightValue) -> compareNumbers(leftValue, rightValue) <= 0;
+                default -> null;
+            };
+            case STRING -> switch (comparison) {
+                case GREATER_THAN -> (leftValue, rightValue) -> compareStrings(leftValue, rightValue) > 0;
+                case LESS_THAN -> (leftValue, rightValue) -> compareStrings(leftValue, rightValue) < 0;
+                case GREATER_THAN_OR_EQUAL -> (leftValue, rightValue) -> compareStrings(leftValue, rightValue) >= 0;
+                case LESS_THAN_OR_EQUAL -> (leftValue, rightValue) -> compareStrings(leftValue, rightValue) <= 0;
+                default -> null;
+            };
+            case BOOLEAN -> switch (comparison) {
+                case GREATER_THAN -> (leftValue, rightValue) -> compareBooleans(leftValue, rightValue) > 0;
+                case LESS_THAN -> (leftValue, rightValue) -> compareBooleans(leftValue, rightValue) < 0;
+                case GREATER_THAN_OR_EQUAL -> (leftValue, rightValue) -> compareBooleans(leftValue, rightValue) >= 0;
+                case LESS_THAN_OR_EQUAL -> (leftValue, rightValue) -> compareBooleans(leftValue, rightValue) <= 0;
+                default -> null;
+            };
+            case DATE -> switch (comparison) {
+                case GREATER_THAN -> (leftValue, rightValue) -> compareDates(leftValue, rightValue) > 0;
+                case LESS_THAN -> (leftValue, rightValue) -> compareDates(leftValue, rightValue) < 0;
+                case GREATER_THAN_OR_EQUAL -> (leftValue, rightValue) -> compareDates(leftValue, rightValue) >= 0;
+                case LESS_THAN_OR_EQUAL -> (leftValue, rightValue) -> compareDates(leftValue, rightValue) <= 0;
+                default -> null;
+            };
+        };
+    }
+
+    /**
+     * NUMBER 的规范类型是 Long 或者 Double，两边都是 Long 时按照 long 精确比较
+     */
+    private static int compareNumbers(Object leftValue, Object rightValue) {
+        if (leftValue == null || rightValue == null) {
+            return compareNulls(leftValue, rightValue);
+        }
+        if (leftValue instanceof Long left) {
+            return rightValue instanceof Long right ? Long.compare(left, right) : compareExact(left, (Double) rightValue);
+        }
+        if (rightValue instanceof Long right) {
+            return -compareExact(right, (Double) leftValue);
+        }
+        return Double.compare((Double) leftValue, (Double) rightValue);
+    }
+
+    /**
+     * long 和 double 按照数值精确比较，不把 long 转换成 double；NaN 和 Double.compare 一样比所有数值都大
+     */
+    private static int compareExact(long left, double right) {
+        if (Double.isNaN(right) || right >= 0x1p63) {
+            return -1;
+        }
+        if (right < -0x1p63) {
+            return 1;
+        }
+        long integral = (long) right;
+        if (left != integral) {
+            return Long.compare(left, integral);
+        }
+        double fraction = right - integral;
+        return fraction > 0 ? -1 : fraction < 0 ? 1 : 0;
+    }
+
+    private static int compareStrings(Object leftValue, Object rightValue) {
+        if (leftValue == null || rightValue == null) {
+            return compareNulls(leftValue, rightValue);
+        }
+        return ((String) leftValue).compareTo((String) rightValue);
+    }
+
+    private static int compareBooleans(Object leftValue, Object rightValue) {
+        if (leftValue == null || rightValue == null) {
+            return compareNulls(leftValue, rightValue);
+        }
+        return Boolean.compare((Boolean) leftValue, (Boolean) rightValue);
+    }
+
+    /**
+     * 两边都是 UTC 的 ZonedDateTime，compareTo 的结果和按照时间点比较一致
+     */
+    private static int compareDates(Object leftValue, Object rightValue) {
+        if (leftValue == null || rightValue == null) {
+            return compareNulls(leftValue, rightValue);
+        }
+        return ((ZonedDateTime) leftValue).compareTo((ZonedDateTime) rightValue);
+    }
+
+    private static int compareNulls(Object leftValue, Object rightValue) {
+        if (leftValue == null && rightValue == null) {
+            return 0;
+        }
+        return leftValue == null ? -1 : 1;
+    }
+}
@@ -0,0 +1,14 @@
+package com.yxw.expression.resolve.request;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class BatchEvaluationRequest {
+
+    private List<Map<String, Object>> contexts;
+
+    private String expressionJson;
+}
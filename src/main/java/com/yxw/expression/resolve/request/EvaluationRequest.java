@@ -1,5 +1,6 @@
 package com.yxw.expression.resolve.request;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import lombok.Data;
 
 import java.util.Map;
@@ -10,4 +11,15 @@ public class EvaluationRequest {
     private Map<String, Object> context;
 
     private String expressionJson;
+
+    /**
+     * 以json对象的形式内嵌的表达式，和 expressionJson 二选一，同时存在时使用这个字段
+     * 只保存请求体中的 token，编译时直接从 token 流中读取
+     */
+    private TokenBuffer expression;
+
+    /**
+     * 二进制格式的表达式，见 ExpressionBinaryCodec，请求体的 Content-Type 为 application/x-expression 时使用这个字段
+     */
+    private byte[] expressionBinary;
 }
\ No newline at end of file
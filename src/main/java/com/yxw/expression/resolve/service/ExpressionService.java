@@ -1,16 +1,38 @@
 package com.yxw.expression.resolve.service;
 
 import cn.hutool.core.util.StrUtil;
-import com.yxw.expression.resolve.expression.BaseNode;
-import com.yxw.expression.resolve.expression.ConditionEvaluator;
-import com.yxw.expression.resolve.utils.JsonUtils;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.yxw.expression.resolve.component.ExpressionCache;
+import com.yxw.expression.resolve.component.ExpressionMeters;
+import com.yxw.expression.resolve.component.ExpressionRegistry;
+import com.yxw.expression.resolve.component.FetchScope;
+import com.yxw.expression.resolve.component.ServiceMetrics;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import com.yxw.expression.resolve.expression.compile.CompiledExpression;
+import com.yxw.expression.resolve.expression.compile.CompiledRuleSet;
+import com.yxw.expression.resolve.expression.compile.EvaluationContext;
+import com.yxw.expression.resolve.expression.compile.ExpressionCompiler;
+import com.yxw.expression.resolve.expression.compile.ExpressionTrace;
+import com.yxw.expression.resolve.expression.compile.SlotContext;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class ExpressionService {
@@ -18,25 +40,436 @@ public class ExpressionService {
     private static final Logger log = LoggerFactory.getLogger(ExpressionService.class);
 
     @Resource
-    private ConditionEvaluator conditionEvaluator;
+    private ExpressionCache expressionCache;
+
+    @Resource
+    private ExpressionCompiler expressionCompiler;
+
+    @Resource
+    private ExpressionRegistry expressionRegistry;
+
+    @Resource
+    private ServiceMetrics serviceMetrics;
+
+    /**
+     * 规则集名称 -> 编译后的规则集
+     */
+    private final Map<String, CompiledRuleSet> ruleSets = new ConcurrentHashMap<>();
+
+    /**
+     * 同一次求值中复用数据库查询结果而省掉的查询次数
+     */
+    private final LongAdder savedFetches = new LongAdder();
+
+    /**
+     * 批量求值时每个任务处理的行数，会向上取整到 64 的倍数，保证每个任务写入的 long 互不重叠
+     */
+    private final int batchChunkSize;
+
+    private final ForkJoinPool batchPool;
+
+    public ExpressionService(@Value("${expression.batch.chunk-size:1024}") int batchChunkSize,
+                             @Value("${expression.batch.parallelism:0}") int batchParallelism) {
+        this.batchChunkSize = Math.max(Long.SIZE, (batchChunkSize + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+        this.batchPool = new ForkJoinPool(batchParallelism > 0 ? batchParallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        batchPool.shutdown();
+    }
 
     public boolean doEvaluateExpression(String expressionJson, Map<String, Object> contextMap) {
+        return doEvaluateExpression(expressionJson, null, contextMap);
+    }
+
+    /**
+     * 按照上下文的类型声明求值，声明了类型的字段先转换成对应的类型，见 {@link ContextSchema}
+     *
+     * @param schema 上下文的类型声明，为 null 时和没有类型声明一致
+     */
+    public boolean doEvaluateExpression(String expressionJson, ContextSchema schema, Map<String, Object> contextMap) {
         try {
             //如果没有配置表达式，则直接返回true，代表逻辑继续往下执行
             if (StrUtil.isEmpty(expressionJson)) {
                 return true;
             }
-            // 解析表达式
-            BaseNode expression = JsonUtils.jsonToObject(expressionJson, BaseNode.class);
+            // 解析并编译表达式，相同的表达式json只会解析、编译一次
+            CompiledExpression expression = expressionCache.get(expressionJson, schema);
             if(Objects.isNull(expression)){
-                log.error("解析模板中的表达式失败, expressionJson: {}", expressionJson);
+                serviceMetrics.parseFailed();
                 return false;
             }
             // 执行表达式，如果表达式返回true，代表逻辑继续往下执行，返回false则代表逻辑结束
-            return conditionEvaluator.evaluate(expression, contextMap);
+            return evaluate(expression, serviceMetrics.meters(expression), contextMap);
         } catch (Exception e) {
             log.error("Error evaluating expression, expressionJson: {}, exception info: {}", expressionJson, e.getMessage());
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 对请求体中内嵌的表达式对象求值，结果和把同一个表达式以json字符串提交时一致
+     * 表达式直接从 token 流中编译，相同的表达式对象只会编译一次
+     */
+    public boolean doEvaluateExpression(TokenBuffer expression, Map<String, Object> contextMap) {
+        return doEvaluateExpression(expression, null, contextMap);
+    }
+
+    public boolean doEvaluateExpression(TokenBuffer expression, ContextSchema schema, Map<String, Object> contextMap) {
+        try {
+            CompiledExpression compiled = expressionCache.get(expression, schema);
+            if (Objects.isNull(compiled)) {
+                serviceMetrics.parseFailed();
+                return false;
+            }
+            return evaluate(compiled, serviceMetrics.meters(compiled), contextMap);
+        } catch (Exception e) {
+            log.error("Error evaluating expression object, exception info: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 对二进制格式的表达式求值，结果和把同一个表达式以json字符串提交时一致，见 ExpressionBinaryCodec
+     * 相同的二进制只会解码、编译一次
+     */
+    public boolean doEvaluateExpression(byte[] expressionBinary, Map<String, Object> contextMap) {
+        return doEvaluateExpression(expressionBinary, null, contextMap);
+    }
+
+    public boolean doEvaluateExpression(byte[] expressionBinary, ContextSchema schema, Map<String, Object> contextMap) {
+        try {
+            //如果没有配置表达式，则直接返回true，代表逻辑继续往下执行
+            if (expressionBinary == null || expressionBinary.length == 0) {
+                return true;
+            }
+            CompiledExpression compiled = expressionCache.get(expressionBinary, schema);
+            if (Objects.isNull(compiled)) {
+                serviceMetrics.parseFailed();
+                return false;
+            }
+            return evaluate(compiled, serviceMetrics.meters(compiled), contextMap);
+        } catch (Exception e) {
+            log.error("Error evaluating expression binary, exception info: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 对注册表中的表达式的当前版本求值，不需要提交、解析表达式
+     *
+     * @param id         表达式id
+     * @param contextMap 上下文数据
+     * @throws IllegalArgumentException 表达式没有注册
+     */
+    public boolean doEvaluateRegistered(String id, Map<String, Object> contextMap) {
+        return doEvaluateRegistered(id, null, contextMap);
+    }
+
+    /**
+     * @param schema 上下文的类型声明，为 null 时和没有类型声明一致
+     * @throws IllegalArgumentException 表达式没有注册
+     */
+    public boolean doEvaluateRegistered(String id, ContextSchema schema, Map<String, Object> contextMap) {
+        CompiledExpression expression = expressionRegistry.get(id, schema);
+        if (expression == null) {
+            throw new IllegalArgumentException("Expression is not registered: " + id);
+        }
+        try {
+            return evaluate(expression, serviceMetrics.meters(expression, id), contextMap);
+        } catch (Exception e) {
+            log.error("Error evaluating registered expression, id: {}, exception info: {}", id, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 用可以复用的 SlotContext 对注册的表达式的当前版本求值，求值过程中不再创建 Map 和上下文对象
+     * SlotContext 通过 expressionRegistry.get(id).newSlotContext() 创建，调用方可以每个线程保留一个，每次求值前 clear 再写入字段
+     *
+     * @param id      表达式id
+     * @param context 按照当前版本的布局创建的上下文
+     * @throws IllegalArgumentException 表达式没有注册，或者注册了用到不同上下文字段的新版本，需要重新创建 SlotContext
+     */
+    public boolean doEvaluateRegistered(String id, SlotContext context) {
+        CompiledExpression expression = expressionRegistry.get(id);
+        if (expression == null) {
+            throw new IllegalArgumentException("Expression is not registered: " + id);
+        }
+        if (!expression.getLayout().isCompatible(context.getLayout())) {
+            throw new IllegalArgumentException("Slot context does not match the current version of expression: " + id);
+        }
+        ExpressionMeters meters = serviceMetrics.meters(expression, id);
+        long start = System.nanoTime();
+        try {
+            boolean result = expression.evaluate(context);
+            recordFetchScope(context.getFetchScope());
+            meters.record(result, System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            meters.error(System.nanoTime() - start);
+            log.error("Error evaluating registered expression, id: {}, exception info: {}", id, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 对表达式json求值并返回执行过程，结果和 doEvaluateExpression 一致，用于排查规则为什么返回 false、哪个条件慢
+     */
+    public ExpressionTrace doExplainExpression(String expressionJson, ContextSchema schema, Map<String, Object> contextMap) {
+        if (StrUtil.isEmpty(expressionJson)) {
+            return ExpressionTrace.of(true, null);
+        }
+        return explain(expressionCache.get(expressionJson, schema), contextMap);
+    }
+
+    public ExpressionTrace doExplainExpression(TokenBuffer expression, ContextSchema schema, Map<String, Object> contextMap) {
+        return explain(expressionCache.get(expression, schema), contextMap);
+    }
+
+    public ExpressionTrace doExplainExpression(byte[] expressionBinary, ContextSchema schema, Map<String, Object> contextMap) {
+        if (expressionBinary == null || expressionBinary.length == 0) {
+            return ExpressionTrace.of(true, null);
+        }
+        return explain(expressionCache.get(expressionBinary, schema), contextMap);
+    }
+
+    /**
+     * @throws IllegalArgumentException 表达式没有注册
+     */
+    public ExpressionTrace doExplainRegistered(String id, ContextSchema schema, Map<String, Object> contextMap) {
+        CompiledExpression expression = expressionRegistry.get(id, schema);
+        if (expression == null) {
+            throw new IllegalArgumentException("Expression is not registered: " + id);
+        }
+        return explain(expression, contextMap);
+    }
+
+    private ExpressionTrace explain(CompiledExpression expression, Map<String, Object> contextMap) {
+        if (Objects.isNull(expression)) {
+            return ExpressionTrace.of(false, "Failed to parse expression");
+        }
+        EvaluationContext evaluationContext = expression.newContext(contextMap);
+        ExpressionTrace trace = expression.explain(evaluationContext);
+        recordFetchScope(evaluationContext.getFetchScope());
+        return trace;
+    }
+
+    private boolean evaluate(CompiledExpression expression, ExpressionMeters meters, Map<String, Object> contextMap) {
+        long start = System.nanoTime();
+        try {
+            EvaluationContext evaluationContext = expression.newContext(contextMap);
+            boolean result = expression.evaluate(evaluationContext);
+            recordFetchScope(evaluationContext.getFetchScope());
+            meters.record(result, System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            meters.error(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * 同一个表达式对多行上下文批量求值，表达式只解析一次，多行上下文分块后并行求值
+     * 每一行的结果和 doEvaluateExpression 单独求值的结果一致，每一行都记录到表达式的求值指标中
+     *
+     * @param expressionJson 表达式json
+     * @param contexts       多行上下文
+     * @return 第 i 位代表第 i 行上下文的求值结果
+     * @throws IllegalArgumentException 表达式解析失败，和所有行都为 false 区分开
+     */
+    public BitSet doEvaluateBatch(String expressionJson, List<Map<String, Object>> contexts) {
+        int size = contexts == null ? 0 : contexts.size();
+        BitSet result = new BitSet(size);
+        if (size == 0) {
+            return result;
+        }
+        //如果没有配置表达式，则所有行都返回true
+        if (StrUtil.isEmpty(expressionJson)) {
+            result.set(0, size);
+            return result;
+        }
+        CompiledExpression expression = compileBatch(expressionJson);
+        long[] words = new long[(size + Long.SIZE - 1) / Long.SIZE];
+        AtomicLong failures = new AtomicLong();
+        batchPool.invoke(new BatchTask(expression, serviceMetrics.meters(expression), contexts, words, failures, 0, size));
+        logFailures(expressionJson, failures);
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * 按顺序读取的多行上下文批量求值，比如从文件、数据库游标中逐行读出的上下文，不需要先把所有行读到一个 List 中
+     * 每次读取 chunkSize * 并行度 行作为一个窗口交给线程池求值，求值的同时读取下一个窗口，内存中最多保留两个窗口的上下文
+     *
+     * @param expressionJson 表达式json
+     * @param contexts       多行上下文，在调用线程中读取
+     * @return 第 i 位代表第 i 行上下文的求值结果
+     * @throws IllegalArgumentException 表达式解析失败，这时不会读取上下文
+     */
+    public BitSet doEvaluateBatch(String expressionJson, Iterator<Map<String, Object>> contexts) {
+        if (contexts == null || !contexts.hasNext()) {
+            return new BitSet();
+        }
+        //如果没有配置表达式，则所有行都返回true
+        if (StrUtil.isEmpty(expressionJson)) {
+            int size = 0;
+            for (; contexts.hasNext(); contexts.next()) {
+                size++;
+            }
+            BitSet result = new BitSet(size);
+            result.set(0, size);
+            return result;
+        }
+        CompiledExpression expression = compileBatch(expressionJson);
+        ExpressionMeters meters = serviceMetrics.meters(expression);
+        // 窗口大小是 64 的倍数，每个窗口的结果正好占整数个 long
+        int windowSize = batchChunkSize * batchPool.getParallelism();
+        List<long[]> windows = new ArrayList<>();
+        AtomicLong failures = new AtomicLong();
+        ForkJoinTask<Void> pending = null;
+        int size = 0;
+        while (contexts.hasNext()) {
+            List<Map<String, Object>> rows = new ArrayList<>(windowSize);
+            while (rows.size() < windowSize && contexts.hasNext()) {
+                rows.add(contexts.next());
+            }
+            long[] words = new long[(rows.size() + Long.SIZE - 1) / Long.SIZE];
+            windows.add(words);
+            ForkJoinTask<Void> task = batchPool.submit(new BatchTask(expression, meters, rows, words, failures, 0, rows.size()));
+            size += rows.size();
+            if (pending != null) {
+                pending.join();
+            }
+            pending = task;
+        }
+        pending.join();
+        logFailures(expressionJson, failures);
+        long[] words = new long[(size + Long.SIZE - 1) / Long.SIZE];
+        int windowWords = windowSize / Long.SIZE;
+        for (int i = 0; i < windows.size(); i++) {
+            System.arraycopy(windows.get(i), 0, words, i * windowWords, windows.get(i).length);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * 批量求值的表达式解析失败时和单独求值一样记录解析失败，然后抛出异常，不把所有行都当成 false 返回
+     */
+    private CompiledExpression compileBatch(String expressionJson) {
+        CompiledExpression expression = expressionCache.get(expressionJson);
+        if (Objects.isNull(expression)) {
+            serviceMetrics.parseFailed();
+            log.error("Error parsing expression in batch, expressionJson: {}", expressionJson);
+            throw new IllegalArgumentException("Failed to parse expression");
+        }
+        return expression;
+    }
+
+    private static void logFailures(String expressionJson, AtomicLong failures) {
+        if (failures.get() > 0) {
+            log.error("Error evaluating expression in batch, expressionJson: {}, failed rows: {}", expressionJson, failures.get());
+        }
+    }
+
+    /**
+     * 注册规则集，规则集中所有规则会被编译成一份共享的求值图，同名的规则集会被替换
+     *
+     * @param name  规则集名称
+     * @param rules 规则id -> 表达式json
+     */
+    public void registerRuleSet(String name, Map<String, String> rules) {
+        ruleSets.put(name, expressionCompiler.compileRuleSet(name, rules));
+    }
+
+    /**
+     * 用同一个上下文对规则集中的所有规则求值，相同的上下文取值、数据库查询、条件比较只执行一次
+     *
+     * @param name       规则集名称
+     * @param contextMap 上下文数据
+     * @return 规则id -> 求值结果
+     */
+    public Map<String, Boolean> doEvaluateRuleSet(String name, Map<String, Object> contextMap) {
+        CompiledRuleSet ruleSet = ruleSets.get(name);
+        if (ruleSet == null) {
+            throw new IllegalArgumentException("Rule set is not registered: " + name);
+        }
+        EvaluationContext evaluationContext = ruleSet.newContext(contextMap);
+        Map<String, Boolean> result = ruleSet.evaluate(evaluationContext);
+        recordFetchScope(evaluationContext.getFetchScope());
+        return result;
+    }
+
+    private void recordFetchScope(FetchScope fetchScope) {
+        if (fetchScope == null) {
+            return;
+        }
+        if (fetchScope.getSavedCount() > 0) {
+            savedFetches.add(fetchScope.getSavedCount());
+        }
+        log.debug("Evaluation fetched {} rows ({} prefetched), saved {} fetches",
+                fetchScope.getFetchCount(), fetchScope.getPrefetchCount(), fetchScope.getSavedCount());
+    }
+
+    /**
+     * 启动以来同一次求值中复用数据库查询结果而省掉的查询总次数
+     */
+    public long getSavedFetches() {
+        return savedFetches.sum();
+    }
+
+    /**
+     * 按照 batchChunkSize 拆分的批量求值任务
+     */
+    private class BatchTask extends RecursiveAction {
+
+        private final CompiledExpression expression;
+        private final ExpressionMeters meters;
+        private final List<Map<String, Object>> contexts;
+        private final long[] words;
+        private final AtomicLong failures;
+        private final int from;
+        private final int to;
+
+        BatchTask(CompiledExpression expression, ExpressionMeters meters, List<Map<String, Object>> contexts, long[] words,
+                  AtomicLong failures, int from, int to) {
+            this.expression = expression;
+            this.meters = meters;
+            this.contexts = contexts;
+            this.words = words;
+            this.failures = failures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchChunkSize) {
+                evaluateChunk();
+                return;
+            }
+            // 拆分点对齐到 64，两个子任务不会写同一个 long
+            int middle = from + Math.max(Long.SIZE, (to - from) / 2 / Long.SIZE * Long.SIZE);
+            invokeAll(new BatchTask(expression, meters, contexts, words, failures, from, middle),
+                    new BatchTask(expression, meters, contexts, words, failures, middle, to));
+        }
+
+        private void evaluateChunk() {
+            for (int i = from; i < to; i++) {
+                boolean matched;
+                long start = System.nanoTime();
+                try {
+                    matched = expression.evaluate(contexts.get(i));
+                    meters.record(matched, System.nanoTime() - start);
+                } catch (Exception e) {
+                    meters.error(System.nanoTime() - start);
+                    failures.incrementAndGet();
+                    matched = false;
+                }
+                if (matched) {
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+    }
+}
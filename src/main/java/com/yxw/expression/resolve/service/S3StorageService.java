@@ -1,5 +1,6 @@
 package com.yxw.expression.resolve.service;
 
+import com.yxw.expression.resolve.component.ServiceMetrics;
 import com.yxw.expression.resolve.dto.FileDTO;
 import com.yxw.expression.resolve.dto.S3Item;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,6 +17,7 @@ import java.io.InputStream;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,12 +27,15 @@ public class S3StorageService {
 
     private final S3Presigner s3Presigner;
 
+    private final ServiceMetrics serviceMetrics;
+
     @Value("${aws.s3.bucket-name}")
     private String bucketName;
 
-    public S3StorageService(S3Client s3Client, S3Presigner s3Presigner) {
+    public S3StorageService(S3Client s3Client, S3Presigner s3Presigner, ServiceMetrics serviceMetrics) {
         this.s3Client = s3Client;
         this.s3Presigner = s3Presigner;
+        this.serviceMetrics = serviceMetrics;
     }
 
     /**
@@ -51,6 +56,7 @@ public class S3StorageService {
 
     // 内部方法：执行 S3 上传操作
     private void uploadFile(String key, InputStream inputStream, long contentLength) {
+        long start = System.nanoTime();
         try {
             PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                     .bucket(bucketName)
@@ -60,10 +66,13 @@ public class S3StorageService {
 
             // 执行上传
             s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(inputStream, contentLength));
+            serviceMetrics.s3UploadBytes().record(contentLength);
 
         } catch (Exception e) {
             // 捕获 S3 客户端操作异常
             throw new RuntimeException("S3 客户端操作失败: " + key, e);
+        } finally {
+            serviceMetrics.s3Upload().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
@@ -91,11 +100,16 @@ public class S3StorageService {
                 .bucket(bucketName)
                 .key(key)
                 .build();
+        long start = System.nanoTime();
         try (ResponseInputStream<GetObjectResponse> s3Object = s3Client.getObject(getObjectRequest)) {
             // 将 InputStream 转换为字节数组
-            return StreamUtils.copyToByteArray(s3Object);
+            byte[] bytes = StreamUtils.copyToByteArray(s3Object);
+            serviceMetrics.s3DownloadBytes().record(bytes.length);
+            return bytes;
         } catch (Exception e) {
             throw new RuntimeException("S3 下载操作失败: " + key, e);
+        } finally {
+            serviceMetrics.s3Download().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
@@ -111,8 +125,7 @@ public class S3StorageService {
                 .build();
 
         // 2. 执行 S3 API 调用，获取对象列表
-        List<S3Object> s3Objects = s3Client.listObjectsV2(listRequest)
-                .contents();
+        List<S3Object> s3Objects = listObjects(listRequest).contents();
 
         // 3. 过滤、映射并生成 URL
         return s3Objects.stream()
@@ -155,7 +168,7 @@ public class S3StorageService {
                 .delimiter("/")          // 核心：模拟文件夹分隔符
                 .build();
 
-        ListObjectsV2Response response = s3Client.listObjectsV2(request);
+        ListObjectsV2Response response = listObjects(request);
         List<S3Item> items = new ArrayList<>();
 
         // 2. 处理 CommonPrefixes (即"文件夹")
@@ -193,4 +206,13 @@ public class S3StorageService {
 
         return items;
     }
+
+    private ListObjectsV2Response listObjects(ListObjectsV2Request request) {
+        long start = System.nanoTime();
+        try {
+            return s3Client.listObjectsV2(request);
+        } finally {
+            serviceMetrics.s3List().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
 }
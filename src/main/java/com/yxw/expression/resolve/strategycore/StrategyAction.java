@@ -10,7 +10,7 @@ public class StrategyAction<T> {
 
     private final BaseEnum[] baseEnum;
 
-    T strategy;
+    private final T strategy;
 
     public StrategyAction(Object strategy, Class<T> type, BaseEnum[] baseEnum) {
         this.strategy = (T) strategy;
@@ -4,22 +4,56 @@ import com.yxw.expression.resolve.enums.base.BaseEnum;
 import lombok.Getter;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * 一个策略接口注册的所有策略，创建后不再修改，注册、注销策略时重新创建
+ */
 public class StrategyActionHolder<T> {
 
-    Map<BaseEnum, List<StrategyAction<T>>> actionMapping = new HashMap<>();
+    private final Map<BaseEnum, List<StrategyAction<T>>> actionMapping;
 
     @Getter
-    T defaultStrategy;
+    private final T defaultStrategy;
 
-    Class<T> type;
+    @Getter
+    private final Class<T> type;
+
+    /**
+     * 由 actionMapping 冻结出来的匹配索引
+     */
+    private final StrategyIndex<T> index;
 
-    public StrategyActionHolder(Class<T> type) {
+    /**
+     * @param type       策略接口
+     * @param strategies 实现了这个接口的策略，按照注册顺序
+     */
+    StrategyActionHolder(Class<T> type, List<IStrategy> strategies) {
         this.type = type;
-        this.defaultStrategy = genDefaultStrategy(type);
+        Map<BaseEnum, List<StrategyAction<T>>> mapping = new HashMap<>();
+        Object defaultStrategy = null;
+        for (IStrategy strategy : strategies) {
+            if (strategy.isDefault()) {
+                defaultStrategy = strategy;
+            }
+            BaseEnum[][] baseEnums = strategy.launchConditions();
+            if (baseEnums == null) {
+                continue;
+            }
+            for (BaseEnum[] baseEnum : baseEnums) {
+                StrategyAction<T> strategyAction = new StrategyAction<>(strategy, type, baseEnum);
+                for (BaseEnum anEnum : baseEnum) {
+                    mapping.computeIfAbsent(anEnum, key -> new ArrayList<>()).add(strategyAction);
+                }
+            }
+        }
+        mapping.replaceAll((key, actions) -> Collections.unmodifiableList(actions));
+        this.actionMapping = Collections.unmodifiableMap(mapping);
+        this.defaultStrategy = defaultStrategy != null ? (T) defaultStrategy : genDefaultStrategy(type);
+        this.index = new StrategyIndex<>(actionMapping);
     }
 
     private T genDefaultStrategy(Class<T> type) {
@@ -32,15 +66,11 @@ public class StrategyActionHolder<T> {
         });
     }
 
-    public void addAction(BaseEnum baseEnum, StrategyAction<T> strategyAction) {
-        actionMapping.computeIfAbsent(baseEnum, key -> new ArrayList<>()).add(strategyAction);
-    }
-
-    public void setDefaultStrategy(Object defaultStrategy) {
-        this.defaultStrategy = (T) defaultStrategy;
-    }
-
     public List<StrategyAction<T>> getStrategyAction(BaseEnum baseEnum) {
         return actionMapping.get(baseEnum);
     }
+
+    StrategyIndex<T> index() {
+        return index;
+    }
 }
@@ -0,0 +1,33 @@
+package com.yxw.expression.resolve.strategycore;
+
+import com.yxw.expression.resolve.enums.base.BaseEnum;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 运行时注册、注销策略后发布的事件，新的注册表已经生效
+ * 依赖策略查询结果的组件（比如表数据缓存）可以监听这个事件，丢弃旧策略产生的数据
+ *
+ * @param type       策略接口
+ * @param strategy   注册或注销的策略
+ * @param registered true 为注册，false 为注销
+ * @author luffytmac
+ */
+public record StrategyChangedEvent(Class<?> type, IStrategy strategy, boolean registered) {
+
+    /**
+     * 策略发动条件中出现的所有枚举
+     */
+    public Set<BaseEnum> conditions() {
+        Set<BaseEnum> conditions = new LinkedHashSet<>();
+        BaseEnum[][] baseEnums = strategy.launchConditions();
+        if (baseEnums != null) {
+            for (BaseEnum[] baseEnum : baseEnums) {
+                Collections.addAll(conditions, baseEnum);
+            }
+        }
+        return conditions;
+    }
+}
@@ -1,21 +1,42 @@
 package com.yxw.expression.resolve.strategycore;
 
-import com.google.common.collect.Sets;
 import com.yxw.expression.resolve.enums.base.BaseEnum;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.stereotype.Component;
-import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+/**
+ * 策略注册表
+ * 启动时注册所有实现了 IStrategy 的 bean，运行时也可以通过 register、unregister 增加、删除策略
+ * 读取的是一份不可变的快照，注册、注销时重新创建快照并整体替换，读取不加锁
+ */
 @Component
-public class StrategyContext implements BeanPostProcessor {
+public class StrategyContext implements BeanPostProcessor, ApplicationEventPublisherAware {
 
-    Map<Class<?>, StrategyActionHolder> mapping = new HashMap<>();
+    /**
+     * 策略接口 -> 实现了这个接口的策略，按照注册顺序，只在持有锁时读写
+     */
+    private final Map<Class<?>, List<IStrategy>> registrations = new HashMap<>();
+
+    /**
+     * 策略接口 -> 注册的所有策略，不可变的快照
+     */
+    private volatile Map<Class<?>, StrategyActionHolder<?>> mapping = Collections.emptyMap();
+
+    private ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
 
     @Override
     public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
@@ -23,44 +44,76 @@ public class StrategyContext implements BeanPostProcessor {
         if (bean instanceof IStrategy) {
             IStrategy strategy = (IStrategy) bean;
             // 使用strategy对象
-            init(strategy);
+            register(strategy);
         }
         return bean;
     }
 
-    private void init(IStrategy strategy) {
-        //获取策略对象实现的所有直接接口
-        Class<?>[] interfaces = strategy.getClass().getInterfaces();
-        // 只找一层，不支持接口多级继承 IStrategy
-        for (Class<?> anInterface : interfaces) {
-            //检查 anInterface 是否是 IStrategy 接口或其子接口
-            if (IStrategy.class.isAssignableFrom(anInterface)) {
-                addActionMapping(strategy, anInterface);
-            }
-        }
+    /**
+     * 注册一个策略，注册完成后的 get 就能匹配到这个策略
+     * 同一个策略对象重复注册时只保留一次
+     */
+    public void register(IStrategy strategy) {
+        update(strategy, true);
     }
 
     /**
-     * 添加接口和对应实现类的关系
+     * 注销一个策略，按照对象本身匹配
+     *
+     * @return 策略注册过返回 true
      */
-    private void addActionMapping(IStrategy strategy, Class<?> actionInterface) {
-
-        StrategyActionHolder<?> strategyActionHolder = mapping.computeIfAbsent(actionInterface, StrategyActionHolder::new);
+    public boolean unregister(IStrategy strategy) {
+        return update(strategy, false);
+    }
 
-        if (strategy.isDefault()) {
-            strategyActionHolder.setDefaultStrategy(strategy);
+    private boolean update(IStrategy strategy, boolean register) {
+        List<Class<?>> changed = new ArrayList<>();
+        synchronized (registrations) {
+            Map<Class<?>, StrategyActionHolder<?>> snapshot = new HashMap<>(mapping);
+            for (Class<?> anInterface : strategyInterfaces(strategy)) {
+                List<IStrategy> strategies = new ArrayList<>(registrations.getOrDefault(anInterface, Collections.emptyList()));
+                boolean exists = strategies.stream().anyMatch(registered -> registered == strategy);
+                if (register == exists) {
+                    continue;
+                }
+                if (register) {
+                    strategies.add(strategy);
+                } else {
+                    strategies.removeIf(registered -> registered == strategy);
+                }
+                if (strategies.isEmpty()) {
+                    registrations.remove(anInterface);
+                    snapshot.remove(anInterface);
+                } else {
+                    registrations.put(anInterface, strategies);
+                    snapshot.put(anInterface, new StrategyActionHolder<>(anInterface, strategies));
+                }
+                changed.add(anInterface);
+            }
+            if (changed.isEmpty()) {
+                return false;
+            }
+            mapping = Collections.unmodifiableMap(snapshot);
         }
-        BaseEnum[][] baseEnums = strategy.launchConditions();
-        if (baseEnums == null || baseEnums.length == 0) {
-            return;
+        if (eventPublisher != null) {
+            changed.forEach(type -> eventPublisher.publishEvent(new StrategyChangedEvent(type, strategy, register)));
         }
+        return true;
+    }
 
-        for (BaseEnum[] baseEnum : baseEnums) {
-            StrategyAction strategyAction = new StrategyAction<>(strategy, actionInterface, baseEnum);
-            for (BaseEnum anEnum : baseEnum) {
-                strategyActionHolder.addAction(anEnum, strategyAction);
+    /**
+     * 获取策略对象实现的所有直接接口中，是 IStrategy 或其子接口的接口
+     */
+    private List<Class<?>> strategyInterfaces(IStrategy strategy) {
+        List<Class<?>> result = new ArrayList<>();
+        // 只找一层，不支持接口多级继承 IStrategy
+        for (Class<?> anInterface : strategy.getClass().getInterfaces()) {
+            //检查 anInterface 是否是 IStrategy 接口或其子接口
+            if (IStrategy.class.isAssignableFrom(anInterface)) {
+                result.add(anInterface);
             }
         }
+        return result;
     }
 
     /**
@@ -71,32 +124,15 @@ public class StrategyContext implements BeanPostProcessor {
      */
     public <T> T get(Class<T> type, BaseEnum... params) {
 
-        StrategyActionHolder<T> strategyActionHolder = mapping.get(type);
+        StrategyActionHolder<T> strategyActionHolder = (StrategyActionHolder<T>) mapping.get(type);
         if (strategyActionHolder == null) {
             throw new IllegalArgumentException("类型[" + type.getName() + "] 还没有注册到 StrategyContext 中");
         }
 
-        Set<BaseEnum> paramSet = null;
-
-        for (BaseEnum param : params) {
-            List<StrategyAction<T>> strategyActions = strategyActionHolder.getStrategyAction(param);
-            if (CollectionUtils.isEmpty(strategyActions)) {
-                continue;
-            }
-            for (StrategyAction<T> strategyAction : strategyActions) {
-                // 是否是简单匹配，如果是的话直接返回了
-                if (strategyAction.simpleMatch()) {
-                    return strategyAction.getStrategy();
-                }
-
-                // 不是简单匹配，需要匹配 与的关系，把参数构建成一个 set 去匹配
-                if (paramSet == null) {
-                    paramSet = Sets.newHashSet(param);
-                }
-                if (strategyAction.match(paramSet)){
-                    return strategyAction.getStrategy();
-                }
-            }
+        // 按照位掩码匹配，与关系的发动条件需要所有枚举都在参数中
+        T strategy = strategyActionHolder.index().match(params);
+        if (strategy != null) {
+            return strategy;
         }
         // 匹配不上，返回默认值
         return strategyActionHolder.getDefaultStrategy();
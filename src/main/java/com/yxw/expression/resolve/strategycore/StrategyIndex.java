@@ -0,0 +1,159 @@
+package com.yxw.expression.resolve.strategycore;
+
+import com.yxw.expression.resolve.enums.base.BaseEnum;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个策略接口注册完成后冻结出来的匹配索引
+ * 每个出现在发动条件中的枚举分配一个位，每个发动条件（与关系）变成一个位掩码，
+ * 匹配时把传入的枚举参数也变成位掩码，条件的位全部包含在参数的位中即命中，匹配过程不创建对象
+ * 枚举超过 64 个时位掩码使用多个 long
+ *
+ * 匹配顺序和注册顺序一致：按参数顺序，依次检查注册在这个枚举上的发动条件，单个枚举的条件直接命中
+ *
+ * @author luffytmac
+ */
+final class StrategyIndex<T> {
+
+    /**
+     * 枚举超过 64 个时，参数位掩码使用的临时数组，每个线程复用一个
+     */
+    private static final ThreadLocal<long[]> WIDE_MASK = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * 枚举 -> 分配的位
+     */
+    private final Map<BaseEnum, Integer> bits;
+
+    /**
+     * 枚举 -> 注册在这个枚举上的发动条件，顺序和注册顺序一致
+     */
+    private final Map<BaseEnum, Candidate<T>[]> candidates;
+
+    /**
+     * 位掩码需要的 long 个数
+     */
+    private final int words;
+
+    @SuppressWarnings("unchecked")
+    StrategyIndex(Map<BaseEnum, List<StrategyAction<T>>> actionMapping) {
+        Map<BaseEnum, Integer> bitMap = new HashMap<>();
+        actionMapping.values().forEach(actions -> actions.forEach(action -> {
+            for (BaseEnum anEnum : action.getBaseEnum()) {
+                bitMap.putIfAbsent(anEnum, bitMap.size());
+            }
+        }));
+        this.bits = bitMap;
+        this.words = Math.max(1, (bitMap.size() + Long.SIZE - 1) / Long.SIZE);
+
+        Map<BaseEnum, Candidate<T>[]> candidateMap = new HashMap<>();
+        actionMapping.forEach((anEnum, actions) -> {
+            List<Candidate<T>> list = new ArrayList<>(actions.size());
+            for (StrategyAction<T> action : actions) {
+                list.add(new Candidate<>(action.getStrategy(), action.simpleMatch(), mask(action.getBaseEnum())));
+            }
+            candidateMap.put(anEnum, list.toArray(new Candidate[0]));
+        });
+        this.candidates = candidateMap;
+    }
+
+    /**
+     * 按照参数匹配策略，匹配不上返回 null
+     */
+    T match(BaseEnum[] params) {
+        long paramMask = 0L;
+        long[] wideMask = null;
+        boolean maskReady = false;
+        for (BaseEnum param : params) {
+            Candidate<T>[] paramCandidates = candidates.get(param);
+            if (paramCandidates == null) {
+                continue;
+            }
+            for (Candidate<T> candidate : paramCandidates) {
+                // 是否是简单匹配，如果是的话直接返回了
+                if (candidate.simple) {
+                    return candidate.strategy;
+                }
+                // 不是简单匹配，需要匹配与的关系，第一次用到时把所有参数转换成位掩码
+                if (!maskReady) {
+                    if (words == 1) {
+                        paramMask = singleMask(params);
+                    } else {
+                        wideMask = wideMask(params);
+                    }
+                    maskReady = true;
+                }
+                if (words == 1 ? (candidate.mask[0] & ~paramMask) == 0 : contains(wideMask, candidate.mask)) {
+                    return candidate.strategy;
+                }
+            }
+        }
+        return null;
+    }
+
+    private long[] mask(BaseEnum[] conjunction) {
+        long[] mask = new long[words];
+        for (BaseEnum anEnum : conjunction) {
+            int bit = bits.get(anEnum);
+            mask[bit >>> 6] |= 1L << bit;
+        }
+        return mask;
+    }
+
+    private long singleMask(BaseEnum[] params) {
+        long mask = 0L;
+        for (BaseEnum param : params) {
+            Integer bit = bits.get(param);
+            if (bit != null) {
+                mask |= 1L << bit;
+            }
+        }
+        return mask;
+    }
+
+    private long[] wideMask(BaseEnum[] params) {
+        long[] mask = WIDE_MASK.get();
+        if (mask.length < words) {
+            mask = new long[words];
+            WIDE_MASK.set(mask);
+        } else {
+            Arrays.fill(mask, 0, words, 0L);
+        }
+        for (BaseEnum param : params) {
+            Integer bit = bits.get(param);
+            if (bit != null) {
+                mask[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return mask;
+    }
+
+    private boolean contains(long[] paramMask, long[] conditionMask) {
+        for (int i = 0; i < words; i++) {
+            if ((conditionMask[i] & ~paramMask[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Candidate<T> {
+
+        private final T strategy;
+
+        private final boolean simple;
+
+        private final long[] mask;
+
+        private Candidate(T strategy, boolean simple, long[] mask) {
+            this.strategy = strategy;
+            this.simple = simple;
+            this.mask = mask;
+        }
+    }
+}
@@ -2,6 +2,10 @@ package com.yxw.expression.resolve.strategycore.handler;
 
 import com.yxw.expression.resolve.strategycore.IStrategy;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * 这是一个策略接口，用于处理所有的外部系统发送过来的事件
  *
@@ -15,4 +19,33 @@ public interface EventHandler extends IStrategy {
 
 
     <T> T findByKey(String keyId);
+
+    /**
+     * 只查询指定字段的数据，表达式编译时已经知道一张表用到了哪些字段，实现类可以只查询这些列
+     * 没有实现这个方法的策略查询整条数据
+     *
+     * @param keyId  唯一键
+     * @param fields 用到的字段，下划线命名，和表的列名一致
+     */
+    default <T> T findByKey(String keyId, Set<String> fields) {
+        return findByKey(keyId);
+    }
+
+    /**
+     * 一次查询多个唯一键的数据，并发的求值查询同一张表时会合并成一次调用
+     * 返回 null 代表不支持批量查询，之后按唯一键逐个查询；查不到数据的唯一键在返回的 map 中不存在即可
+     *
+     * @param keyIds 去重后的唯一键
+     * @return 唯一键 -> 数据
+     */
+    default <T> Map<String, T> findByKeys(Collection<String> keyIds) {
+        return null;
+    }
+
+    /**
+     * 一次查询多个唯一键中指定字段的数据，没有实现这个方法的策略查询整条数据
+     */
+    default <T> Map<String, T> findByKeys(Collection<String> keyIds, Set<String> fields) {
+        return findByKeys(keyIds);
+    }
 }
@@ -0,0 +1,126 @@
+package com.yxw.expression.resolve.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 一个类的属性读取表，key 为下划线命名的属性名，value 为读取属性的函数
+ * 每个类只用 Introspector 解析一次，读取函数通过 LambdaMetafactory 生成，调用时不再走反射
+ *
+ * @author luffytmac
+ */
+@Slf4j
+public final class BeanPropertyAccessor {
+
+    private static final ClassValue<BeanPropertyAccessor> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected BeanPropertyAccessor computeValue(Class<?> type) {
+            return new BeanPropertyAccessor(type);
+        }
+    };
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Function.class);
+
+    private static final MethodType APPLY_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * 下划线命名的属性名 -> 读取函数，顺序和 Introspector 返回的属性顺序一致
+     */
+    private final Map<String, Function<Object, Object>> getters;
+
+    private BeanPropertyAccessor(Class<?> type) {
+        Map<String, Function<Object, Object>> map = new LinkedHashMap<>();
+        try {
+            BeanInfo beanInfo = Introspector.getBeanInfo(type);
+            for (PropertyDescriptor property : beanInfo.getPropertyDescriptors()) {
+                String propertyName = property.getName();
+                Method reader = property.getReadMethod();
+                if (!"class".equals(propertyName) && reader != null) {
+                    //比如：ticketNo -> ticket_no
+                    map.put(BeanToMapConverter.camelToSnakeCase(propertyName), getter(reader));
+                }
+            }
+        } catch (Exception e) {
+            log.error("build bean accessor error {}", e.getMessage(), e);
+        }
+        this.getters = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 获取类对应的属性读取表，同一个类只会创建一次
+     */
+    public static BeanPropertyAccessor of(Class<?> type) {
+        return ACCESSORS.get(type);
+    }
+
+    /**
+     * 下划线命名的属性名
+     */
+    public Set<String> names() {
+        return getters.keySet();
+    }
+
+    public boolean contains(String name) {
+        return getters.containsKey(name);
+    }
+
+    public int size() {
+        return getters.size();
+    }
+
+    /**
+     * 读取属性值，属性不存在时返回 null
+     */
+    public Object read(Object bean, String name) {
+        Function<Object, Object> getter = getters.get(name);
+        return getter == null ? null : getter.apply(bean);
+    }
+
+    Map<String, Function<Object, Object>> getters() {
+        return getters;
+    }
+
+    /**
+     * 为 getter 生成读取函数；没有访问权限生成 lambda 时退回到 MethodHandle 调用
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getter(Method reader) throws IllegalAccessException {
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(reader.getDeclaringClass(), MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            lookup = MethodHandles.publicLookup();
+        }
+        MethodHandle handle = lookup.unreflect(reader);
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "apply", GETTER_TYPE, APPLY_TYPE, handle, handle.type().wrap());
+            return (Function<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            log.debug("Fall back to method handle for {}: {}", reader, e.getMessage());
+            MethodHandle generic = handle.asType(APPLY_TYPE);
+            return bean -> {
+                try {
+                    return generic.invokeExact(bean);
+                } catch (RuntimeException | Error ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    throw new IllegalStateException(ex);
+                }
+            };
+        }
+    }
+}
@@ -2,12 +2,10 @@ package com.yxw.expression.resolve.utils;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.beans.BeanInfo;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
 
 @Slf4j
 public class BeanToMapConverter {
@@ -36,19 +34,9 @@ public class BeanToMapConverter {
             return map;
         }
         try {
-            BeanInfo beanInfo = Introspector.getBeanInfo(bean.getClass());
-            PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-            for (PropertyDescriptor property : propertyDescriptors) {
-                String propertyName = property.getName();
-                if (!"class".equals(propertyName)) {
-                    Method reader = property.getReadMethod();
-                    if (reader != null) {
-                        //比如：ticketNo -> ticket_no
-                        String snakeCaseName = camelToSnakeCase(propertyName);
-                        Object value = reader.invoke(bean);
-                        map.put(snakeCaseName, value);
-                    }
-                }
+            BeanPropertyAccessor accessor = BeanPropertyAccessor.of(bean.getClass());
+            for (Map.Entry<String, Function<Object, Object>> getter : accessor.getters().entrySet()) {
+                map.put(getter.getKey(), getter.getValue().apply(bean));
             }
         } catch (Exception e) {
             log.error("beanToSnakeCaseMap error {}" ,e.getMessage(), e);
@@ -56,4 +44,14 @@ public class BeanToMapConverter {
         }
         return map;
     }
-}
\ No newline at end of file
+
+    /**
+     * 将Java Bean包装成下划线命名为key的只读Map视图，不复制属性，get 时才读取对应的属性
+     */
+    public static Map<String, Object> beanToSnakeCaseView(Object bean) {
+        if(bean == null){
+            return Collections.emptyMap();
+        }
+        return new LazyBeanMap(bean, BeanPropertyAccessor.of(bean.getClass()));
+    }
+}
@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -17,6 +18,9 @@ public class DateConverter {
 
     private static final Logger log = LoggerFactory.getLogger(DateConverter.class);
 
+    // 所有日期统一转换到 UTC，ZoneId.of 每次调用都要查找时区规则，这里只查找一次
+    private static final ZoneId UTC = ZoneId.of("UTC");
+
     // 使用 ISO 8601 标准的内置格式化器，它支持带毫秒和不带毫秒的 UTC 时间
     private static final DateTimeFormatter ISO_INSTANT_FORMATTER = DateTimeFormatter.ISO_INSTANT;
 
@@ -26,6 +30,30 @@ public class DateConverter {
     // 解析本地日期，例如 2025-10-26
     private static final DateTimeFormatter LOCAL_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    /**
+     * toEpochMilli 无法得到精确的毫秒时间戳时的返回值，调用方需要退回到 ZonedDateTime 的比较
+     */
+    public static final long INVALID_EPOCH_MILLI = Long.MIN_VALUE;
+
+    // toEpochMilli 支持的范围：0001-01-01T00:00:00Z 到 9999-12-31T23:59:59.999Z
+    private static final long MIN_EPOCH_MILLI = -62_135_596_800_000L;
+    private static final long MAX_EPOCH_MILLI = 253_402_300_799_999L;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    // 0000-01-01 到 1970-01-01 的天数
+    private static final long DAYS_0000_TO_1970 = 719_528L;
+
+    // 快速解析能识别的格式
+    private static final int FORMAT_UNKNOWN = 0;
+    // 例如 2025-08-26
+    private static final int FORMAT_DATE = 1;
+    // 例如 2025-08-26 10:30:00
+    private static final int FORMAT_DATE_TIME = 2;
+    // 例如 2025-08-26T00:00:00Z、2025-08-26T00:00:00.123Z
+    private static final int FORMAT_INSTANT = 3;
+
     /**
      * 将多种日期类型转换为 ZonedDateTime。
      *
@@ -39,35 +67,108 @@ public class DateConverter {
         }
         if (dateValue instanceof Long timestamp) {
             //Long 类型的时间戳（通常是毫秒数）本身是不带任何时区信息的。它只是一个数字，代表从 1970年1月1日 00:00:00 UTC（协调世界时）开始经过的毫秒数。
-            return ZonedDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.of("UTC"));
+            return ZonedDateTime.ofInstant(Instant.ofEpochMilli(timestamp), UTC);
         }
         if (dateValue instanceof Date date) {
             // Date 对象本质上是一个时间戳（从 1970-01-01T00:00:00Z 开始的毫秒数）
-            return date.toInstant().atZone(ZoneId.of("UTC"));
+            return date.toInstant().atZone(UTC);
         }
         if (dateValue instanceof LocalDateTime localDateTime) {
             // LocalDateTime 本身不包含任何时区信息。它只是一组日期和时间的字段（年、月、日、时、分、秒），是“本地”时间。
             ZoneId systemZone = ZoneId.systemDefault();
             ZonedDateTime systemZonedDateTime = ZonedDateTime.of(localDateTime, systemZone);
-            return systemZonedDateTime.toInstant().atZone(ZoneId.of("UTC"));
+            return systemZonedDateTime.toInstant().atZone(UTC);
         }
         if (dateValue instanceof ZonedDateTime zonedDateTime) {
             // ZonedDateTime 本身已经包含时区信息，可以平滑的转换成UTC
-            return zonedDateTime.withZoneSameInstant(ZoneId.of("UTC"));
+            return zonedDateTime.withZoneSameInstant(UTC);
         }
         if (dateValue instanceof String dateString) {
+            // 0. 常见的三种格式直接按位解析，不需要逐个尝试格式化器
+            int format = detectFormat(dateString);
+            if (format != FORMAT_UNKNOWN) {
+                return ZonedDateTime.of(number(dateString, 0, 4), number(dateString, 5, 7), number(dateString, 8, 10),
+                        hour(dateString, format), minute(dateString, format), second(dateString, format),
+                        nanoOfSecond(dateString, format), UTC);
+            }
+            // 不可能是日期的字符串直接报错，不再逐个尝试格式化器
+            if (!mayBeDate(dateString)) {
+                throw new IllegalArgumentException("Unsupported Date String format: " + dateValue);
+            }
             // 1. 尝试用 ISO_INSTANT 格式解析（例如 2025-08-26T00:00:00Z）
-            return tryParse(() -> Instant.from(ISO_INSTANT_FORMATTER.parse(dateString)).atZone(ZoneId.of("UTC")))
+            return tryParse(() -> Instant.from(ISO_INSTANT_FORMATTER.parse(dateString)).atZone(UTC))
                     // 2. 如果失败，尝试用本地日期时间格式解析（例如 2025-08-26 10:30:00）
-                    .or(() -> tryParse(() -> LocalDateTime.parse(dateString, LOCAL_DATE_TIME_FORMATTER).atZone(ZoneId.of("UTC"))))
+                    .or(() -> tryParse(() -> LocalDateTime.parse(dateString, LOCAL_DATE_TIME_FORMATTER).atZone(UTC)))
                     // 3. 如果失败，尝试用本地日期格式解析（例如 2025-08-26）这里使用 LocalDate.parse() 并转换为 ZonedDateTime
-                    .or(() -> tryParse(() -> LocalDate.parse(dateString, LOCAL_DATE_FORMATTER).atStartOfDay(ZoneId.of("UTC"))))
+                    .or(() -> tryParse(() -> LocalDate.parse(dateString, LOCAL_DATE_FORMATTER).atStartOfDay(UTC)))
                     .orElseThrow(() -> new IllegalArgumentException("Unsupported Date String format: " + dateValue));
 
         }
         throw new IllegalArgumentException("Unsupported Date format: " + dateValue.getClass().getName());
     }
 
+    /**
+     * 将日期转换为毫秒时间戳，和 convertToZonedDateTime 得到的时间点一致，不会抛出异常
+     * 为 null、无法转换、有毫秒以下的精度或者超出 0001 到 9999 年范围时返回 INVALID_EPOCH_MILLI，调用方退回到 convertToZonedDateTime
+     *
+     * @param dateValue 待转换的日期值
+     * @return 毫秒时间戳或 INVALID_EPOCH_MILLI
+     */
+    public static long toEpochMilli(Object dateValue) {
+        if (dateValue instanceof Long timestamp) {
+            return inRange(timestamp);
+        }
+        if (dateValue instanceof Date date) {
+            return inRange(date.getTime());
+        }
+        if (dateValue instanceof LocalDateTime localDateTime) {
+            return toEpochMilli(localDateTime.atZone(ZoneId.systemDefault()).toInstant());
+        }
+        if (dateValue instanceof ZonedDateTime zonedDateTime) {
+            return toEpochMilli(zonedDateTime.toInstant());
+        }
+        if (dateValue instanceof String dateString) {
+            int format = detectFormat(dateString);
+            if (format == FORMAT_UNKNOWN) {
+                return INVALID_EPOCH_MILLI;
+            }
+            int nano = nanoOfSecond(dateString, format);
+            if (nano % 1_000_000 != 0) {
+                return INVALID_EPOCH_MILLI;
+            }
+            long epochDay = epochDay(number(dateString, 0, 4), number(dateString, 5, 7), number(dateString, 8, 10));
+            long secondOfDay = hour(dateString, format) * 3600L + minute(dateString, format) * 60L + second(dateString, format);
+            return (epochDay * SECONDS_PER_DAY + secondOfDay) * 1000L + nano / 1_000_000;
+        }
+        return INVALID_EPOCH_MILLI;
+    }
+
+    /**
+     * 两个毫秒时间戳之间相差的天、月、年数，和 UTC 时区下 ChronoUnit.between 的结果一致
+     *
+     * @param unit  DAYS、MONTHS 或 YEARS
+     * @param start 开始的毫秒时间戳，不能是 INVALID_EPOCH_MILLI
+     * @param end   结束的毫秒时间戳，不能是 INVALID_EPOCH_MILLI
+     */
+    public static long between(ChronoUnit unit, long start, long end) {
+        long startDay = Math.floorDiv(start, MILLIS_PER_DAY);
+        long startMillisOfDay = Math.floorMod(start, MILLIS_PER_DAY);
+        long endDay = Math.floorDiv(end, MILLIS_PER_DAY);
+        long endMillisOfDay = Math.floorMod(end, MILLIS_PER_DAY);
+        // 和 LocalDateTime.until 一样，结束时间的时刻不足开始时间的时刻时，不算满一天
+        if (endDay > startDay && endMillisOfDay < startMillisOfDay) {
+            endDay--;
+        } else if (endDay < startDay && endMillisOfDay > startMillisOfDay) {
+            endDay++;
+        }
+        return switch (unit) {
+            case DAYS -> endDay - startDay;
+            case MONTHS -> monthsBetween(startDay, endDay);
+            case YEARS -> monthsBetween(startDay, endDay) / 12;
+            default -> throw new IllegalArgumentException("Unsupported date difference unit: " + unit);
+        };
+    }
+
     /**
      * 封装解析逻辑，返回 Optional 以便链式调用。
      */
@@ -79,6 +180,169 @@ public class DateConverter {
         }
     }
 
+    /**
+     * 按位识别常见的三种格式，同时校验各个字段的范围
+     * 只识别格式化器解析结果完全确定的情况，其余情况（例如 2 月 30 日、24 点、带时区偏移）返回 FORMAT_UNKNOWN，交给格式化器处理
+     */
+    private static int detectFormat(String s) {
+        int length = s.length();
+        if (length < 10 || !isDigits(s, 0, 4) || s.charAt(4) != '-' || !isDigits(s, 5, 7) || s.charAt(7) != '-' || !isDigits(s, 8, 10)) {
+            return FORMAT_UNKNOWN;
+        }
+        int year = number(s, 0, 4);
+        int month = number(s, 5, 7);
+        int day = number(s, 8, 10);
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return FORMAT_UNKNOWN;
+        }
+        if (length == 10) {
+            return FORMAT_DATE;
+        }
+        if (length < 19 || !isDigits(s, 11, 13) || s.charAt(13) != ':' || !isDigits(s, 14, 16) || s.charAt(16) != ':' || !isDigits(s, 17, 19)) {
+            return FORMAT_UNKNOWN;
+        }
+        if (number(s, 11, 13) > 23 || number(s, 14, 16) > 59 || number(s, 17, 19) > 59) {
+            return FORMAT_UNKNOWN;
+        }
+        char separator = s.charAt(10);
+        if (separator == ' ') {
+            return length == 19 ? FORMAT_DATE_TIME : FORMAT_UNKNOWN;
+        }
+        if (separator != 'T' || s.charAt(length - 1) != 'Z') {
+            return FORMAT_UNKNOWN;
+        }
+        if (length == 20) {
+            return FORMAT_INSTANT;
+        }
+        // 小数部分为 1 到 9 位
+        if (length < 22 || length > 30 || s.charAt(19) != '.' || !isDigits(s, 20, length - 1)) {
+            return FORMAT_UNKNOWN;
+        }
+        return FORMAT_INSTANT;
+    }
+
+    /**
+     * 三个格式化器都要求以年份开头并且至少 10 个字符，不满足的字符串不可能解析成功
+     */
+    private static boolean mayBeDate(String s) {
+        if (s.length() < 10) {
+            return false;
+        }
+        char first = s.charAt(0);
+        return (first >= '0' && first <= '9') || first == '+' || first == '-';
+    }
+
+    private static int hour(String s, int format) {
+        return format == FORMAT_DATE ? 0 : number(s, 11, 13);
+    }
+
+    private static int minute(String s, int format) {
+        return format == FORMAT_DATE ? 0 : number(s, 14, 16);
+    }
+
+    private static int second(String s, int format) {
+        return format == FORMAT_DATE ? 0 : number(s, 17, 19);
+    }
+
+    private static int nanoOfSecond(String s, int format) {
+        if (format != FORMAT_INSTANT || s.length() == 20) {
+            return 0;
+        }
+        int end = s.length() - 1;
+        int nano = number(s, 20, end);
+        for (int i = end - 20; i < 9; i++) {
+            nano *= 10;
+        }
+        return nano;
+    }
+
+    private static boolean isDigits(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int number(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> Year.isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static long toEpochMilli(Instant instant) {
+        if (instant.getNano() % 1_000_000 != 0
+                || instant.getEpochSecond() < MIN_EPOCH_MILLI / 1000 || instant.getEpochSecond() > MAX_EPOCH_MILLI / 1000) {
+            return INVALID_EPOCH_MILLI;
+        }
+        return instant.getEpochSecond() * 1000L + instant.getNano() / 1_000_000;
+    }
+
+    private static long inRange(long epochMilli) {
+        return epochMilli < MIN_EPOCH_MILLI || epochMilli > MAX_EPOCH_MILLI ? INVALID_EPOCH_MILLI : epochMilli;
+    }
+
+    /**
+     * 和 LocalDate.toEpochDay 的算法一致，年份不小于 1
+     */
+    private static long epochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!Year.isLeap(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * 和 LocalDate.until(end, MONTHS) 的算法一致：按 (月份 * 32 + 日) 打包后相减
+     */
+    private static long monthsBetween(long startDay, long endDay) {
+        return (packedMonthDay(endDay) - packedMonthDay(startDay)) / 32;
+    }
+
+    /**
+     * 和 LocalDate.ofEpochDay 的算法一致，返回 (year * 12 + month - 1) * 32 + dayOfMonth
+     */
+    static long packedMonthDay(long epochDay) {
+        long zeroDay = epochDay + DAYS_0000_TO_1970 - 60;
+        long adjust = 0;
+        if (zeroDay < 0) {
+            long adjustCycles = (zeroDay + 1) / 146_097 - 1;
+            adjust = adjustCycles * 400;
+            zeroDay += -adjustCycles * 146_097;
+        }
+        long yearEst = (400 * zeroDay + 591) / 146_097;
+        long doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+        if (doyEst < 0) {
+            yearEst--;
+            doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+        }
+        yearEst += adjust;
+        int marchDoy0 = (int) doyEst;
+        int marchMonth0 = (marchDoy0 * 5 + 2) / 153;
+        int month = (marchMonth0 + 2) % 12 + 1;
+        int dayOfMonth = marchDoy0 - (marchMonth0 * 306 + 5) / 10 + 1;
+        long year = yearEst + marchMonth0 / 10;
+        return (year * 12 + month - 1) * 32 + dayOfMonth;
+    }
+
 
     public static void main(String[] args) {
         // 获取系统默认时区
@@ -0,0 +1,95 @@
+package com.yxw.expression.resolve.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 下划线命名为key的只读 Java Bean 视图，只有调用 get 时才读取对应的属性
+ * 表达式通常只用到一张表的一两个字段，不需要把整个对象的属性都复制一遍
+ * 读取属性时直接调用 getter，对象被修改后视图读到的也是新值
+ *
+ * @author luffytmac
+ */
+@Slf4j
+final class LazyBeanMap extends AbstractMap<String, Object> {
+
+    private final Object bean;
+
+    private final BeanPropertyAccessor accessor;
+
+    private Set<Entry<String, Object>> entrySet;
+
+    LazyBeanMap(Object bean, BeanPropertyAccessor accessor) {
+        this.bean = bean;
+        this.accessor = accessor;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String name)) {
+            return null;
+        }
+        try {
+            return accessor.read(bean, name);
+        } catch (Exception e) {
+            log.error("read bean property {} error {}", name, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String name && accessor.contains(name);
+    }
+
+    @Override
+    public int size() {
+        return accessor.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return accessor.size() == 0;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return accessor.names();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<Entry<String, Function<Object, Object>>> getters = accessor.getters().entrySet().iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return getters.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            String name = getters.next().getKey();
+                            return new SimpleImmutableEntry<>(name, get(name));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return accessor.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+}
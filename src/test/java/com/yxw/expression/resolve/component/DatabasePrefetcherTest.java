@@ -0,0 +1,81 @@
+package com.yxw.expression.resolve.component;
+
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 预取超时的查询不会被重复执行：求值用到这张表时等待进行中的查询；预取失败时求值用到再查询
+ *
+ * @author luffytmac
+ */
+class DatabasePrefetcherTest {
+
+    private static final Map<String, Object> CONTEXT = Map.of("table1_id", "1", "table2_id", "2");
+
+    private final FetchTableData fetchTableData = Mockito.mock(FetchTableData.class, Mockito.CALLS_REAL_METHODS);
+
+    private DatabasePrefetcher prefetcher;
+
+    private Map<EventTypeEnum, Set<String>> tables;
+
+    @BeforeEach
+    void setUp() {
+        // 超时 50 毫秒，使用线程池
+        prefetcher = new DatabasePrefetcher("eager", 4, 50, false);
+        ReflectionTestUtils.setField(prefetcher, "fetchTableData", fetchTableData);
+        Mockito.doReturn(Map.of("name", "two")).when(fetchTableData).fetchRow(eq(EventTypeEnum.TABLE2), eq("2"), any());
+        tables = new EnumMap<>(EventTypeEnum.class);
+        tables.put(EventTypeEnum.TABLE1, Set.of("status"));
+        tables.put(EventTypeEnum.TABLE2, Set.of("name"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        prefetcher.destroy();
+    }
+
+    @Test
+    void timedOutFetchIsAwaitedInsteadOfRepeated() {
+        Mockito.doAnswer(invocation -> {
+            Thread.sleep(300);
+            return Map.of("status", "ok");
+        }).when(fetchTableData).fetchRow(eq(EventTypeEnum.TABLE1), eq("1"), any());
+        FetchScope scope = new FetchScope();
+        prefetcher.prefetch(tables, CONTEXT, scope);
+        // 第一张表超时，最后一张表在调用线程上查询
+        assertThat(scope.getPrefetchCount()).isEqualTo(1);
+        assertThat(scope.contains(EventTypeEnum.TABLE1, "1")).isTrue();
+
+        assertThat(fetchTableData.fetchData(EventTypeEnum.TABLE1, CONTEXT, scope, Set.of("status"))).containsEntry("status", "ok");
+        assertThat(fetchTableData.fetchData(EventTypeEnum.TABLE1, CONTEXT, scope, Set.of("status"))).containsEntry("status", "ok");
+        Mockito.verify(fetchTableData, Mockito.times(1)).fetchRow(eq(EventTypeEnum.TABLE1), eq("1"), any());
+        assertThat(scope.getPrefetchCount()).isEqualTo(2);
+        assertThat(scope.getSavedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failedFetchIsRepeatedOnDemand() {
+        Mockito.doAnswer(invocation -> {
+            Thread.sleep(100);
+            throw new IllegalStateException("database is down");
+        }).doReturn(Map.of("status", "ok")).when(fetchTableData).fetchRow(eq(EventTypeEnum.TABLE1), eq("1"), any());
+        FetchScope scope = new FetchScope();
+        prefetcher.prefetch(tables, CONTEXT, scope);
+
+        assertThat(fetchTableData.fetchData(EventTypeEnum.TABLE1, CONTEXT, scope, Set.of("status"))).containsEntry("status", "ok");
+        Mockito.verify(fetchTableData, Mockito.times(2)).fetchRow(eq(EventTypeEnum.TABLE1), eq("1"), any());
+        assertThat(scope.getPrefetchCount()).isEqualTo(1);
+    }
+}
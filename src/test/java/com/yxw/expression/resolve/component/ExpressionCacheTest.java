@@ -0,0 +1,73 @@
+package com.yxw.expression.resolve.component;
+
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.yxw.expression.resolve.expression.compile.CompiledExpression;
+import com.yxw.expression.resolve.expression.compile.ExpressionCompiler;
+import com.yxw.expression.resolve.utils.JsonUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * 按照 token 流缓存：空白、转义写法不同的同一个表达式命中同一份编译结果，内容不同的表达式分别编译
+ *
+ * @author luffytmac
+ */
+class ExpressionCacheTest {
+
+    private static final String EXPRESSION = """
+            {"type":"CONDITION","comparison":"GREATER_THAN",
+             "left":{"source":"context","field":"amount"},"right":{"source":"literal","value":10}}""";
+
+    private final ExpressionCache cache = new ExpressionCache(100);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<MeterRegistry> provider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(provider.getIfAvailable(any())).thenReturn(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "expressionCompiler", new ExpressionCompiler());
+        ReflectionTestUtils.setField(cache, "serviceMetrics", new ServiceMetrics(provider, false));
+    }
+
+    @Test
+    void sameTokensHitSameCompile() throws IOException {
+        CompiledExpression first = cache.get(tokens(EXPRESSION));
+        assertThat(first).isNotNull();
+        // 空白和转义写法不同，token 流相同
+        String reformatted = EXPRESSION.replace("\n", "").replace(" ", "  ").replace("\"amount\"", "\"\\u0061mount\"");
+        assertThat(cache.get(tokens(reformatted))).isSameAs(first);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(first.evaluate(Map.of("amount", 11))).isTrue();
+    }
+
+    @Test
+    void differentTokensCompileSeparately() throws IOException {
+        CompiledExpression first = cache.get(tokens(EXPRESSION));
+        CompiledExpression value = cache.get(tokens(EXPRESSION.replace("10", "100")));
+        CompiledExpression field = cache.get(tokens(EXPRESSION.replace("amount", "amounts")));
+        // 字符串和数值的文本相同，token 类型不同
+        CompiledExpression stringValue = cache.get(tokens(EXPRESSION.replace("10", "\"10\"")));
+        assertThat(value).isNotSameAs(first);
+        assertThat(field).isNotSameAs(first);
+        assertThat(stringValue).isNotSameAs(first);
+        assertThat(value.evaluate(Map.of("amount", 11))).isFalse();
+        // 和内容相同的表达式json字符串分别缓存
+        assertThat(cache.get(EXPRESSION)).isNotSameAs(first);
+        assertThat(cache.size()).isEqualTo(5);
+    }
+
+    private static TokenBuffer tokens(String json) throws IOException {
+        return JsonUtils.getObjectMapper().readValue(json, TokenBuffer.class);
+    }
+}
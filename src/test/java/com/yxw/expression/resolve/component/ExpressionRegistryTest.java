@@ -0,0 +1,82 @@
+package com.yxw.expression.resolve.component;
+
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import com.yxw.expression.resolve.expression.compile.CompiledExpression;
+import com.yxw.expression.resolve.expression.compile.ExpressionCompiler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 注册表按照类型声明缓存编译后的表达式，类型声明超过上限时淘汰最久没有用到的
+ *
+ * @author luffytmac
+ */
+class ExpressionRegistryTest {
+
+    private static final String EXPRESSION = """
+            {"type":"CONDITION","comparison":"GREATER_THAN",
+             "left":{"source":"context","field":"amount"},"right":{"source":"literal","value":10}}""";
+
+    private final ExpressionRegistry registry = new ExpressionRegistry();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(registry, "expressionCompiler", new ExpressionCompiler());
+        registry.register("rule", "1", EXPRESSION);
+    }
+
+    @Test
+    void alternatingSchemasReuseTypedCompiles() {
+        ContextSchema number = ContextSchema.of("order", Map.of("amount", FieldTypeEnum.NUMBER));
+        ContextSchema string = ContextSchema.of("user", Map.of("amount", FieldTypeEnum.STRING));
+        CompiledExpression byNumber = registry.get("rule", number);
+        CompiledExpression byString = registry.get("rule", string);
+        assertThat(byNumber).isNotSameAs(byString);
+        for (int i = 0; i < 3; i++) {
+            assertThat(registry.get("rule", number)).isSameAs(byNumber);
+            assertThat(registry.get("rule", string)).isSameAs(byString);
+        }
+        // 内容相同的类型声明是同一个
+        assertThat(registry.get("rule", ContextSchema.of("order", Map.of("amount", FieldTypeEnum.NUMBER)))).isSameAs(byNumber);
+        assertThat(byNumber.evaluate(Map.of("amount", "11"))).isTrue();
+        assertThat(registry.get("rule", null)).isSameAs(registry.get("rule"));
+    }
+
+    @Test
+    void newVersionCompilesAgain() {
+        ContextSchema number = ContextSchema.of("order", Map.of("amount", FieldTypeEnum.NUMBER));
+        CompiledExpression first = registry.get("rule", number);
+        registry.register("rule", "2", EXPRESSION.replace("10", "20"));
+        CompiledExpression second = registry.get("rule", number);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.evaluate(Map.of("amount", 15))).isFalse();
+    }
+
+    @Test
+    void manySchemasEvictLeastRecentlyUsed() {
+        ContextSchema[] schemas = new ContextSchema[20];
+        CompiledExpression[] compiled = new CompiledExpression[schemas.length];
+        for (int i = 0; i < schemas.length; i++) {
+            schemas[i] = ContextSchema.of("caller" + i, Map.of("amount", FieldTypeEnum.NUMBER));
+            compiled[i] = registry.get("rule", schemas[i]);
+            // 第一个类型声明一直在使用，不会被淘汰
+            assertThat(registry.get("rule", schemas[0])).isSameAs(compiled[0]);
+        }
+        // 超过上限之后新的类型声明仍然缓存，不会每次都重新编译
+        for (int i = 0; i < 3; i++) {
+            assertThat(registry.get("rule", schemas[19])).isSameAs(compiled[19]);
+        }
+        assertThat(registry.get("rule", schemas[0])).isSameAs(compiled[0]);
+        // 最久没有用到的类型声明被淘汰，再次用到时重新编译
+        CompiledExpression recompiled = registry.get("rule", schemas[1]);
+        assertThat(recompiled).isNotSameAs(compiled[1]);
+        assertThat(recompiled.evaluate(Map.of("amount", 11))).isTrue();
+        assertThat(registry.get("rule", schemas[1])).isSameAs(recompiled);
+    }
+}
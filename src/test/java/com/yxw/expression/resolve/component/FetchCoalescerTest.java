@@ -0,0 +1,126 @@
+package com.yxw.expression.resolve.component;
+
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.strategycore.IStrategy;
+import com.yxw.expression.resolve.strategycore.StrategyChangedEvent;
+import com.yxw.expression.resolve.strategycore.StrategyContext;
+import com.yxw.expression.resolve.strategycore.handler.EventHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 查询合并：没有其他查询时不等待时间窗口，并发查询合并成一次 findByKeys，批次统计记录在 ServiceMetrics 中，
+ * 不支持批量查询的表在 EventHandler 变化后重新判断
+ *
+ * @author luffytmac
+ */
+class FetchCoalescerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final EventHandler handler = Mockito.mock(EventHandler.class);
+
+    private FetchCoalescer coalescer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<MeterRegistry> provider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(provider.getIfAvailable(any())).thenReturn(registry);
+        StrategyContext strategyContext = Mockito.mock(StrategyContext.class);
+        Mockito.when(strategyContext.get(eq(EventHandler.class), any(EventTypeEnum.class))).thenReturn(handler);
+        Mockito.when(handler.findByKeys(anyCollection())).thenAnswer(invocation -> {
+            Map<String, Object> rows = new HashMap<>();
+            for (String key : invocation.<Collection<String>>getArgument(0)) {
+                rows.put(key, "row-" + key);
+            }
+            return rows;
+        });
+        // 时间窗口为 1 秒，直接查询时不会等待这么久
+        coalescer = new FetchCoalescer(true, 1_000_000, 100, 2);
+        ReflectionTestUtils.setField(coalescer, "strategyContext", strategyContext);
+        ReflectionTestUtils.setField(coalescer, "serviceMetrics", new ServiceMetrics(provider, false));
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.destroy();
+    }
+
+    @Test
+    void singleLoadDoesNotWaitForWindow() {
+        long start = System.nanoTime();
+        assertThat(coalescer.load(EventTypeEnum.TABLE1, "1", null)).isEqualTo("row-1");
+        assertThat(coalescer.load(EventTypeEnum.TABLE1, "2", null)).isEqualTo("row-2");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(500);
+        assertThat(registry.get("expression.fetch.batch.size").tag("table", "table1").summary().count()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentLoadsAreBatched() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 第一次查询阻塞住，之后的查询在时间窗口内攒成一批
+        Mockito.when(handler.findByKeys(eq(List.of("0")))).thenAnswer(invocation -> {
+            blocked.countDown();
+            release.await();
+            return Map.of("0", "row-0");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            Future<Object> first = executor.submit(() -> coalescer.load(EventTypeEnum.TABLE1, "0", null));
+            assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+            List<Future<Object>> others = new ArrayList<>();
+            for (int i = 1; i <= 5; i++) {
+                String key = String.valueOf(i);
+                others.add(executor.submit(() -> coalescer.load(EventTypeEnum.TABLE1, key, null)));
+            }
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("row-0");
+            for (int i = 0; i < others.size(); i++) {
+                assertThat(others.get(i).get(5, TimeUnit.SECONDS)).isEqualTo("row-" + (i + 1));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(registry.get("expression.fetch.batch.size").tag("table", "table1").summary().max()).isEqualTo(5);
+    }
+
+    @Test
+    void handlerChangeRetriesBatchLoading() {
+        Mockito.when(handler.findByKeys(anyCollection())).thenReturn(null);
+        Mockito.when(handler.findByKey("1")).thenReturn("row-1");
+        assertThat(coalescer.load(EventTypeEnum.TABLE1, "1", null)).isEqualTo("row-1");
+        assertThat(coalescer.isCoalescing(EventTypeEnum.TABLE1)).isFalse();
+        assertThat(coalescer.isCoalescing(EventTypeEnum.TABLE2)).isTrue();
+
+        // 其他策略接口的变化不影响
+        coalescer.onStrategyChanged(new StrategyChangedEvent(IStrategy.class, handler, true));
+        assertThat(coalescer.isCoalescing(EventTypeEnum.TABLE1)).isFalse();
+        // 新的 EventHandler 可能支持批量查询，重新判断
+        coalescer.onStrategyChanged(new StrategyChangedEvent(EventHandler.class, handler, true));
+        assertThat(coalescer.isCoalescing(EventTypeEnum.TABLE1)).isTrue();
+    }
+}
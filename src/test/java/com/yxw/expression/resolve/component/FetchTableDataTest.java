@@ -0,0 +1,162 @@
+package com.yxw.expression.resolve.component;
+
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.enums.base.BaseEnum;
+import com.yxw.expression.resolve.strategycore.IStrategy;
+import com.yxw.expression.resolve.strategycore.StrategyChangedEvent;
+import com.yxw.expression.resolve.strategycore.StrategyContext;
+import com.yxw.expression.resolve.strategycore.handler.EventHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * 运行时注册、注销 EventHandler 后，丢弃涉及的表中由旧策略查询出来的缓存，其他表的缓存保留；默认策略变化时丢弃所有的缓存
+ *
+ * @author luffytmac
+ */
+class FetchTableDataTest {
+
+    private final StrategyContext strategyContext = new StrategyContext();
+
+    private final FetchTableData fetchTableData = new FetchTableData();
+
+    private final RowHandler table1 = new RowHandler("old", false, EventTypeEnum.TABLE1);
+
+    private final RowHandler table2 = new RowHandler("two", false, EventTypeEnum.TABLE2);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<MeterRegistry> provider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(provider.getIfAvailable(any())).thenReturn(new SimpleMeterRegistry());
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("expression.table-cache.default.max-size", "100")
+                .withProperty("expression.table-cache.default.negative-ttl-ms", "60000");
+        ReflectionTestUtils.setField(fetchTableData, "strategyContext", strategyContext);
+        ReflectionTestUtils.setField(fetchTableData, "environment", environment);
+        ReflectionTestUtils.setField(fetchTableData, "serviceMetrics", new ServiceMetrics(provider, false));
+        fetchTableData.init();
+        // 和 Spring 中一样，注册、注销策略后同步通知监听者
+        strategyContext.setApplicationEventPublisher(event -> fetchTableData.onStrategyChanged((StrategyChangedEvent) event));
+        strategyContext.register(table1);
+        strategyContext.register(table2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fetchTableData.destroy();
+    }
+
+    @Test
+    void replacedHandlerDropsOnlyItsTables() {
+        assertThat(fetchTableData.fetchRow(EventTypeEnum.TABLE1, "1")).containsEntry("name", "old-1");
+        assertThat(fetchTableData.fetchRow(EventTypeEnum.TABLE2, "1")).containsEntry("name", "two-1");
+
+        RowHandler replacement = new RowHandler("new", false, EventTypeEnum.TABLE1);
+        strategyContext.register(replacement);
+        // 先注册的策略仍然命中，缓存虽然被丢弃，重新查询的结果不变
+        assertThat(fetchTableData.fetchRow(EventTypeEnum.TABLE1, "1")).containsEntry("name", "old-1");
+        assertThat(table1.loads).hasValue(2);
+
+        strategyContext.unregister(table1);
+        assertThat(fetchTableData.fetchRow(EventTypeEnum.TABLE1, "1")).containsEntry("name", "new-1");
+        assertThat(fetchTableData.fetchRow(EventTypeEnum.TABLE1, "1")).containsEntry("name", "new-1");
+        assertThat(replacement.loads).hasValue(1);
+        // TABLE2 的缓存没有被丢弃
+        assertThat(fetchTableData.fetchRow(EventTypeEnum.TABLE2, "1")).containsEntry("name", "two-1");
+        assertThat(table2.loads).hasValue(1);
+    }
+
+    @Test
+    void defaultHandlerDropsAllTables() {
+        fetchTableData.fetchRow(EventTypeEnum.TABLE1, "1");
+        fetchTableData.fetchRow(EventTypeEnum.TABLE2, "1");
+        strategyContext.register(new RowHandler("default", true));
+        fetchTableData.fetchRow(EventTypeEnum.TABLE1, "1");
+        fetchTableData.fetchRow(EventTypeEnum.TABLE2, "1");
+        assertThat(table1.loads).hasValue(2);
+        assertThat(table2.loads).hasValue(2);
+    }
+
+    @Test
+    void otherStrategyTypesAreIgnored() {
+        fetchTableData.fetchRow(EventTypeEnum.TABLE1, "1");
+        strategyContext.register(new OtherStrategy());
+        fetchTableData.fetchRow(EventTypeEnum.TABLE1, "1");
+        assertThat(table1.loads).hasValue(1);
+    }
+
+    public interface Other extends IStrategy {
+    }
+
+    static final class OtherStrategy implements Other {
+
+        @Override
+        public BaseEnum[][] launchConditions() {
+            return new BaseEnum[][]{{EventTypeEnum.TABLE1}};
+        }
+    }
+
+    static final class RowHandler implements EventHandler {
+
+        private final String name;
+
+        private final boolean defaultStrategy;
+
+        private final EventTypeEnum[] events;
+
+        private final AtomicInteger loads = new AtomicInteger();
+
+        RowHandler(String name, boolean defaultStrategy, EventTypeEnum... events) {
+            this.name = name;
+            this.defaultStrategy = defaultStrategy;
+            this.events = events;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T findByKey(String keyId) {
+            loads.incrementAndGet();
+            return (T) new Row(name + "-" + keyId);
+        }
+
+        @Override
+        public BaseEnum[][] launchConditions() {
+            BaseEnum[][] conditions = new BaseEnum[events.length][];
+            for (int i = 0; i < events.length; i++) {
+                conditions[i] = new BaseEnum[]{events[i]};
+            }
+            return conditions;
+        }
+
+        @Override
+        public boolean isDefault() {
+            return defaultStrategy;
+        }
+    }
+
+    public static final class Row {
+
+        private final String name;
+
+        Row(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
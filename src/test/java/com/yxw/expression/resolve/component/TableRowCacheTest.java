@@ -0,0 +1,105 @@
+package com.yxw.expression.resolve.component;
+
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 表数据缓存：每个唯一键只缓存一条数据，按照读取过的字段的并集查询，失效一个唯一键只删除这一条
+ *
+ * @author luffytmac
+ */
+class TableRowCacheTest {
+
+    private final List<String> loads = new ArrayList<>();
+
+    private TableRowCache cache;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("expression.table-cache.default.max-size", "100")
+                .withProperty("expression.table-cache.default.negative-ttl-ms", "60000");
+        cache = TableRowCache.create(EventTypeEnum.TABLE1, environment, (key, fields) -> {
+            loads.add(key + (fields == null ? "" : new HashSet<>(fields).toString()));
+            return key.startsWith("missing") ? null : new Row(key);
+        }, Runnable::run);
+    }
+
+    @Test
+    void differentFieldsShareOneRow() {
+        assertThat(cache.get("1", Set.of("alpha"))).containsEntry("alpha", "1-alpha");
+        // 新的字段：按照并集重新查询一次
+        assertThat(cache.get("1", Set.of("beta"))).containsEntry("beta", "1-beta");
+        assertThat(cache.get("1", Set.of("alpha"))).containsEntry("alpha", "1-alpha");
+        assertThat(cache.get("1", Set.of("alpha", "beta"))).containsKeys("alpha", "beta");
+        // 其他唯一键直接按照并集查询
+        assertThat(cache.get("2", Set.of("alpha"))).containsEntry("alpha", "2-alpha");
+        assertThat(cache.get("2", Set.of("beta"))).containsEntry("beta", "2-beta");
+        assertThat(loads).containsExactly("1[alpha]", "1[alpha, beta]", "2[alpha, beta]");
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("2", Set.of("alpha"))).doesNotContainKey("gamma");
+    }
+
+    @Test
+    void wholeRowRequestLoadsAllFieldsFromThenOn() {
+        cache.get("1", Set.of("alpha"));
+        assertThat(cache.get("1", null)).containsKeys("alpha", "beta", "gamma");
+        cache.get("1", Set.of("beta"));
+        cache.get("2", Set.of("beta"));
+        assertThat(loads).containsExactly("1[alpha]", "1", "2");
+    }
+
+    @Test
+    void invalidateRemovesOnlyThatKey() {
+        cache.get("1", Set.of("alpha"));
+        cache.get("2", Set.of("alpha"));
+        cache.invalidate("1");
+        assertThat(cache.size()).isEqualTo(1);
+        cache.get("1", Set.of("alpha"));
+        cache.get("2", Set.of("alpha"));
+        assertThat(loads).containsExactly("1[alpha]", "2[alpha]", "1[alpha]");
+    }
+
+    @Test
+    void missingRowIsNotReloadedForNewFields() {
+        assertThat(cache.get("missing", Set.of("alpha"))).isEmpty();
+        assertThat(cache.get("missing", Set.of("beta"))).isEmpty();
+        assertThat(loads).containsExactly("missing[alpha]");
+    }
+
+    @Test
+    void emptyResultIsReturnedAsMap() {
+        assertThat(cache.get("1", Set.of("unknown"))).isEqualTo(Map.of());
+    }
+
+    public static final class Row {
+
+        private final String key;
+
+        Row(String key) {
+            this.key = key;
+        }
+
+        public String getAlpha() {
+            return key + "-alpha";
+        }
+
+        public String getBeta() {
+            return key + "-beta";
+        }
+
+        public String getGamma() {
+            return key + "-gamma";
+        }
+    }
+}
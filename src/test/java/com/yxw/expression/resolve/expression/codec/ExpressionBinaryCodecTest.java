@@ -0,0 +1,220 @@
+package com.yxw.expression.resolve.expression.codec;
+
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ConditionNode;
+import com.yxw.expression.resolve.expression.LogicNode;
+import com.yxw.expression.resolve.expression.Operand;
+import com.yxw.expression.resolve.request.EvaluationRequest;
+import com.yxw.expression.resolve.utils.JsonUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 二进制格式的编码、解码：和表达式json无损互转，格式错误（截断、损坏、嵌套过深）时只抛出 IllegalArgumentException
+ *
+ * @author luffytmac
+ */
+class ExpressionBinaryCodecTest {
+
+    @Test
+    void roundTripKeepsJson() {
+        BaseNode expression = expression();
+        byte[] binary = ExpressionBinaryCodec.encode(expression);
+        assertThat(JsonUtils.toJson(ExpressionBinaryCodec.decode(binary))).isEqualTo(JsonUtils.toJson(expression));
+        // 再次编码得到同样的二进制
+        assertThat(ExpressionBinaryCodec.encode(ExpressionBinaryCodec.decode(binary))).isEqualTo(binary);
+    }
+
+    @Test
+    void roundTripKeepsValueTypes() {
+        Object[] values = {"text", "", "AND", 1, -1, Integer.MAX_VALUE, 1L, Long.MIN_VALUE, new BigInteger("123456789012345678901234567890"),
+                1.5, -0.0, Double.NaN, new BigDecimal("1.10"), true, false, Map.of("k", 1), List.of(1, "a"), null};
+        for (Object value : values) {
+            ConditionNode node = condition(operand("literal", null, null, value), "EQUAL", operand("context", null, "a", null));
+            ConditionNode decoded = (ConditionNode) ExpressionBinaryCodec.decode(ExpressionBinaryCodec.encode(node));
+            Object actual = decoded.getLeft().getValue();
+            assertThat(actual).isEqualTo(value);
+            if (value != null) {
+                assertThat(actual).isInstanceOf(value instanceof Map ? Map.class : value instanceof List ? List.class : value.getClass());
+            }
+        }
+    }
+
+    @Test
+    void decodesSliceWithoutMovingPosition() {
+        byte[] binary = ExpressionBinaryCodec.encode(expression());
+        byte[] padded = new byte[binary.length + 10];
+        System.arraycopy(binary, 0, padded, 5, binary.length);
+        ByteBuffer buffer = ByteBuffer.wrap(padded).position(5).limit(5 + binary.length);
+        BaseNode decoded = ExpressionBinaryCodec.decode(buffer.asReadOnlyBuffer());
+        assertThat(JsonUtils.toJson(decoded)).isEqualTo(JsonUtils.toJson(expression()));
+        assertThat(buffer.position()).isEqualTo(5);
+    }
+
+    @Test
+    void requestRoundTrip() {
+        byte[] expression = ExpressionBinaryCodec.encode(expression());
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("a", 5);
+        context.put("b", "text");
+        context.put("c", null);
+        context.put("d", 1.5);
+        EvaluationRequest request = ExpressionBinaryCodec.decodeRequest(ExpressionBinaryCodec.encodeRequest(expression, context));
+        assertThat(request.getExpressionBinary()).isEqualTo(expression);
+        assertThat(request.getContext()).isEqualTo(context);
+
+        EvaluationRequest empty = ExpressionBinaryCodec.decodeRequest(ExpressionBinaryCodec.encodeRequest(expression, null));
+        assertThat(empty.getContext()).isNull();
+    }
+
+    @Test
+    void rejectsTruncatedInput() {
+        byte[] binary = ExpressionBinaryCodec.encode(expression());
+        for (int length = 0; length < binary.length; length++) {
+            byte[] truncated = Arrays.copyOf(binary, length);
+            assertThatThrownBy(() -> ExpressionBinaryCodec.decode(truncated)).as("length %d", length)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        byte[] request = ExpressionBinaryCodec.encodeRequest(binary, Map.of("a", 1, "b", "text"));
+        for (int length = 0; length < request.length; length++) {
+            byte[] truncated = Arrays.copyOf(request, length);
+            assertThatThrownBy(() -> ExpressionBinaryCodec.decodeRequest(truncated)).as("length %d", length)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void rejectsMalformedHeaderAndTrailingBytes() {
+        byte[] binary = ExpressionBinaryCodec.encode(expression());
+        byte[] badMagic = binary.clone();
+        badMagic[0] = '{';
+        assertThatThrownBy(() -> ExpressionBinaryCodec.decode(badMagic)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Not an expression binary");
+        byte[] badVersion = binary.clone();
+        badVersion[2] = 2;
+        assertThatThrownBy(() -> ExpressionBinaryCodec.decode(badVersion)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("version");
+        byte[] trailing = Arrays.copyOf(binary, binary.length + 1);
+        assertThatThrownBy(() -> ExpressionBinaryCodec.decode(trailing)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("trailing");
+    }
+
+    /**
+     * 损坏的二进制要么能解码，要么抛出 IllegalArgumentException，不会抛出其他异常
+     */
+    @Test
+    void corruptInputOnlyThrowsIllegalArgument() {
+        byte[] binary = ExpressionBinaryCodec.encode(expression());
+        Random random = new Random(42);
+        for (int i = 3; i < binary.length; i++) {
+            for (int value : new int[]{0x00, 0x01, 0x7F, 0x80, 0xFF, random.nextInt(256)}) {
+                byte[] corrupt = binary.clone();
+                corrupt[i] = (byte) value;
+                decodeOrReject(corrupt);
+            }
+        }
+        for (int i = 0; i < 2000; i++) {
+            byte[] corrupt = binary.clone();
+            for (int j = 0; j < 4; j++) {
+                corrupt[3 + random.nextInt(binary.length - 3)] = (byte) random.nextInt(256);
+            }
+            decodeOrReject(corrupt);
+        }
+    }
+
+    @Test
+    void rejectsNestingDeeperThanLimit() {
+        assertThat(ExpressionBinaryCodec.decode(nested(ExpressionBinaryCodec.MAX_DEPTH - 1))).isInstanceOf(LogicNode.class);
+        for (int depth : new int[]{ExpressionBinaryCodec.MAX_DEPTH, 100_000}) {
+            assertThatThrownBy(() -> ExpressionBinaryCodec.decode(nested(depth))).isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("nested deeper");
+        }
+    }
+
+    private static void decodeOrReject(byte[] binary) {
+        try {
+            ExpressionBinaryCodec.decode(binary);
+        } catch (IllegalArgumentException e) {
+            // 格式错误
+        }
+    }
+
+    /**
+     * depth 层只有一个子节点的 AND 逻辑节点，最内层的子节点为 null，直接按照格式拼出来，不经过递归的编码
+     */
+    private static byte[] nested(int depth) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(0xFE);
+        output.write(0xE1);
+        output.write(ExpressionBinaryCodec.VERSION);
+        // 常量池为空
+        output.write(0);
+        for (int i = 0; i < depth; i++) {
+            // LOGIC、内置字符串 AND、一个子节点
+            output.write(1);
+            output.write(1);
+            output.write(2);
+        }
+        output.write(0);
+        return output.toByteArray();
+    }
+
+    private static BaseNode expression() {
+        LogicNode inner = logic("OR",
+                condition(operand("database", "table1", "amount", null), "GREATER_THAN", operand("literal", null, null, 100)),
+                condition(operand("context", null, "created_at", null), "DIFFERENCE_IN_DAYS",
+                        operand("literal", null, null, "2024-02-29"), 30, "LESS_THAN"),
+                null);
+        LogicNode nullChildren = new LogicNode();
+        nullChildren.setOperator("AND");
+        return logic("AND",
+                condition(operand("context", null, "name", null), "CONTAINS", operand("literal", null, null, "中文")),
+                condition(operand("context", null, "name", null), "custom", null),
+                condition(operand("context", null, "score", null), "EQUAL", operand("literal", null, null, 1.5)),
+                condition(operand("context", null, "score", null), "NOT_EQUAL", operand("literal", null, null, 100)),
+                inner, nullChildren);
+    }
+
+    private static LogicNode logic(String operator, BaseNode... children) {
+        LogicNode node = new LogicNode();
+        node.setOperator(operator);
+        node.setChildren(new ArrayList<>(Arrays.asList(children)));
+        return node;
+    }
+
+    private static ConditionNode condition(Operand left, String comparison, Operand right) {
+        return condition(left, comparison, right, null, null);
+    }
+
+    private static ConditionNode condition(Operand left, String comparison, Operand right, Number value, String valueComparison) {
+        ConditionNode node = new ConditionNode();
+        node.setLeft(left);
+        node.setComparison(comparison);
+        node.setRight(right);
+        node.setValue(value);
+        node.setValueComparison(valueComparison);
+        return node;
+    }
+
+    private static Operand operand(String source, String table, String field, Object value) {
+        Operand operand = new Operand();
+        operand.setSource(source);
+        operand.setTable(table);
+        operand.setField(field);
+        operand.setValue(value);
+        return operand;
+    }
+}
@@ -0,0 +1,384 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.google.common.hash.HashCode;
+import com.yxw.expression.resolve.enums.ComparisonEnum;
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ConditionEvaluator;
+import com.yxw.expression.resolve.expression.ConditionNode;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import com.yxw.expression.resolve.expression.LogicNode;
+import com.yxw.expression.resolve.expression.Operand;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 编译后的表达式和 ConditionEvaluator 解释执行的结果一致：节点树、字节码、自适应排序、按下标保存字段的上下文、类型声明
+ * 结果包括抛出异常（非法的逻辑节点），解释执行和编译执行都应该在同样的情况下抛出
+ *
+ * @author luffytmac
+ */
+class CompiledEquivalenceTest {
+
+    private static final HashCode HASH = HashCode.fromLong(1L);
+
+    private static final String ERROR = "error";
+
+    /**
+     * 上下文字段的取值：数值的各种类型、数值字符串、普通字符串、空字符串、布尔、日期字符串、null
+     */
+    private static final Object[] VALUES = {5, 5L, 5.0, 7.5, -3, "5", "abc", "ab", "", true, "2024-02-29",
+            "2024-03-01 10:00:00", "2023-12-31T23:59:59", null};
+
+    private static final Object[] LITERALS = {5, 5.0, "5", "abc", "b", "", true, "2024-02-29", "2023-01-31", null};
+
+    private static final String[] VALUE_COMPARISONS = {"GREATER_THAN", "LESS_THAN", "EQUAL", "GREATER_THAN_OR_EQUAL", null};
+
+    private final ConditionEvaluator interpreter = new ConditionEvaluator();
+
+    private final ExpressionCompiler compiler = new ExpressionCompiler();
+
+    @BeforeEach
+    void setUp() {
+        configure(0, false);
+    }
+
+    @Test
+    void conditionsMatchInterpreter() {
+        List<Map<String, Object>> contexts = contexts();
+        for (ConditionNode condition : conditions()) {
+            CompiledExpression compiled = compiler.compile(HASH, condition);
+            for (Map<String, Object> context : contexts) {
+                assertSame(condition, context, compiled);
+            }
+        }
+    }
+
+    @Test
+    void bytecodeTierMatchesInterpreter() {
+        configure(1, false);
+        List<Map<String, Object>> contexts = contexts();
+        for (ConditionNode condition : conditions()) {
+            LogicNode root = or(and(condition, condition), condition("c", "EQUAL", "x"));
+            CompiledExpression compiled = compiler.compile(HASH, root);
+            for (Map<String, Object> context : contexts) {
+                assertSame(root, context, compiled);
+            }
+            assertThat(compiled.getTier()).isEqualTo(ExpressionTier.BYTECODE);
+        }
+    }
+
+    @Test
+    void emptyAndMissingContextsMatchInterpreter() {
+        List<BaseNode> roots = List.of(
+                condition("a", "IS_NULL", null),
+                condition("a", "IS_NOT_NULL", null),
+                condition("zz", "IS_NULL", null),
+                literalLeft(null, "EQUAL", "a"),
+                literalLeft(5, "EQUAL", "a"),
+                and(condition("a", "IS_NULL", null), literalLeft(null, "IS_NULL", "a")),
+                or(condition("zz", "EQUAL", 5), condition("a", "NOT_EQUAL", 5)));
+        List<Map<String, Object>> contexts = new ArrayList<>();
+        contexts.add(null);
+        contexts.add(new HashMap<>());
+        contexts.add(map("b", 5));
+        contexts.add(map("a", null));
+        contexts.add(map("a", 5));
+        for (BaseNode root : roots) {
+            CompiledExpression compiled = compiler.compile(HASH, root);
+            for (Map<String, Object> context : contexts) {
+                assertSame(root, context, compiled);
+            }
+        }
+    }
+
+    @Test
+    void dateDifferenceMatchesInterpreter() {
+        String[] dates = {"2024-02-29", "2024-03-01 10:00:00", "2023-02-28", "2020-02-29", "2024-01-31", "2023-12-31T23:59:59",
+                "not a date", null};
+        List<Map<String, Object>> contexts = new ArrayList<>();
+        for (String left : dates) {
+            for (String right : dates) {
+                contexts.add(map("a", left, "b", right));
+            }
+        }
+        for (String comparison : List.of("DIFFERENCE_IN_YEARS", "DIFFERENCE_IN_MONTHS", "DIFFERENCE_IN_DAYS", "DIFFERENCE_IN_VALUE")) {
+            for (String valueComparison : VALUE_COMPARISONS) {
+                for (Number value : new Number[]{0, 1, 2.5, -1, null}) {
+                    List<ConditionNode> nodes = List.of(
+                            difference(operand("context", "a"), comparison, operand("context", "b"), value, valueComparison),
+                            difference(operand("context", "a"), comparison, literal("2024-02-29"), value, valueComparison),
+                            difference(literal("2024-02-29"), comparison, operand("context", "b"), value, valueComparison));
+                    for (ConditionNode node : nodes) {
+                        CompiledExpression compiled = compiler.compile(HASH, node);
+                        for (Map<String, Object> context : contexts) {
+                            assertSame(node, context, compiled);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void failingNodesPropagateLikeInterpreter() {
+        LogicNode xor = logic("XOR", condition("a", "EQUAL", 5));
+        LogicNode nullChildren = logic("AND");
+        nullChildren.setChildren(null);
+        LogicNode nullChild = logic("OR");
+        nullChild.setChildren(Arrays.asList(condition("a", "EQUAL", 5), null));
+        List<BaseNode> roots = List.of(xor, nullChildren, nullChild,
+                and(condition("a", "EQUAL", 5), xor),
+                or(condition("a", "EQUAL", 5), xor),
+                and(xor, condition("a", "EQUAL", 5)),
+                or(nullChildren, condition("a", "EQUAL", 5)),
+                and(or(condition("a", "EQUAL", 6), nullChild), condition("b", "EQUAL", 1)));
+        List<Map<String, Object>> contexts = List.of(map("a", 5, "b", 1), map("a", 6, "b", 1), map("a", 7), new HashMap<>());
+        for (int threshold : new int[]{0, 1}) {
+            for (boolean reorder : new boolean[]{false, true}) {
+                configure(threshold, reorder);
+                ReflectionTestUtils.setField(compiler, "reorderSampleInterval", 1);
+                ReflectionTestUtils.setField(compiler, "reorderMinSamples", 1);
+                for (BaseNode root : roots) {
+                    CompiledExpression compiled = compiler.compile(HASH, root);
+                    // 多次求值，开启自适应排序时会在中途调整子节点的顺序
+                    for (int i = 0; i < 50; i++) {
+                        for (Map<String, Object> context : contexts) {
+                            assertSame(root, context, compiled);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void reorderedChildrenMatchInterpreter() {
+        configure(0, true);
+        ReflectionTestUtils.setField(compiler, "reorderSampleInterval", 1);
+        ReflectionTestUtils.setField(compiler, "reorderSamples", 8);
+        ReflectionTestUtils.setField(compiler, "reorderMinSamples", 1);
+        Random random = new Random(42);
+        List<ConditionNode> conditions = conditions();
+        for (int i = 0; i < 50; i++) {
+            BaseNode root = randomTree(random, conditions, 3);
+            CompiledExpression compiled = compiler.compile(HASH, root);
+            for (int j = 0; j < 200; j++) {
+                assertSame(root, randomContext(random), compiled);
+            }
+        }
+    }
+
+    @Test
+    void slotContextMatchesMapContext() {
+        Random random = new Random(7);
+        List<ConditionNode> conditions = conditions();
+        for (int i = 0; i < 50; i++) {
+            BaseNode root = randomTree(random, conditions, 3);
+            CompiledExpression compiled = compiler.compile(HASH, root);
+            SlotContext slots = compiled.newSlotContext();
+            for (int j = 0; j < 200; j++) {
+                Map<String, Object> context = randomContext(random);
+                String expected = outcome(() -> interpreter.evaluate(root, context));
+                String actual = outcome(() -> compiled.evaluate(slots.clear().setAll(context)));
+                assertThat(actual).as("%s with %s", root, context).isEqualTo(expected);
+            }
+        }
+    }
+
+    /**
+     * 上下文的值和字面量已经是声明的类型时，类型声明不改变结果
+     */
+    @Test
+    void typedComparatorsMatchInterpreterForCanonicalValues() {
+        ContextSchema schema = ContextSchema.of("test", Map.of("a", FieldTypeEnum.NUMBER, "b", FieldTypeEnum.NUMBER,
+                "s", FieldTypeEnum.STRING, "t", FieldTypeEnum.STRING));
+        Object[] numbers = {1.0, 5.0, 7.5, -3.0, null};
+        Object[] strings = {"abc", "ab", "", "b", null};
+        List<Map<String, Object>> contexts = new ArrayList<>();
+        for (Object a : numbers) {
+            for (Object b : numbers) {
+                for (int k = 0; k < strings.length; k++) {
+                    contexts.add(map("a", a, "b", b, "s", strings[k], "t", strings[(k + 1) % strings.length]));
+                }
+            }
+        }
+        for (String comparison : List.of("EQUAL", "NOT_EQUAL", "GREATER_THAN", "LESS_THAN", "GREATER_THAN_OR_EQUAL", "LESS_THAN_OR_EQUAL")) {
+            List<ConditionNode> nodes = new ArrayList<>();
+            nodes.add(node(operand("context", "a"), comparison, operand("context", "b")));
+            nodes.add(node(operand("context", "s"), comparison, operand("context", "t")));
+            nodes.add(node(operand("context", "a"), comparison, literal(5.0)));
+            nodes.add(node(literal(5.0), comparison, operand("context", "b")));
+            nodes.add(node(operand("context", "s"), comparison, literal("ab")));
+            nodes.add(node(literal("ab"), comparison, operand("context", "t")));
+            for (ConditionNode node : nodes) {
+                CompiledExpression compiled = compiler.compile(HASH, node, schema);
+                for (Map<String, Object> context : contexts) {
+                    assertSame(node, context, compiled);
+                }
+            }
+        }
+    }
+
+    private void configure(int tierThreshold, boolean reorderEnabled) {
+        ReflectionTestUtils.setField(compiler, "tierThreshold", tierThreshold);
+        ReflectionTestUtils.setField(compiler, "reorderEnabled", reorderEnabled);
+        ReflectionTestUtils.setField(compiler, "reorderSampleInterval", 16);
+        ReflectionTestUtils.setField(compiler, "reorderSamples", 256);
+        ReflectionTestUtils.setField(compiler, "reorderMinSamples", 16);
+    }
+
+    private void assertSame(BaseNode root, Map<String, Object> context, CompiledExpression compiled) {
+        String expected = outcome(() -> interpreter.evaluate(root, context));
+        String actual = outcome(() -> compiled.evaluate(context));
+        assertThat(actual).as("%s with %s", root, context).isEqualTo(expected);
+    }
+
+    /**
+     * 求值结果，抛出异常时为 error
+     */
+    private static String outcome(BooleanSupplier evaluation) {
+        try {
+            return String.valueOf(evaluation.getAsBoolean());
+        } catch (RuntimeException e) {
+            return ERROR;
+        }
+    }
+
+    /**
+     * 每个比较符和字面量在右边、字面量在左边、两边都是上下文字段、字段不存在的组合
+     */
+    private static List<ConditionNode> conditions() {
+        List<ConditionNode> conditions = new ArrayList<>();
+        List<String> comparisons = new ArrayList<>();
+        for (ComparisonEnum comparison : ComparisonEnum.values()) {
+            comparisons.add(comparison.getCode());
+        }
+        comparisons.add("equal");
+        comparisons.add("UNKNOWN");
+        comparisons.add(null);
+        for (String comparison : comparisons) {
+            boolean difference = comparison != null && comparison.startsWith("DIFFERENCE_IN_");
+            for (String valueComparison : difference ? VALUE_COMPARISONS : new String[]{null}) {
+                Number value = difference ? 1 : null;
+                for (Object literal : LITERALS) {
+                    conditions.add(difference(operand("context", "a"), comparison, literal(literal), value, valueComparison));
+                    conditions.add(difference(literal(literal), comparison, operand("context", "a"), value, valueComparison));
+                }
+                conditions.add(difference(operand("context", "a"), comparison, operand("context", "b"), value, valueComparison));
+                conditions.add(difference(operand("context", "a"), comparison, operand("context", "zz"), value, valueComparison));
+                conditions.add(difference(literal(5), comparison, literal("5"), value, valueComparison));
+                conditions.add(difference(operand("context", "a"), comparison, null, value, valueComparison));
+            }
+        }
+        return conditions;
+    }
+
+    /**
+     * 两个字段所有取值的组合，加上缺少字段、空上下文、null 上下文
+     */
+    private static List<Map<String, Object>> contexts() {
+        List<Map<String, Object>> contexts = new ArrayList<>();
+        for (Object a : VALUES) {
+            for (Object b : VALUES) {
+                contexts.add(map("a", a, "b", b));
+            }
+            contexts.add(map("a", a));
+            contexts.add(map("b", a));
+        }
+        contexts.add(new HashMap<>());
+        contexts.add(null);
+        return contexts;
+    }
+
+    private static Map<String, Object> randomContext(Random random) {
+        Map<String, Object> context = new HashMap<>();
+        for (String field : new String[]{"a", "b", "c"}) {
+            if (random.nextInt(5) > 0) {
+                context.put(field, VALUES[random.nextInt(VALUES.length)]);
+            }
+        }
+        return context;
+    }
+
+    private static BaseNode randomTree(Random random, List<ConditionNode> conditions, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            return conditions.get(random.nextInt(conditions.size()));
+        }
+        BaseNode[] children = new BaseNode[2 + random.nextInt(4)];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = randomTree(random, conditions, depth - 1);
+        }
+        return logic(random.nextBoolean() ? "AND" : "OR", children);
+    }
+
+    private static Map<String, Object> map(Object... entries) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put((String) entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+
+    private static LogicNode and(BaseNode... children) {
+        return logic("AND", children);
+    }
+
+    private static LogicNode or(BaseNode... children) {
+        return logic("OR", children);
+    }
+
+    private static LogicNode logic(String operator, BaseNode... children) {
+        LogicNode node = new LogicNode();
+        node.setOperator(operator);
+        node.setChildren(new ArrayList<>(Arrays.asList(children)));
+        return node;
+    }
+
+    private static ConditionNode condition(String field, String comparison, Object literal) {
+        return node(operand("context", field), comparison, literal(literal));
+    }
+
+    private static ConditionNode literalLeft(Object literal, String comparison, String field) {
+        return node(literal(literal), comparison, operand("context", field));
+    }
+
+    private static ConditionNode node(Operand left, String comparison, Operand right) {
+        return difference(left, comparison, right, null, null);
+    }
+
+    private static ConditionNode difference(Operand left, String comparison, Operand right, Number value, String valueComparison) {
+        ConditionNode node = new ConditionNode();
+        node.setLeft(left);
+        node.setComparison(comparison);
+        node.setRight(right);
+        node.setValue(value);
+        node.setValueComparison(valueComparison);
+        return node;
+    }
+
+    private static Operand operand(String source, String field) {
+        Operand operand = new Operand();
+        operand.setSource(source);
+        operand.setField(field);
+        return operand;
+    }
+
+    private static Operand literal(Object value) {
+        Operand operand = new Operand();
+        operand.setSource("literal");
+        operand.setValue(value);
+        return operand;
+    }
+}
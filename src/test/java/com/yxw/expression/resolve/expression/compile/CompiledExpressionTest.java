@@ -0,0 +1,91 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.google.common.hash.HashCode;
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.utils.JsonUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 执行层级：生成字节码之后继续自适应排序，子节点顺序变化后按照新的顺序重新生成字节码
+ *
+ * @author luffytmac
+ */
+class CompiledExpressionTest {
+
+    /**
+     * 第一个条件总是 true，第二个条件总是 false，AND 节点应该把第二个条件调整到前面
+     */
+    private static final String EXPRESSION = """
+            {"type":"LOGIC","operator":"AND","children":[
+              {"type":"CONDITION","comparison":"IS_NOT_NULL","left":{"source":"context","field":"a"}},
+              {"type":"CONDITION","comparison":"EQUAL",
+               "left":{"source":"context","field":"b"},"right":{"source":"literal","value":1}}]}""";
+
+    private final ExpressionCompiler compiler = new ExpressionCompiler();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(compiler, "tierThreshold", 1);
+        ReflectionTestUtils.setField(compiler, "reorderEnabled", true);
+        ReflectionTestUtils.setField(compiler, "reorderSampleInterval", 1);
+        ReflectionTestUtils.setField(compiler, "reorderSamples", 8);
+        ReflectionTestUtils.setField(compiler, "reorderMinSamples", 1);
+    }
+
+    @Test
+    void bytecodeIsRegeneratedAfterReorder() {
+        CompiledExpression expression = compile();
+        Map<String, Object> context = Map.of("a", 1, "b", 2);
+        assertThat(expression.evaluate(context)).isFalse();
+        assertThat(expression.getTier()).isEqualTo(ExpressionTier.BYTECODE);
+        Object first = ReflectionTestUtils.getField(expression, "active");
+        AndNode root = (AndNode) ReflectionTestUtils.getField(expression, "root");
+        CompiledNode[] original = root.children();
+
+        for (int i = 0; i < 64; i++) {
+            assertThat(expression.evaluate(context)).isFalse();
+        }
+        assertThat(root.children()).containsExactly(original[1], original[0]);
+        assertThat(ReflectionTestUtils.getField(expression, "active")).isNotSameAs(first);
+        // 重新生成的字节码按照新的顺序执行，结果不变
+        assertThat(expression.evaluate(Map.of("a", 1, "b", 1))).isTrue();
+        assertThat(expression.evaluate(Map.of("b", 1))).isFalse();
+    }
+
+    @Test
+    void stableOrderIsNotRegenerated() {
+        CompiledExpression expression = compile();
+        // 两个条件都为 true，没有子节点能够短路，顺序不变
+        Map<String, Object> context = Map.of("a", 1, "b", 1);
+        assertThat(expression.evaluate(context)).isTrue();
+        Object first = ReflectionTestUtils.getField(expression, "active");
+        for (int i = 0; i < 64; i++) {
+            assertThat(expression.evaluate(context)).isTrue();
+        }
+        assertThat(ReflectionTestUtils.getField(expression, "active")).isSameAs(first);
+    }
+
+    @Test
+    void withoutReorderBytecodeIsFinal() {
+        ReflectionTestUtils.setField(compiler, "reorderEnabled", false);
+        CompiledExpression expression = compile();
+        Map<String, Object> context = Map.of("a", 1, "b", 2);
+        assertThat(expression.evaluate(context)).isFalse();
+        Object first = ReflectionTestUtils.getField(expression, "active");
+        for (int i = 0; i < 64; i++) {
+            assertThat(expression.evaluate(context)).isFalse();
+        }
+        assertThat(ReflectionTestUtils.getField(expression, "active")).isSameAs(first);
+        assertThat(expression.getInvocations()).isEqualTo(1);
+    }
+
+    private CompiledExpression compile() {
+        return compiler.compile(HashCode.fromLong(1L), JsonUtils.jsonToObject(EXPRESSION, BaseNode.class));
+    }
+}
@@ -0,0 +1,157 @@
+package com.yxw.expression.resolve.expression.compile;
+
+import com.google.common.hash.HashCode;
+import com.yxw.expression.resolve.component.FetchTableData;
+import com.yxw.expression.resolve.enums.EventTypeEnum;
+import com.yxw.expression.resolve.enums.FieldTypeEnum;
+import com.yxw.expression.resolve.expression.BaseNode;
+import com.yxw.expression.resolve.expression.ContextSchema;
+import com.yxw.expression.resolve.utils.DateConverter;
+import com.yxw.expression.resolve.utils.JsonUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 带有上下文类型声明时：字段在每次求值中第一次被读取时转换一次，无法转换只影响读取这个字段的条件；数据库查询用的唯一键按照原值读取；
+ * 整数按照 long 精确比较
+ *
+ * @author luffytmac
+ */
+class TypedContextTest {
+
+    private static final String EXPRESSION = """
+            {"type":"LOGIC","operator":"OR","children":[
+              {"type":"CONDITION","comparison":"GREATER_THAN",
+               "left":{"source":"context","field":"amount"},"right":{"source":"literal","value":10}},
+              {"type":"CONDITION","comparison":"EQUAL",
+               "left":{"source":"database","table":"table1","field":"status"},"right":{"source":"literal","value":"ok"}}]}""";
+
+    private static final ContextSchema SCHEMA = ContextSchema.of("order",
+            Map.of("amount", FieldTypeEnum.NUMBER, "table1_id", FieldTypeEnum.NUMBER));
+
+    private final ExpressionCompiler compiler = new ExpressionCompiler();
+
+    private CompiledExpression expression;
+
+    @BeforeEach
+    void setUp() {
+        FetchTableData fetchTableData = Mockito.mock(FetchTableData.class, Mockito.CALLS_REAL_METHODS);
+        Mockito.doReturn(Map.of("status", "ok")).when(fetchTableData).fetchRow(eq(EventTypeEnum.TABLE1), eq("42"), any());
+        Mockito.doReturn(Map.of()).when(fetchTableData).fetchRow(eq(EventTypeEnum.TABLE1), eq("7"), any());
+        ReflectionTestUtils.setField(compiler, "fetchTableData", fetchTableData);
+        expression = compiler.compile(HashCode.fromLong(1L), JsonUtils.jsonToObject(EXPRESSION, BaseNode.class), SCHEMA);
+    }
+
+    @Test
+    void keyFieldIsNotConverted() {
+        assertThat(evaluate(context("amount", 5, "table1_id", "42"))).isTrue();
+        assertThat(evaluate(context("amount", 5, "table1_id", "7"))).isFalse();
+        assertThat(evaluate(context("amount", "11", "table1_id", "7"))).isTrue();
+    }
+
+    @Test
+    void unconvertibleFieldOnlyFailsItsCondition() {
+        assertThat(evaluate(context("amount", "not a number", "table1_id", "42"))).isTrue();
+        assertThat(evaluate(context("amount", "not a number", "table1_id", "7"))).isFalse();
+    }
+
+    @Test
+    void unusedFieldIsNotConverted() {
+        ContextSchema schema = ContextSchema.of("order", Map.of("amount", FieldTypeEnum.NUMBER, "unused", FieldTypeEnum.DATE));
+        CompiledExpression compiled = compiler.compile(HashCode.fromLong(2L), JsonUtils.jsonToObject(EXPRESSION, BaseNode.class), schema);
+        assertThat(compiled.evaluate(context("amount", "11", "unused", "not a date"))).isTrue();
+    }
+
+    @Test
+    void fieldIsConvertedOncePerEvaluation() {
+        String expression = """
+                {"type":"LOGIC","operator":"AND","children":[
+                  {"type":"CONDITION","comparison":"GREATER_THAN",
+                   "left":{"source":"context","field":"createTime"},"right":{"source":"literal","value":"2024-01-01"}},
+                  {"type":"CONDITION","comparison":"LESS_THAN",
+                   "left":{"source":"context","field":"createTime"},"right":{"source":"literal","value":"2025-01-01"}},
+                  {"type":"CONDITION","comparison":"NOT_EQUAL",
+                   "left":{"source":"context","field":"createTime"},"right":{"source":"literal","value":"2024-06-01"}}]}""";
+        ContextSchema schema = ContextSchema.of("order", Map.of("createTime", FieldTypeEnum.DATE));
+        CompiledExpression compiled = compiler.compile(HashCode.fromLong(3L), JsonUtils.jsonToObject(expression, BaseNode.class), schema);
+        SlotContext slots = compiled.newSlotContext();
+        try (MockedStatic<DateConverter> converter = Mockito.mockStatic(DateConverter.class, Mockito.CALLS_REAL_METHODS)) {
+            assertThat(compiled.evaluate(context("createTime", "2024-03-01 10:00:00"))).isTrue();
+            converter.verify(() -> DateConverter.convertToZonedDateTime((Object) "2024-03-01 10:00:00"), Mockito.times(1));
+            // 复用的 SlotContext 每次求值重新转换
+            slots.set("createTime", "2024-03-01 10:00:00");
+            assertThat(compiled.evaluate(slots)).isTrue();
+            slots.set("createTime", "2025-03-01");
+            assertThat(compiled.evaluate(slots)).isFalse();
+            converter.verify(() -> DateConverter.convertToZonedDateTime((Object) "2024-03-01 10:00:00"), Mockito.times(2));
+            converter.verify(() -> DateConverter.convertToZonedDateTime((Object) "2025-03-01"), Mockito.times(1));
+        }
+    }
+
+    @Test
+    void failedConversionFailsEveryConditionReadingIt() {
+        String expression = """
+                {"type":"LOGIC","operator":"OR","children":[
+                  {"type":"CONDITION","comparison":"GREATER_THAN",
+                   "left":{"source":"context","field":"amount"},"right":{"source":"literal","value":10}},
+                  {"type":"CONDITION","comparison":"IS_NULL","left":{"source":"context","field":"amount"}},
+                  {"type":"CONDITION","comparison":"EQUAL",
+                   "left":{"source":"context","field":"status"},"right":{"source":"literal","value":"ok"}}]}""";
+        CompiledExpression compiled = compiler.compile(HashCode.fromLong(4L), JsonUtils.jsonToObject(expression, BaseNode.class), SCHEMA);
+        assertThat(compiled.evaluate(context("amount", "x", "status", "ok"))).isTrue();
+        assertThat(compiled.evaluate(context("amount", "x", "status", "no"))).isFalse();
+        assertThat(compiled.evaluate(context("amount", null, "status", "no"))).isTrue();
+    }
+
+    @Test
+    void largeIntegersCompareExactly() {
+        String expression = """
+                {"type":"LOGIC","operator":"AND","children":[
+                  {"type":"CONDITION","comparison":"NOT_EQUAL",
+                   "left":{"source":"context","field":"a"},"right":{"source":"context","field":"b"}},
+                  {"type":"CONDITION","comparison":"LESS_THAN",
+                   "left":{"source":"context","field":"a"},"right":{"source":"context","field":"b"}},
+                  {"type":"CONDITION","comparison":"GREATER_THAN",
+                   "left":{"source":"context","field":"b"},"right":{"source":"literal","value":9007199254740992.5}}]}""";
+        ContextSchema schema = ContextSchema.of("order", Map.of("a", FieldTypeEnum.NUMBER, "b", FieldTypeEnum.NUMBER));
+        CompiledExpression compiled = compiler.compile(HashCode.fromLong(5L), JsonUtils.jsonToObject(expression, BaseNode.class), schema);
+        long big = 1L << 53;
+        assertThat(compiled.evaluate(context("a", big, "b", big + 1))).isTrue();
+        assertThat(compiled.evaluate(context("a", String.valueOf(big), "b", String.valueOf(big + 1)))).isTrue();
+        assertThat(compiled.evaluate(compiled.newSlotContext().setLong("a", big).setLong("b", big + 1))).isTrue();
+        assertThat(compiled.evaluate(context("a", big, "b", big))).isFalse();
+        // 整数值的 double、字符串和 long 相等
+        assertThat(ContextSchema.convert(FieldTypeEnum.NUMBER, 5.0)).isEqualTo(ContextSchema.convert(FieldTypeEnum.NUMBER, "5"));
+        assertThat(ContextSchema.convert(FieldTypeEnum.NUMBER, "1e3")).isEqualTo(1000L);
+        assertThat(ContextSchema.convert(FieldTypeEnum.NUMBER, "1.5")).isEqualTo(1.5);
+        assertThat(ContextSchema.convert(FieldTypeEnum.NUMBER, "99999999999999999999")).isEqualTo(1e20);
+    }
+
+    /**
+     * Map 形式和 SlotContext 形式的上下文结果一致
+     */
+    private boolean evaluate(Map<String, Object> context) {
+        boolean result = expression.evaluate(context);
+        SlotContext slots = expression.newSlotContext().setAll(context);
+        assertThat(expression.evaluate(slots)).isEqualTo(result);
+        return result;
+    }
+
+    private static Map<String, Object> context(Object... entries) {
+        Map<String, Object> context = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            context.put((String) entries[i], entries[i + 1]);
+        }
+        return context;
+    }
+}
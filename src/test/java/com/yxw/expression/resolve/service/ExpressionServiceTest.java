@@ -0,0 +1,124 @@
+package com.yxw.expression.resolve.service;
+
+import com.yxw.expression.resolve.component.ExpressionCache;
+import com.yxw.expression.resolve.component.ServiceMetrics;
+import com.yxw.expression.resolve.expression.compile.ExpressionCompiler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * 批量求值：List 和按顺序读取的上下文结果一致，和逐行求值一致，每一行都记录到求值指标中，表达式解析失败时抛出异常
+ *
+ * @author luffytmac
+ */
+class ExpressionServiceTest {
+
+    private static final String EXPRESSION = """
+            {"type":"CONDITION","comparison":"GREATER_THAN",
+             "left":{"source":"context","field":"amount"},"right":{"source":"literal","value":10}}""";
+
+    private static final String FAILING = """
+            {"type":"LOGIC","operator":"XOR","children":[]}""";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private ExpressionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<MeterRegistry> provider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(provider.getIfAvailable(any())).thenReturn(registry);
+        ServiceMetrics serviceMetrics = new ServiceMetrics(provider, false);
+        ExpressionCache expressionCache = new ExpressionCache(100);
+        ReflectionTestUtils.setField(expressionCache, "expressionCompiler", new ExpressionCompiler());
+        ReflectionTestUtils.setField(expressionCache, "serviceMetrics", serviceMetrics);
+        // 每个任务 64 行，并行度 2，一个窗口 128 行
+        service = new ExpressionService(64, 2);
+        ReflectionTestUtils.setField(service, "expressionCache", expressionCache);
+        ReflectionTestUtils.setField(service, "serviceMetrics", serviceMetrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    void iteratorMatchesListAndSingleEvaluation() {
+        // 窗口的整数倍、不足一个 long、跨窗口的行数
+        for (int size : new int[]{1, 63, 64, 127, 128, 129, 1000}) {
+            List<Map<String, Object>> contexts = contexts(size);
+            BitSet expected = new BitSet();
+            for (int i = 0; i < size; i++) {
+                expected.set(i, service.doEvaluateExpression(EXPRESSION, contexts.get(i)));
+            }
+            assertThat(service.doEvaluateBatch(EXPRESSION, contexts)).as("size %d", size).isEqualTo(expected);
+            assertThat(service.doEvaluateBatch(EXPRESSION, contexts.iterator())).as("size %d", size).isEqualTo(expected);
+        }
+        assertThat(service.doEvaluateBatch(EXPRESSION, Collections.emptyIterator()).isEmpty()).isTrue();
+        BitSet all = service.doEvaluateBatch("", contexts(300).iterator());
+        assertThat(all.cardinality()).isEqualTo(300);
+        assertThat(all.length()).isEqualTo(300);
+    }
+
+    @Test
+    void batchRowsAreRecorded() {
+        service.doEvaluateBatch(EXPRESSION, contexts(200));
+        service.doEvaluateBatch(EXPRESSION, contexts(300).iterator());
+        assertThat(results("true") + results("false")).isEqualTo(500);
+        assertThat(registry.get("expression.evaluation").timer().count()).isEqualTo(500);
+
+        assertThat(service.doEvaluateBatch(FAILING, contexts(100).iterator()).isEmpty()).isTrue();
+        assertThat(results("error")).isEqualTo(100);
+    }
+
+    @Test
+    void parseFailureIsReported() {
+        String broken = "{\"type\":\"CONDITION\",";
+        assertThatThrownBy(() -> service.doEvaluateBatch(broken, contexts(10))).isInstanceOf(IllegalArgumentException.class);
+        Iterator<Map<String, Object>> rows = contexts(10).iterator();
+        assertThatThrownBy(() -> service.doEvaluateBatch(broken, rows)).isInstanceOf(IllegalArgumentException.class);
+        // 解析失败时不读取上下文
+        assertThat(rows.hasNext()).isTrue();
+        assertThat(registry.get("expression.parse.failures").counter().count()).isEqualTo(2);
+    }
+
+    private double results(String result) {
+        return registry.find("expression.evaluation.results").tag("result", result).counters().stream()
+                .mapToDouble(counter -> counter.count()).sum();
+    }
+
+    /**
+     * amount 在 0 到 20 之间循环，每隔 7 行缺少 amount
+     */
+    private static List<Map<String, Object>> contexts(int size) {
+        List<Map<String, Object>> contexts = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> context = new HashMap<>();
+            if (i % 7 != 0) {
+                context.put("amount", i % 21);
+            }
+            contexts.add(context);
+        }
+        return contexts;
+    }
+}
@@ -0,0 +1,124 @@
+package com.yxw.expression.resolve.strategycore;
+
+import com.yxw.expression.resolve.enums.base.BaseEnum;
+import com.yxw.expression.resolve.strategycore.StrategyIndexTest.Handler;
+import com.yxw.expression.resolve.strategycore.StrategyIndexTest.Named;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 运行时注册、注销策略：整体替换快照，旧的快照不受影响，并发的读取只会看到替换前或替换后的快照，每次变化发布一个事件
+ *
+ * @author luffytmac
+ */
+class StrategyContextTest {
+
+    private static final BaseEnum A = () -> "a";
+
+    private static final BaseEnum B = () -> "b";
+
+    private final StrategyContext context = new StrategyContext();
+
+    private final List<StrategyChangedEvent> events = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        context.setApplicationEventPublisher(event -> events.add((StrategyChangedEvent) event));
+    }
+
+    @Test
+    void registerAndUnregisterSwapSnapshot() {
+        assertThatThrownBy(() -> context.get(Handler.class, A)).isInstanceOf(IllegalArgumentException.class);
+        Named first = new Named("first", false, new BaseEnum[]{A});
+        context.register(first);
+        Map<Class<?>, StrategyActionHolder<?>> before = mapping();
+        assertThat(context.get(Handler.class, A)).isSameAs(first);
+
+        Named second = new Named("second", false, new BaseEnum[]{B});
+        context.register(second);
+        Map<Class<?>, StrategyActionHolder<?>> after = mapping();
+        assertThat(after).isNotSameAs(before);
+        assertThat(context.get(Handler.class, B)).isSameAs(second);
+        // 替换前的快照不变
+        assertThat(before.get(Handler.class).index().match(new BaseEnum[]{B})).isNull();
+        assertThat(after.get(Handler.class).index().match(new BaseEnum[]{B})).isSameAs(second);
+
+        // 重复注册、注销没有注册过的策略不替换快照，也不发布事件
+        context.register(second);
+        assertThat(context.unregister(new Named("unknown", false, new BaseEnum[]{A}))).isFalse();
+        assertThat(mapping()).isSameAs(after);
+        assertThat(events).hasSize(2);
+
+        assertThat(context.unregister(first)).isTrue();
+        assertThat(context.unregister(first)).isFalse();
+        assertThat(mapping()).isNotSameAs(after);
+        assertThat(context.get(Handler.class, A).name()).isNull();
+        assertThat(context.get(Handler.class, B)).isSameAs(second);
+        assertThat(events).extracting(StrategyChangedEvent::strategy).containsExactly(first, second, first);
+        assertThat(events).extracting(StrategyChangedEvent::registered).containsExactly(true, true, false);
+        assertThat(events).allSatisfy(event -> assertThat(event.type()).isEqualTo(Handler.class));
+        assertThat(events.get(2).conditions()).containsExactly(A);
+
+        // 最后一个策略注销后，这个策略接口不再注册
+        context.unregister(second);
+        assertThatThrownBy(() -> context.get(Handler.class, B)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void concurrentGetSeesOldOrNewSnapshot() throws Exception {
+        // 默认策略和 both 一直注册，toggled 反复注册、注销
+        Named fallback = new Named("fallback", true);
+        Named both = new Named("both", false, new BaseEnum[]{A, B});
+        Named toggled = new Named("toggled", false, new BaseEnum[]{A});
+        context.register(fallback);
+        context.register(both);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                readers.add(executor.submit(() -> {
+                    int reads = 0;
+                    while (running.get() || reads == 0) {
+                        assertThat(context.get(Handler.class, A)).isIn(fallback, toggled);
+                        // toggled 注册在 both 之后，与关系的条件始终由 both 命中
+                        assertThat(context.get(Handler.class, B, A)).isSameAs(both);
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+            for (int i = 0; i < 2000; i++) {
+                context.register(toggled);
+                context.unregister(toggled);
+            }
+            running.set(false);
+            for (Future<Integer> reader : readers) {
+                assertThat(reader.get(10, TimeUnit.SECONDS)).isPositive();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(context.get(Handler.class, A)).isSameAs(fallback);
+        assertThat(events).hasSize(4002);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Class<?>, StrategyActionHolder<?>> mapping() {
+        return (Map<Class<?>, StrategyActionHolder<?>>) ReflectionTestUtils.getField(context, "mapping");
+    }
+}
@@ -0,0 +1,153 @@
+package com.yxw.expression.resolve.strategycore;
+
+import com.yxw.expression.resolve.enums.base.BaseEnum;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 策略匹配索引：单个枚举的条件按照注册顺序命中，与关系的条件需要所有枚举都在参数中，匹配不上返回默认策略，
+ * 枚举超过 64 个时使用多个 long 的位掩码
+ *
+ * @author luffytmac
+ */
+class StrategyIndexTest {
+
+    private static final BaseEnum A = () -> "a";
+
+    private static final BaseEnum B = () -> "b";
+
+    private static final BaseEnum C = () -> "c";
+
+    private final StrategyContext context = new StrategyContext();
+
+    @Test
+    void singleEnumWinsInRegistrationOrder() {
+        Named first = new Named("first", false, new BaseEnum[]{A});
+        Named second = new Named("second", false, new BaseEnum[]{A}, new BaseEnum[]{B});
+        Named both = new Named("both", false, new BaseEnum[]{B, C});
+        context.register(first);
+        context.register(second);
+        context.register(both);
+
+        assertThat(context.get(Handler.class, A)).isSameAs(first);
+        assertThat(context.get(Handler.class, B)).isSameAs(second);
+        // 按照参数顺序匹配，先出现的参数上的条件先命中
+        assertThat(context.get(Handler.class, C, B)).isSameAs(both);
+        assertThat(context.get(Handler.class, B, C)).isSameAs(second);
+        assertThat(context.get(Handler.class, B, A)).isSameAs(second);
+
+        // 先注册的策略注销后，后注册的策略命中
+        context.unregister(first);
+        assertThat(context.get(Handler.class, A)).isSameAs(second);
+    }
+
+    @Test
+    void conjunctionNeedsAllParams() {
+        Named both = new Named("both", false, new BaseEnum[]{A, B});
+        Named fallback = new Named("fallback", true);
+        context.register(both);
+        context.register(fallback);
+
+        assertThat(context.get(Handler.class, A)).isSameAs(fallback);
+        assertThat(context.get(Handler.class, B)).isSameAs(fallback);
+        assertThat(context.get(Handler.class, A, C)).isSameAs(fallback);
+        assertThat(context.get(Handler.class, A, B)).isSameAs(both);
+        assertThat(context.get(Handler.class, C, B, A)).isSameAs(both);
+    }
+
+    @Test
+    void unmatchedParamsFallBackToDefault() {
+        context.register(new Named("only", false, new BaseEnum[]{A}));
+        // 没有注册默认策略时返回空实现的代理
+        Handler proxy = context.get(Handler.class, B);
+        assertThat(proxy.name()).isNull();
+        assertThat(proxy.toString()).isEqualTo(Handler.class.getName() + "_emptyProxy");
+        assertThat(context.get(Handler.class)).isSameAs(proxy);
+
+        Named fallback = new Named("fallback", true, new BaseEnum[]{C});
+        context.register(fallback);
+        assertThat(context.get(Handler.class, B)).isSameAs(fallback);
+        assertThat(context.get(Handler.class, C)).isSameAs(fallback);
+        assertThat(context.get(Handler.class, A).name()).isEqualTo("only");
+    }
+
+    @Test
+    void moreThan64EnumsUseWideMask() {
+        BaseEnum[] enums = new BaseEnum[70];
+        for (int i = 0; i < enums.length; i++) {
+            String value = "e" + i;
+            enums[i] = () -> value;
+        }
+        Named fallback = new Named("fallback", true);
+        context.register(fallback);
+        // 每两个相邻的枚举组成一个与关系的条件，一共用到 70 个枚举
+        Named[] pairs = new Named[enums.length / 2];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = new Named("pair" + i, false, new BaseEnum[]{enums[2 * i], enums[2 * i + 1]});
+            context.register(pairs[i]);
+        }
+        // 第一个和最后一个枚举也组成一个条件
+        Named across = new Named("across", false, new BaseEnum[]{enums[0], enums[69]});
+        context.register(across);
+
+        assertThat(ReflectionTestUtils.getField(index(), "words")).isEqualTo(2);
+        assertThat(context.get(Handler.class, enums[68], enums[69])).isSameAs(pairs[34]);
+        assertThat(context.get(Handler.class, enums[69], enums[0])).isSameAs(across);
+        assertThat(context.get(Handler.class, enums[0], enums[1])).isSameAs(pairs[0]);
+        // 同一个线程复用位掩码数组，上一次的参数不能残留
+        assertThat(context.get(Handler.class, enums[69])).isSameAs(fallback);
+        assertThat(context.get(Handler.class, enums[0], enums[3])).isSameAs(fallback);
+        assertThat(context.get(Handler.class, enums[64], enums[2], enums[65])).isSameAs(pairs[32]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private StrategyIndex<Handler> index() {
+        Map<Class<?>, StrategyActionHolder<?>> mapping =
+                (Map<Class<?>, StrategyActionHolder<?>>) ReflectionTestUtils.getField(context, "mapping");
+        return ((StrategyActionHolder<Handler>) mapping.get(Handler.class)).index();
+    }
+
+    public interface Handler extends IStrategy {
+
+        String name();
+    }
+
+    static final class Named implements Handler {
+
+        private final String name;
+
+        private final boolean defaultStrategy;
+
+        private final BaseEnum[][] conditions;
+
+        Named(String name, boolean defaultStrategy, BaseEnum[]... conditions) {
+            this.name = name;
+            this.defaultStrategy = defaultStrategy;
+            this.conditions = conditions;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public BaseEnum[][] launchConditions() {
+            return conditions;
+        }
+
+        @Override
+        public boolean isDefault() {
+            return defaultStrategy;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
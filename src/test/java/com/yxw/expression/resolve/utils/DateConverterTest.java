@@ -0,0 +1,204 @@
+package com.yxw.expression.resolve.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 按位解析日期字符串、毫秒时间戳的差值计算和 DateTimeFormatter、ChronoUnit 的结果一致
+ *
+ * @author luffytmac
+ */
+class DateConverterTest {
+
+    private static final ZoneId UTC = ZoneId.of("UTC");
+
+    private static final DateTimeFormatter LOCAL_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final DateTimeFormatter LOCAL_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private static final int[] YEARS = {1, 4, 100, 1582, 1900, 1969, 1970, 1999, 2000, 2023, 2024, 2100, 2400, 9999};
+
+    @Test
+    void everyDayMatchesFormatter() {
+        for (int year : YEARS) {
+            for (LocalDate date = LocalDate.of(year, 1, 1); date.getYear() == year; date = date.plusDays(1)) {
+                String text = date.format(LOCAL_DATE);
+                assertSameAsFormatter(text);
+                assertSameAsFormatter(text + " 00:00:00");
+                assertSameAsFormatter(text + " 23:59:59");
+                assertSameAsFormatter(text + "T12:34:56Z");
+            }
+        }
+    }
+
+    @Test
+    void fractionalSecondsMatchFormatter() {
+        String fraction = "123456789";
+        for (int digits = 0; digits <= 9; digits++) {
+            String text = "2024-02-29T23:59:59" + (digits == 0 ? "" : "." + fraction.substring(0, digits)) + "Z";
+            assertSameAsFormatter(text);
+            long epochMilli = DateConverter.toEpochMilli(text);
+            // 毫秒以下的精度无法用毫秒时间戳表示
+            if (digits > 3) {
+                assertThat(epochMilli).isEqualTo(DateConverter.INVALID_EPOCH_MILLI);
+            } else {
+                assertThat(epochMilli).isEqualTo(reference(text).toInstant().toEpochMilli());
+            }
+        }
+        assertSameAsFormatter("2024-02-29T23:59:59.120000000Z");
+        assertSameAsFormatter("2024-02-29T23:59:59.1234567890Z");
+        assertSameAsFormatter("2024-02-29T23:59:59.Z");
+    }
+
+    /**
+     * 按位解析不处理的字符串交给格式化器，结果和格式化器一致（包括格式化器的宽松解析和报错）
+     */
+    @Test
+    void fallbackStringsMatchFormatter() {
+        List<String> texts = List.of(
+                // 不存在的日期，格式化器的 SMART 模式会调整到月末或者报错
+                "2023-02-29", "2100-02-29", "2024-02-30", "2024-04-31", "2024-13-01", "2024-00-10", "2024-01-00", "0000-01-01",
+                "2023-02-29 10:00:00", "2024-04-31T00:00:00Z",
+                // 超出范围的时刻
+                "2024-01-01 24:00:00", "2024-01-01 23:60:00", "2024-01-01 23:59:60", "2024-12-31T23:59:60Z",
+                // 带时区偏移，包括没有夏令时的固定偏移
+                "2024-03-10T02:30:00+08:00", "2024-03-10T02:30:00-05:30", "2024-03-10T02:30:00+00:00", "2024-03-10T02:30:00.5+14:00",
+                // 其他写法
+                "2024-1-01", "2024/01/01", "20240101", "2024-01-01 10:00", "2024-01-01T10:00:00", "2024-01-01 10:00:00Z",
+                "2024-01-01t10:00:00z", " 2024-01-01", "2024-01-01 ", "+2024-01-01", "-2024-01-01", "+12024-01-01T00:00:00Z",
+                "abcdefghijkl", "", "2024-01-0a");
+        for (String text : texts) {
+            assertSameAsFormatter(text);
+        }
+    }
+
+    @Test
+    void nonStringValuesMatchZonedDateTime() {
+        long[] millis = {0L, -1L, 1L, 951_782_400_000L, 1_709_164_800_123L, -62_135_596_800_000L, 253_402_300_799_999L};
+        for (long value : millis) {
+            ZonedDateTime expected = Instant.ofEpochMilli(value).atZone(UTC);
+            assertThat(DateConverter.convertToZonedDateTime(value)).isEqualTo(expected);
+            assertThat(DateConverter.toEpochMilli(value)).isEqualTo(value);
+            assertThat(DateConverter.toEpochMilli(new Date(value))).isEqualTo(value);
+            for (ZoneOffset offset : new ZoneOffset[]{ZoneOffset.UTC, ZoneOffset.ofHours(8), ZoneOffset.ofHoursMinutes(-9, -30)}) {
+                ZonedDateTime zoned = expected.withZoneSameInstant(offset);
+                assertThat(DateConverter.convertToZonedDateTime(zoned)).isEqualTo(expected);
+                assertThat(DateConverter.toEpochMilli(zoned)).isEqualTo(value);
+            }
+        }
+        LocalDateTime local = LocalDateTime.of(2024, 2, 29, 12, 0);
+        assertThat(DateConverter.toEpochMilli(local))
+                .isEqualTo(DateConverter.convertToZonedDateTime(local).toInstant().toEpochMilli());
+        // 超出范围、毫秒以下的精度
+        assertThat(DateConverter.toEpochMilli(Long.MAX_VALUE)).isEqualTo(DateConverter.INVALID_EPOCH_MILLI);
+        assertThat(DateConverter.toEpochMilli(ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 1, UTC))).isEqualTo(DateConverter.INVALID_EPOCH_MILLI);
+        assertThat(DateConverter.toEpochMilli(null)).isEqualTo(DateConverter.INVALID_EPOCH_MILLI);
+        assertThat(DateConverter.toEpochMilli(1)).isEqualTo(DateConverter.INVALID_EPOCH_MILLI);
+    }
+
+    @Test
+    void packedMonthDayMatchesLocalDate() {
+        long from = LocalDate.of(1, 1, 1).toEpochDay();
+        long to = LocalDate.of(9999, 12, 31).toEpochDay();
+        for (long epochDay = from; epochDay <= to; epochDay++) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            long expected = (date.getYear() * 12L + date.getMonthValue() - 1) * 32 + date.getDayOfMonth();
+            assertThat(DateConverter.packedMonthDay(epochDay)).isEqualTo(expected);
+        }
+    }
+
+    /**
+     * 月末、闰日、一天内不同时刻、时间倒序的组合
+     */
+    @Test
+    void betweenMatchesChronoUnit() {
+        List<ZonedDateTime> dates = new ArrayList<>();
+        for (String text : List.of("2024-01-31", "2024-02-28", "2024-02-29", "2024-03-01", "2024-03-31", "2024-04-30", "2023-02-28",
+                "2023-03-01", "2023-01-31", "2020-02-29", "2021-02-28", "2000-02-29", "1900-02-28", "1969-12-31", "1970-01-01",
+                "0001-01-01", "9999-12-31")) {
+            LocalDate date = LocalDate.parse(text);
+            for (int[] time : new int[][]{{0, 0, 0, 0}, {0, 0, 0, 1}, {12, 0, 0, 0}, {23, 59, 59, 999}}) {
+                dates.add(ZonedDateTime.of(date.atTime(time[0], time[1], time[2], time[3] * 1_000_000), UTC));
+            }
+        }
+        for (ZonedDateTime start : dates) {
+            for (ZonedDateTime end : dates) {
+                assertBetween(start, end);
+            }
+        }
+        Random random = new Random(42);
+        long min = LocalDate.of(1, 1, 1).atStartOfDay(UTC).toInstant().toEpochMilli();
+        long max = LocalDate.of(9999, 12, 31).atStartOfDay(UTC).toInstant().toEpochMilli();
+        for (int i = 0; i < 100_000; i++) {
+            long start = min + (long) (random.nextDouble() * (max - min));
+            long end = random.nextBoolean() ? min + (long) (random.nextDouble() * (max - min))
+                    : start + random.nextLong(-400L * 86_400_000L, 400L * 86_400_000L);
+            assertBetween(Instant.ofEpochMilli(start).atZone(UTC), Instant.ofEpochMilli(Math.max(min, Math.min(max, end))).atZone(UTC));
+        }
+        assertThatThrownBy(() -> DateConverter.between(ChronoUnit.HOURS, 0, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void assertBetween(ZonedDateTime start, ZonedDateTime end) {
+        long startMilli = start.toInstant().toEpochMilli();
+        long endMilli = end.toInstant().toEpochMilli();
+        for (ChronoUnit unit : new ChronoUnit[]{ChronoUnit.DAYS, ChronoUnit.MONTHS, ChronoUnit.YEARS}) {
+            assertThat(DateConverter.between(unit, startMilli, endMilli)).as("%s %s %s", unit, start, end)
+                    .isEqualTo(unit.between(start, end));
+        }
+    }
+
+    /**
+     * convertToZonedDateTime 和依次尝试三个格式化器的结果一致，都无法解析时都抛出 IllegalArgumentException；
+     * toEpochMilli 能得到时间戳时和格式化器的时间点一致
+     */
+    private static void assertSameAsFormatter(String text) {
+        ZonedDateTime expected = reference(text);
+        if (expected == null) {
+            assertThatThrownBy(() -> DateConverter.convertToZonedDateTime(text)).as(text).isInstanceOf(IllegalArgumentException.class);
+            assertThat(DateConverter.toEpochMilli(text)).as(text).isEqualTo(DateConverter.INVALID_EPOCH_MILLI);
+            return;
+        }
+        assertThat(DateConverter.convertToZonedDateTime(text)).as(text).isEqualTo(expected);
+        long epochMilli = DateConverter.toEpochMilli(text);
+        if (epochMilli != DateConverter.INVALID_EPOCH_MILLI) {
+            assertThat(epochMilli).as(text).isEqualTo(expected.toInstant().toEpochMilli());
+        }
+    }
+
+    /**
+     * 按位解析之前的实现：依次尝试 ISO_INSTANT、yyyy-MM-dd HH:mm:ss、yyyy-MM-dd
+     */
+    private static ZonedDateTime reference(String text) {
+        try {
+            return Instant.from(DateTimeFormatter.ISO_INSTANT.parse(text)).atZone(UTC);
+        } catch (DateTimeParseException ignored) {
+            // 尝试下一个格式
+        }
+        try {
+            return LocalDateTime.parse(text, LOCAL_DATE_TIME).atZone(UTC);
+        } catch (DateTimeParseException ignored) {
+            // 尝试下一个格式
+        }
+        try {
+            return LocalDate.parse(text, LOCAL_DATE).atStartOfDay(UTC);
+        } catch (DateTimeParseException ignored) {
+            return null;
+        }
+    }
+}